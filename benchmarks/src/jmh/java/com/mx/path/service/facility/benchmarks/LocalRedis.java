@@ -0,0 +1,181 @@
+package com.mx.path.service.facility.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+
+/**
+ * Throwaway redis-server processes for benchmarking. Uses the {@code redis-server} executable on the PATH, or the one
+ * named by the {@code redis.server} system property. Nothing is persisted; the working directory is deleted on close.
+ */
+final class LocalRedis implements AutoCloseable {
+
+  private static final int CLUSTER_SLOTS = 16384;
+  private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(30);
+
+  private final List<Process> processes = new ArrayList<>();
+  private final List<Integer> ports = new ArrayList<>();
+  private final Path directory;
+
+  private LocalRedis() throws IOException {
+    this.directory = Files.createTempDirectory("redis-benchmark");
+  }
+
+  /**
+   * @param port to listen on
+   * @return running standalone server
+   */
+  static LocalRedis standalone(int port) throws IOException {
+    LocalRedis redis = new LocalRedis();
+    try {
+      redis.start(port, false);
+      redis.awaitReady(port);
+    } catch (RuntimeException | IOException e) {
+      redis.close();
+      throw e;
+    }
+
+    return redis;
+  }
+
+  /**
+   * @param firstPort port of the first node. Nodes listen on consecutive ports.
+   * @param nodes number of primaries. Slots are split evenly across them.
+   * @return running cluster with all slots assigned
+   */
+  static LocalRedis cluster(int firstPort, int nodes) throws IOException {
+    LocalRedis redis = new LocalRedis();
+    try {
+      for (int i = 0; i < nodes; i++) {
+        redis.start(firstPort + i, true);
+      }
+      for (int i = 0; i < nodes; i++) {
+        redis.awaitReady(firstPort + i);
+      }
+      redis.formCluster();
+    } catch (RuntimeException | IOException e) {
+      redis.close();
+      throw e;
+    }
+
+    return redis;
+  }
+
+  /**
+   * @return port of the first node
+   */
+  int getPort() {
+    return ports.get(0);
+  }
+
+  @Override
+  public void close() {
+    processes.forEach(Process::destroy);
+    processes.forEach((process) -> {
+      try {
+        process.waitFor();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    } catch (IOException ignored) {
+      // Best effort
+    }
+  }
+
+  private void start(int port, boolean cluster) throws IOException {
+    List<String> command = new ArrayList<>(List.of(
+        System.getProperty("redis.server", "redis-server"),
+        "--port", String.valueOf(port),
+        "--save", "",
+        "--appendonly", "no",
+        "--dir", directory.toString()));
+    if (cluster) {
+      command.addAll(List.of("--cluster-enabled", "yes", "--cluster-config-file", "nodes-" + port + ".conf"));
+    }
+
+    processes.add(new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(directory.resolve("redis-" + port + ".log").toFile())
+        .start());
+    ports.add(port);
+  }
+
+  private void awaitReady(int port) {
+    long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+    RedisClient client = RedisClient.create(RedisURI.create("localhost", port));
+    try {
+      while (true) {
+        try (StatefulRedisConnection<String, String> connection = client.connect()) {
+          connection.sync().ping();
+          return;
+        } catch (RedisException e) {
+          if (System.nanoTime() > deadline) {
+            throw new IllegalStateException("redis-server on port " + port + " did not start", e);
+          }
+          sleep();
+        }
+      }
+    } finally {
+      client.shutdown();
+    }
+  }
+
+  private void formCluster() {
+    RedisClient client = RedisClient.create();
+    try {
+      int slotsPerNode = CLUSTER_SLOTS / ports.size();
+      for (int i = 0; i < ports.size(); i++) {
+        try (StatefulRedisConnection<String, String> connection = client.connect(RedisURI.create("localhost", ports.get(i)))) {
+          RedisCommands<String, String> commands = connection.sync();
+          if (i > 0) {
+            commands.clusterMeet("127.0.0.1", ports.get(0));
+          }
+
+          int firstSlot = i * slotsPerNode;
+          int lastSlot = i == ports.size() - 1 ? CLUSTER_SLOTS - 1 : firstSlot + slotsPerNode - 1;
+          commands.clusterAddSlots(IntStream.rangeClosed(firstSlot, lastSlot).toArray());
+        }
+      }
+
+      long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+      for (int port : ports) {
+        try (StatefulRedisConnection<String, String> connection = client.connect(RedisURI.create("localhost", port))) {
+          while (!connection.sync().clusterInfo().contains("cluster_state:ok")) {
+            if (System.nanoTime() > deadline) {
+              throw new IllegalStateException("Redis cluster did not converge");
+            }
+            sleep();
+          }
+        }
+      }
+    } finally {
+      client.shutdown();
+    }
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(100);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for redis", e);
+    }
+  }
+}
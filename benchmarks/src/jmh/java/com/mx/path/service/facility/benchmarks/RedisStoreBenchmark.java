@@ -0,0 +1,122 @@
+package com.mx.path.service.facility.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.mx.path.service.facility.store.redis.RedisStore;
+import com.mx.path.service.facility.store.redis.RedisStoreConfiguration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency of {@link RedisStore} operations against local redis-server processes, in standalone and
+ * cluster mode. Run a single thread count with {@code -Pjmh.includes=RedisStoreBenchmark.SingleThread}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public abstract class RedisStoreBenchmark {
+
+  private static final int KEY_COUNT = 1024;
+  private static final int CLUSTER_NODES = 3;
+  private static final long EXPIRY_SECONDS = 600;
+  private static final String SET_KEY = "benchmark:set";
+
+  @Threads(1)
+  public static class SingleThread extends RedisStoreBenchmark {
+  }
+
+  @Threads(8)
+  public static class EightThreads extends RedisStoreBenchmark {
+  }
+
+  @Threads(32)
+  public static class ThirtyTwoThreads extends RedisStoreBenchmark {
+  }
+
+  @Param({ "false", "true" })
+  public boolean cluster;
+
+  @Param({ "64", "1024", "16384" })
+  public int payloadSize;
+
+  private LocalRedis redis;
+  private RedisStore store;
+  private String[] keys;
+  private String[] members;
+  private String value;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    int port = Integer.getInteger("redis.port", 7400);
+    redis = cluster ? LocalRedis.cluster(port, CLUSTER_NODES) : LocalRedis.standalone(port);
+
+    RedisStoreConfiguration configuration = new RedisStoreConfiguration();
+    configuration.setHost("localhost");
+    configuration.setPort(redis.getPort());
+    configuration.setCluster(cluster);
+    configuration.setWarmUp(true);
+    store = new RedisStore(configuration);
+
+    value = "v".repeat(payloadSize);
+    keys = new String[KEY_COUNT];
+    members = new String[KEY_COUNT];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = "benchmark:key:" + i;
+      members[i] = "member:" + i;
+      store.put(keys[i], value, EXPIRY_SECONDS);
+      store.putSet(SET_KEY, members[i], EXPIRY_SECONDS);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (store != null) {
+      store.close();
+    }
+    if (redis != null) {
+      redis.close();
+    }
+  }
+
+  @Benchmark
+  public String get() {
+    return store.get(keys[nextIndex()]);
+  }
+
+  @Benchmark
+  public void put() {
+    store.put(keys[nextIndex()], value, EXPIRY_SECONDS);
+  }
+
+  @Benchmark
+  public void putSet() {
+    store.putSet(SET_KEY, members[nextIndex()], EXPIRY_SECONDS);
+  }
+
+  @Benchmark
+  public boolean inSet() {
+    return store.inSet(SET_KEY, members[nextIndex()]);
+  }
+
+  private static int nextIndex() {
+    return ThreadLocalRandom.current().nextInt(KEY_COUNT);
+  }
+}
@@ -0,0 +1,53 @@
+package com.mx.path.service.facility.security.vault;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import lombok.Getter;
+
+/**
+ * Data key issued by the transit engine: the plaintext key used for local encryption and the same key wrapped
+ * (encrypted) by the transit key, which is stored alongside every value it encrypts.
+ */
+final class VaultDataKey {
+  private static final String ALGORITHM = "AES";
+
+  @Getter
+  private final String wrappedKey;
+
+  @Getter
+  private final SecretKey key;
+
+  private final long createdAtNanos;
+  private final AtomicLong uses = new AtomicLong();
+
+  /**
+   * @param wrappedKey data key ciphertext ({@code vault:vN:...})
+   * @param keyBytes plaintext data key. Zeroed once copied.
+   */
+  VaultDataKey(String wrappedKey, byte[] keyBytes) {
+    this.wrappedKey = wrappedKey;
+    this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+    this.createdAtNanos = System.nanoTime();
+    Arrays.fill(keyBytes, (byte) 0);
+  }
+
+  /**
+   * Count one more use of this key for encryption.
+   *
+   * @param maxUses most values this key may encrypt
+   * @param lifetime how long this key may be used for
+   * @return false if the key is used up or too old and must be replaced
+   */
+  boolean tryUse(long maxUses, Duration lifetime) {
+    if (System.nanoTime() - createdAtNanos >= lifetime.toNanos()) {
+      return false;
+    }
+
+    return uses.incrementAndGet() <= maxUses;
+  }
+}
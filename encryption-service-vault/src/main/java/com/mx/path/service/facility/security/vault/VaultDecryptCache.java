@@ -0,0 +1,220 @@
+package com.mx.path.service.facility.security.vault;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+
+/**
+ * Bounded, time-limited, in-process cache of plaintexts decrypted by {@link VaultEncryptionService}.
+ *
+ * <p>Entries are keyed by a SHA-256 hash of the ciphertext, so ciphertexts are not retained. Plaintexts are held as
+ * UTF-8 bytes and zeroed when evicted, expired or invalidated. Entries are evicted least-recently-used once
+ * {@link VaultDecryptCacheConfiguration#getMaxEntries()} is exceeded, expire after
+ * {@link VaultDecryptCacheConfiguration#getTtl()}, and are dropped by {@link #invalidateBelow(int)} when the transit
+ * key's minimum decryption version is raised. Expired entries are swept from the least-recently-used end on each put,
+ * so plaintexts that are never looked up again do not outlive their TTL for long.
+ */
+public final class VaultDecryptCache {
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final Pattern KEY_VERSION = Pattern.compile("^vault:v(\\d+):");
+
+  @Getter
+  private final VaultDecryptCacheConfiguration configuration;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private int minVersion;
+
+  public VaultDecryptCache(VaultDecryptCacheConfiguration configuration) {
+    this.configuration = configuration;
+  }
+
+  /**
+   * @param ciphertext to look up
+   * @return cached plaintext, or null on miss
+   */
+  public String get(String ciphertext) {
+    String hash = hash(ciphertext);
+
+    synchronized (entries) {
+      Entry entry = entries.get(hash);
+      if (entry != null && entry.expiresAtNanos - System.nanoTime() <= 0) {
+        remove(hash);
+        entry = null;
+      }
+
+      if (entry == null) {
+        misses.incrementAndGet();
+        return null;
+      }
+
+      hits.incrementAndGet();
+      return new String(entry.plaintext, StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Cache decrypted value.
+   *
+   * @param ciphertext decrypted
+   * @param keyVersion transit key version the ciphertext was encrypted with, 0 if unknown
+   * @param plaintext result
+   */
+  public void put(String ciphertext, int keyVersion, String plaintext) {
+    if (plaintext == null) {
+      return;
+    }
+
+    String hash = hash(ciphertext);
+    Entry entry = new Entry(plaintext.getBytes(StandardCharsets.UTF_8), keyVersion, System.nanoTime() + configuration.getTtl().toNanos());
+
+    synchronized (entries) {
+      if (keyVersion < minVersion) {
+        // Decrypted before the minimum version was raised
+        entry.zero();
+        return;
+      }
+
+      remove(hash);
+      removeExpired();
+      entries.put(hash, entry);
+
+      Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+      while (eldest.hasNext() && entries.size() > configuration.getMaxEntries()) {
+        eldest.next().getValue().zero();
+        eldest.remove();
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Drop entries encrypted with a key version older than minVersion, or whose version is unknown, and stop caching
+   * them from now on.
+   *
+   * @param newMinVersion new minimum decryption version
+   */
+  public void invalidateBelow(int newMinVersion) {
+    synchronized (entries) {
+      minVersion = Math.max(minVersion, newMinVersion);
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.keyVersion < newMinVersion) {
+          entry.zero();
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Drop all entries.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.values().forEach(Entry::zero);
+      entries.clear();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * @return hits divided by lookups, 0 before the first lookup
+   */
+  public double getHitRate() {
+    long hitCount = hits.get();
+    long lookups = hitCount + misses.get();
+
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * @param ciphertext transit ({@code vault:vN:...}) or envelope ciphertext
+   * @return version of the transit key that encrypted the value (for envelopes, the data key), 0 if unknown
+   */
+  static int keyVersion(String ciphertext) {
+    String transitCiphertext = VaultEnvelopeCipher.isEnvelope(ciphertext) ? VaultEnvelopeCipher.wrappedKey(ciphertext) : ciphertext;
+    Matcher matcher = KEY_VERSION.matcher(transitCiphertext == null ? "" : transitCiphertext);
+
+    return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+  }
+
+  /**
+   * Drop expired entries from the least-recently-used end, stopping at the first live one.
+   */
+  private void removeExpired() {
+    long now = System.nanoTime();
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (eldest.hasNext()) {
+      Entry entry = eldest.next();
+      if (entry.expiresAtNanos - now > 0) {
+        return;
+      }
+
+      entry.zero();
+      eldest.remove();
+    }
+  }
+
+  private void remove(String hash) {
+    Entry removed = entries.remove(hash);
+    if (removed != null) {
+      removed.zero();
+    }
+  }
+
+  private static String hash(String ciphertext) {
+    try {
+      byte[] digest = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(ciphertext.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new VaultEncryptionConfigurationException("Unable to hash ciphertext", e);
+    }
+  }
+
+  private static final class Entry {
+    private final byte[] plaintext;
+    private final int keyVersion;
+    private final long expiresAtNanos;
+
+    Entry(byte[] plaintext, int keyVersion, long expiresAtNanos) {
+      this.plaintext = plaintext;
+      this.keyVersion = keyVersion;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+
+    void zero() {
+      Arrays.fill(plaintext, (byte) 0);
+    }
+  }
+}
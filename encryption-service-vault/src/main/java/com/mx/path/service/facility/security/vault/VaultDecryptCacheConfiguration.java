@@ -0,0 +1,29 @@
+package com.mx.path.service.facility.security.vault;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+import com.mx.path.core.common.configuration.ConfigurationField;
+
+/**
+ * Configuration for the optional in-process cache of {@link VaultEncryptionService#decrypt(String)} results.
+ */
+@Data
+public class VaultDecryptCacheConfiguration {
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final int DEFAULT_MAX_ENTRIES = 10000;
+  private static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+  @ConfigurationField
+  private boolean enabled = DEFAULT_ENABLED;
+
+  @ConfigurationField
+  private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+  /**
+   * Longest time a plaintext is held. Entries are also dropped when the minimum decryption version is raised.
+   */
+  @ConfigurationField
+  private Duration ttl = DEFAULT_TTL;
+}
@@ -0,0 +1,31 @@
+package com.mx.path.service.facility.security.vault;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Raised when some values in a batch operation could not be encrypted or decrypted. Values that succeeded are still
+ * available through {@link #getResults()}.
+ */
+public class VaultEncryptionBatchException extends VaultEncryptionOperationException {
+
+  /**
+   * Results in input order. Entries that failed are null.
+   */
+  @Getter
+  private final List<String> results;
+
+  /**
+   * Error reported by Vault, keyed by the index of the failed input.
+   */
+  @Getter
+  private final Map<Integer, String> errors;
+
+  public VaultEncryptionBatchException(String message, List<String> results, Map<Integer, String> errors) {
+    super(message);
+    this.results = results;
+    this.errors = errors;
+  }
+}
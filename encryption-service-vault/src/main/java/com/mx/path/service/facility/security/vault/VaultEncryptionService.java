@@ -1,10 +1,15 @@
 package com.mx.path.service.facility.security.vault;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
 
 import javax.annotation.Nullable;
 
@@ -15,7 +20,10 @@ import com.bettercloud.vault.SslConfig;
 import com.bettercloud.vault.Vault;
 import com.bettercloud.vault.VaultConfig;
 import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonArray;
 import com.bettercloud.vault.json.JsonObject;
+import com.bettercloud.vault.json.JsonValue;
 import com.bettercloud.vault.response.AuthResponse;
 import com.bettercloud.vault.response.LogicalResponse;
 import com.bettercloud.vault.response.VaultResponse;
@@ -23,14 +31,22 @@ import com.google.common.collect.ImmutableMap;
 import com.mx.path.core.common.configuration.Configuration;
 import com.mx.path.core.common.lang.Strings;
 import com.mx.path.core.common.security.EncryptionService;
+import com.mx.path.service.facility.vault.VaultHttpClient;
+import com.mx.path.service.facility.vault.VaultHttpClientOptions;
+import com.mx.path.service.facility.vault.VaultHttpClientRegistry;
+import com.mx.path.service.facility.vault.VaultHttpDriver;
+import com.mx.path.service.facility.vault.VaultToken;
+import com.mx.path.service.facility.vault.VaultTokenRenewal;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class VaultEncryptionService implements EncryptionService {
+public class VaultEncryptionService implements EncryptionService, AutoCloseable {
   private static final Logger LOGGER = LoggerFactory.getLogger(VaultEncryptionService.class);
   private static final int MAXIMUM_REAUTHENTICATION_RETRIES = 3;
   private static final int PERMISSION_DENIED_STATUS = 403;
+  private static final int BATCH_PARTIAL_FAILURE_STATUS = 200;
+  private static final int DATA_KEY_BITS = 256;
 
   private static boolean initialized = false;
 
@@ -40,8 +56,24 @@ public class VaultEncryptionService implements EncryptionService {
   @Setter
   private volatile Vault driver;
 
+  private final VaultEnvelopeCipher envelopeCipher;
+
+  /**
+   * In-process cache of decrypt results. Null unless enabled in {@link VaultEncryptionServiceConfiguration#getDecryptCache()}.
+   */
+  @Getter
+  private final VaultDecryptCache decryptCache;
+
+  private final VaultTokenRenewal tokenRenewal;
+
+  private VaultHttpClient httpClient;
+
   public VaultEncryptionService(@Configuration VaultEncryptionServiceConfiguration configuration) {
     this.configuration = configuration;
+    this.envelopeCipher = new VaultEnvelopeCipher(configuration.getEnvelope(), this::generateDataKey, this::unwrapDataKey);
+    this.decryptCache = configuration.getDecryptCache().isEnabled() ? new VaultDecryptCache(configuration.getDecryptCache()) : null;
+    this.tokenRenewal = new VaultTokenRenewal("vault-encryption-token-renewal", configuration.isTokenRenewalEnabled(),
+        configuration.getTokenRenewalRatio(), configuration.getTokenRenewalRetryInterval());
   }
 
   /**
@@ -82,6 +114,44 @@ public class VaultEncryptionService implements EncryptionService {
     return doDecrypt(ciphertext);
   }
 
+  /**
+   * Encrypts all given plaintexts, sending up to {@link VaultEncryptionServiceConfiguration#getBatchSize()} values per
+   * request. Blank and null values are returned unaffected.
+   *
+   * @param plaintexts unencrypted texts
+   * @return ciphertexts, in the same order as plaintexts
+   * @throws VaultEncryptionBatchException if Vault rejected some of the values
+   */
+  public final List<String> encryptAll(List<String> plaintexts) {
+    initialize();
+
+    if (!configuration.isEnabled()) {
+      return new ArrayList<>(plaintexts);
+    }
+
+    return doBatch(plaintexts, "encrypt", "plaintext", "ciphertext", this::encodeBase64, UnaryOperator.identity(),
+        (plaintext) -> configuration.getEnvelope().isEnabled() ? envelopeCipher.encrypt(plaintext) : null, null);
+  }
+
+  /**
+   * Decrypts all given ciphertexts, sending up to {@link VaultEncryptionServiceConfiguration#getBatchSize()} values per
+   * request. Blank and null values are returned unaffected.
+   *
+   * @param ciphertexts encrypted texts
+   * @return plaintexts, in the same order as ciphertexts
+   * @throws VaultEncryptionBatchException if Vault rejected some of the values
+   */
+  public final List<String> decryptAll(List<String> ciphertexts) {
+    initialize();
+
+    if (!configuration.isEnabled()) {
+      return new ArrayList<>(ciphertexts);
+    }
+
+    return doBatch(ciphertexts, "decrypt", "ciphertext", "plaintext", UnaryOperator.identity(), this::decodeBase64,
+        this::decryptLocally, this::cacheDecrypted);
+  }
+
   /**
    * Determines if given text is a valid ciphertext
    *
@@ -91,6 +161,7 @@ public class VaultEncryptionService implements EncryptionService {
   @Override
   public final boolean isEncrypted(String value) {
     if (Objects.nonNull(value)) {
+      // Matches transit ciphertexts and envelope ciphertexts alike
       return value.startsWith("vault");
     }
 
@@ -108,6 +179,7 @@ public class VaultEncryptionService implements EncryptionService {
       VaultResponse response = logicalWriteWithReauthentication("transit/keys/" + configuration.getKeyName() + "/rotate", null);
       validateVaultOperationResponse(response, "Unable to rotate vault key");
       LOGGER.info("Rotated vault key: " + configuration.getKeyName());
+      envelopeCipher.clear();
     } catch (RuntimeException e) {
       LOGGER.warn("Unable to rotate vault key", e);
     }
@@ -135,6 +207,16 @@ public class VaultEncryptionService implements EncryptionService {
    */
   final Vault buildVaultDriver(@Nullable String authToken) {
     try {
+      if (configuration.getTransport() == VaultEncryptionServiceConfiguration.Transport.HTTP_CLIENT) {
+        VaultConfig vaultConfig = new VaultConfig()
+            .token(authToken)
+            .engineVersion(configuration.getEngineVersion())
+            .address(configuration.getUri())
+            .build();
+
+        return new VaultHttpDriver(vaultConfig, httpClient());
+      }
+
       if (configuration.isSsl()) { // If SSL is enabled, set up the SSL configuration
         SslConfig sslConfig = new SslConfig();
         sslConfig.verify(false);
@@ -224,6 +306,10 @@ public class VaultEncryptionService implements EncryptionService {
           "min_decryption_version", minVersion,
           "min_encryption_version", minVersion));
       validateVaultOperationResponse(response, "Unable to update vault key");
+      envelopeCipher.clear();
+      if (decryptCache != null) {
+        decryptCache.invalidateBelow(minVersion);
+      }
     } catch (RuntimeException e) {
       LOGGER.warn("Unable to update vault key", e);
     }
@@ -236,51 +322,73 @@ public class VaultEncryptionService implements EncryptionService {
    * @return new driver with auth token
    */
   final Vault buildAuthenticatedDriver(Vault authenticationDriver) {
-    try {
-      String token;
-      AuthResponse resp;
-
-      switch (getConfiguration().getAuthentication()) {
-        case TOKEN:
-          token = configuration.getToken();
-
-          if (token == null) {
-            throw new VaultEncryptionConfigurationException("Vault token required for TOKEN authentication");
-          }
-          break;
-
-        case APPROLE:
-          resp = authenticationDriver.auth().loginByAppRole(configuration.getAppRole(), configuration.getSecretId());
-          validateVaultAuthenticationResponse(resp, "Unable to login via vault app-role");
-
-          token = resp.getAuthClientToken();
-          break;
+    VaultToken newToken = login(authenticationDriver);
+    Vault newDriver = buildVaultDriver(newToken.getClientToken());
+    tokenRenewal.setToken(newToken);
 
-        case APPID:
-          resp = authenticationDriver.auth().loginByAppID("app-id/login", configuration.getAppId(), configuration.getUserId());
-          validateVaultAuthenticationResponse(resp, "Unable to login via vault app-id");
+    return newDriver;
+  }
 
-          token = resp.getAuthClientToken();
-          break;
+  /**
+   * Renew the current token in the background, or log in again if it can no longer be renewed, then swap in the new
+   * driver and schedule the next renewal. Requests keep using the current driver until the swap. Only the swap holds
+   * this object's lock, so requests are never blocked behind a background renewal or login.
+   *
+   * <p>Does not raise exception on failure. A failed renewal is retried after {@link VaultEncryptionServiceConfiguration#getTokenRenewalRetryInterval()}.
+   */
+  final void renewToken() {
+    Vault currentDriver = driver;
+    if (currentDriver == null) {
+      return;
+    }
 
-        default:
-          throw new VaultEncryptionConfigurationException("Invalid vault authentication type: " + getConfiguration().getAuthentication());
-      }
+    tokenRenewal.renew(currentDriver, () -> {
+      swapDriver(currentDriver, buildAuthenticatedDriver(buildVaultDriver(null)));
+    }, this::renewToken);
+  }
 
-      return buildVaultDriver(token);
-    } catch (VaultException e) {
-      throw new VaultEncryptionAuthenticationException("Unable to login to vault", e);
+  /**
+   * Swap in the driver from a background login, unless the driver was reset or replaced while logging in.
+   */
+  private synchronized void swapDriver(Vault expected, Vault newDriver) {
+    if (driver == expected) {
+      driver = newDriver;
     }
   }
 
   /**
    * Resets the driver. Calling {@link #getDriver()} will create a new, authenticated driver.
    */
-  final void resetDriver() {
+  final synchronized void resetDriver() {
     this.driver = null;
+    tokenRenewal.reset();
+  }
+
+  /**
+   * @return token of the current driver, or null before login
+   */
+  final VaultToken getToken() {
+    return tokenRenewal.getToken();
+  }
+
+  /**
+   * Drops the driver, stops background token renewal and releases the shared HTTP client, if any.
+   */
+  @Override
+  public final synchronized void close() {
+    resetDriver();
+    tokenRenewal.close();
+    if (httpClient != null) {
+      VaultHttpClientRegistry.release(httpClient);
+      httpClient = null;
+    }
   }
 
   private String doEncrypt(String plaintext) {
+    if (configuration.getEnvelope().isEnabled()) {
+      return envelopeCipher.encrypt(plaintext);
+    }
+
     String encodedValue = encodeBase64(plaintext);
     String path = "transit/encrypt/" + configuration.getKeyName();
 
@@ -291,6 +399,35 @@ public class VaultEncryptionService implements EncryptionService {
   }
 
   private String doDecrypt(String ciphertext) {
+    String plaintext = decryptLocally(ciphertext);
+    if (plaintext != null) {
+      return plaintext;
+    }
+
+    plaintext = transitDecrypt(ciphertext);
+    cacheDecrypted(ciphertext, plaintext);
+
+    return plaintext;
+  }
+
+  /**
+   * @return plaintext of envelope ciphertexts and cached transit ciphertexts, or null if Vault must be called
+   */
+  private String decryptLocally(String ciphertext) {
+    if (VaultEnvelopeCipher.isEnvelope(ciphertext)) {
+      return envelopeCipher.decrypt(ciphertext);
+    }
+
+    return decryptCache != null ? decryptCache.get(ciphertext) : null;
+  }
+
+  private void cacheDecrypted(String ciphertext, String plaintext) {
+    if (decryptCache != null) {
+      decryptCache.put(ciphertext, VaultDecryptCache.keyVersion(ciphertext), plaintext);
+    }
+  }
+
+  private String transitDecrypt(String ciphertext) {
     LogicalResponse response = logicalWriteWithReauthentication(
         "transit/decrypt/" + configuration.getKeyName(),
         Collections.singletonMap("ciphertext", ciphertext));
@@ -301,12 +438,125 @@ public class VaultEncryptionService implements EncryptionService {
     return decodeBase64(plaintext);
   }
 
+  private VaultDataKey generateDataKey() {
+    LogicalResponse response = logicalWriteWithReauthentication(
+        "transit/datakey/plaintext/" + configuration.getKeyName(),
+        Collections.singletonMap("bits", DATA_KEY_BITS));
+    validateVaultOperationResponse(response, "Vault data key generation failed");
+
+    return new VaultDataKey(response.getData().get("ciphertext"), Base64.getDecoder().decode(response.getData().get("plaintext")));
+  }
+
+  private byte[] unwrapDataKey(String wrappedKey) {
+    LogicalResponse response = logicalWriteWithReauthentication(
+        "transit/decrypt/" + configuration.getKeyName(),
+        Collections.singletonMap("ciphertext", wrappedKey));
+    validateVaultOperationResponse(response, "Vault data key decrypt failed");
+
+    return Base64.getDecoder().decode(response.getData().get("plaintext"));
+  }
+
+  /**
+   * Values that localOperation resolves (returns non-null for) are not sent to Vault. Results received from Vault are
+   * handed to remoteResultListener, if given, with their input.
+   */
+  private List<String> doBatch(
+      List<String> values,
+      String operation,
+      String inputField,
+      String outputField,
+      UnaryOperator<String> encodeInput,
+      UnaryOperator<String> decodeOutput,
+      UnaryOperator<String> localOperation,
+      BiConsumer<String, String> remoteResultListener) {
+    List<String> results = new ArrayList<>(values);
+    Map<Integer, String> errors = new LinkedHashMap<>();
+
+    List<Integer> pending = new ArrayList<>();
+    for (int i = 0; i < values.size(); i++) {
+      String value = values.get(i);
+      if (Strings.isBlank(value)) {
+        continue;
+      }
+
+      try {
+        String result = localOperation.apply(value);
+        if (result != null) {
+          results.set(i, result);
+        } else {
+          pending.add(i);
+        }
+      } catch (VaultEncryptionOperationException e) {
+        errors.put(i, e.getMessage());
+        results.set(i, null);
+      }
+    }
+
+    int batchSize = Math.max(1, configuration.getBatchSize());
+    for (int from = 0; from < pending.size(); from += batchSize) {
+      List<Integer> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+
+      JsonArray batchInput = Json.array();
+      batch.forEach((index) -> batchInput.add(Json.object().add(inputField, encodeInput.apply(values.get(index)))));
+
+      LogicalResponse response = logicalWriteWithReauthentication(
+          "transit/" + operation + "/" + configuration.getKeyName(),
+          ImmutableMap.of("batch_input", batchInput, "partial_failure_response_code", BATCH_PARTIAL_FAILURE_STATUS));
+      JsonArray batchResults = batchResults(response, batch.size(), "Vault batch " + operation + " failed");
+
+      for (int i = 0; i < batch.size(); i++) {
+        JsonObject item = batchResults.get(i).asObject();
+        String error = item.getString("error", null);
+        if (Strings.isNotBlank(error)) {
+          errors.put(batch.get(i), error);
+          results.set(batch.get(i), null);
+        } else {
+          String result = decodeOutput.apply(item.getString(outputField, null));
+          results.set(batch.get(i), result);
+          if (remoteResultListener != null) {
+            remoteResultListener.accept(values.get(batch.get(i)), result);
+          }
+        }
+      }
+    }
+
+    if (!errors.isEmpty()) {
+      throw new VaultEncryptionBatchException("Vault batch " + operation + " failed for " + errors.size() + " of " + values.size() + " values", results, errors);
+    }
+
+    return results;
+  }
+
+  /**
+   * Batches are sent with partial_failure_response_code so a batch where only some items failed responds 200. A batch
+   * where every item failed, or any batch on Vault versions without partial_failure_response_code, responds 400 with
+   * every item's result. Logical.write and VaultHttpLogical.write return 4xx responses rather than throwing, so those
+   * results are still mapped back per item; any other non-2xx status throws from write before this is reached. Only
+   * fail the whole batch when there are no per-item results to map back.
+   */
+  private JsonArray batchResults(LogicalResponse response, int expectedSize, String errorMessage) {
+    JsonObject data = response == null ? null : response.getDataObject();
+    JsonValue batchResults = data == null ? null : data.get("batch_results");
+
+    if (batchResults == null || !batchResults.isArray()) {
+      validateVaultOperationResponse(response, errorMessage);
+      throw new VaultEncryptionOperationException(errorMessage + ": missing batch_results");
+    }
+
+    if (batchResults.asArray().size() != expectedSize) {
+      throw new VaultEncryptionOperationException(errorMessage + ": expected " + expectedSize + " results, got " + batchResults.asArray().size());
+    }
+
+    return batchResults.asArray();
+  }
+
   private Vault getDriver() {
     if (driver == null) {
       synchronized (this) {
         if (driver == null) {
           Vault authenticationDriver = buildVaultDriver(null); // This is used to authenticate only
           driver = buildAuthenticatedDriver(authenticationDriver);
+          tokenRenewal.schedule(this::renewToken);
         }
       }
     }
@@ -314,6 +564,59 @@ public class VaultEncryptionService implements EncryptionService {
     return driver;
   }
 
+  private VaultToken login(Vault authenticationDriver) {
+    try {
+      AuthResponse resp;
+
+      switch (getConfiguration().getAuthentication()) {
+        case TOKEN:
+          if (configuration.getToken() == null) {
+            throw new VaultEncryptionConfigurationException("Vault token required for TOKEN authentication");
+          }
+
+          return VaultToken.unmanaged(configuration.getToken());
+
+        case APPROLE:
+          resp = authenticationDriver.auth().loginByAppRole(configuration.getAppRole(), configuration.getSecretId());
+          validateVaultAuthenticationResponse(resp, "Unable to login via vault app-role");
+
+          return VaultToken.fromAuthResponse(resp);
+
+        case APPID:
+          resp = authenticationDriver.auth().loginByAppID("app-id/login", configuration.getAppId(), configuration.getUserId());
+          validateVaultAuthenticationResponse(resp, "Unable to login via vault app-id");
+
+          return VaultToken.fromAuthResponse(resp);
+
+        default:
+          throw new VaultEncryptionConfigurationException("Invalid vault authentication type: " + getConfiguration().getAuthentication());
+      }
+    } catch (VaultException e) {
+      throw new VaultEncryptionAuthenticationException("Unable to login to vault", e);
+    }
+  }
+
+  /**
+   * @return client shared with every Vault facility using the same server and HTTP settings
+   */
+  private synchronized VaultHttpClient httpClient() {
+    if (httpClient == null) {
+      if (configuration.isSsl()) {
+        LOGGER.warn("ssl-enabled does not disable certificate verification for the HTTP_CLIENT transport. Using the JVM trust store.");
+      }
+
+      httpClient = VaultHttpClientRegistry.acquire(VaultHttpClientOptions.builder()
+          .address(configuration.getUri())
+          .connectTimeout(configuration.getConnectTimeout())
+          .requestTimeout(configuration.getRequestTimeout())
+          .maxRetries(configuration.getMaxRetries())
+          .retryInterval(configuration.getRetryInterval())
+          .build());
+    }
+
+    return httpClient;
+  }
+
   @SuppressWarnings("checkstyle:MagicNumber")
   private void validateVaultAuthenticationResponse(VaultResponse response, String errorMessage) {
     if (response != null && response.getRestResponse() != null && (response.getRestResponse().getStatus() < 200 || response.getRestResponse().getStatus() >= 300)) {
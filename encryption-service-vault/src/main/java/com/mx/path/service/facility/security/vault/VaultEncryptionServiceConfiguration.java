@@ -15,6 +15,11 @@ public class VaultEncryptionServiceConfiguration {
     TOKEN
   }
 
+  public enum Transport {
+    DRIVER,
+    HTTP_CLIENT
+  }
+
   private static final int DEFAULT_ENGINE_VERSION = 1;
   private static final String DEFAULT_URI = "http://127.0.0.1:8200";
   private static final int DEFAULT_MAX_RETRIES = 0;
@@ -23,6 +28,13 @@ public class VaultEncryptionServiceConfiguration {
   private static final String DEFAULT_KEY_NAME = "middleware_session";
   private static final int DEFAULT_NUM_KEYS_TO_KEEP_COUNT = 6;
   private static final boolean DEFAULT_SSL_ENABLED = false;
+  private static final int DEFAULT_BATCH_SIZE = 100;
+  private static final boolean DEFAULT_TOKEN_RENEWAL_ENABLED = true;
+  private static final double DEFAULT_TOKEN_RENEWAL_RATIO = 0.75;
+  private static final Duration DEFAULT_TOKEN_RENEWAL_RETRY_INTERVAL = Duration.ofSeconds(10);
+  private static final Transport DEFAULT_TRANSPORT = Transport.DRIVER;
+  private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+  private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
 
   @ConfigurationField
   private boolean enabled = true;
@@ -33,6 +45,12 @@ public class VaultEncryptionServiceConfiguration {
   @ConfigurationField
   private String keyName = DEFAULT_KEY_NAME;
 
+  /**
+   * Maximum number of values sent in one request by {@link VaultEncryptionService#encryptAll} and {@link VaultEncryptionService#decryptAll}
+   */
+  @ConfigurationField
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
   @ConfigurationField
   private int maxRetries = DEFAULT_MAX_RETRIES;
 
@@ -65,4 +83,47 @@ public class VaultEncryptionServiceConfiguration {
 
   @ConfigurationField
   private AuthenticationType authentication = DEFAULT_AUTHENTICATION;
+
+  @ConfigurationField
+  private VaultEnvelopeConfiguration envelope = new VaultEnvelopeConfiguration();
+
+  @ConfigurationField
+  private VaultDecryptCacheConfiguration decryptCache = new VaultDecryptCacheConfiguration();
+
+  /**
+   * Renew or replace the client token in the background before its lease expires
+   */
+  @ConfigurationField
+  private boolean tokenRenewalEnabled = DEFAULT_TOKEN_RENEWAL_ENABLED;
+
+  /**
+   * Fraction of the token's lease to let elapse before renewing it
+   */
+  @ConfigurationField
+  private double tokenRenewalRatio = DEFAULT_TOKEN_RENEWAL_RATIO;
+
+  /**
+   * How long to wait before trying again after a failed background renewal
+   */
+  @ConfigurationField
+  private Duration tokenRenewalRetryInterval = DEFAULT_TOKEN_RENEWAL_RETRY_INTERVAL;
+
+  /**
+   * How requests reach Vault. DRIVER opens a connection per request. HTTP_CLIENT sends them over a pooled, HTTP/2
+   * client shared with other Vault facilities using the same server
+   */
+  @ConfigurationField
+  private Transport transport = DEFAULT_TRANSPORT;
+
+  /**
+   * Connect timeout used by the HTTP_CLIENT transport
+   */
+  @ConfigurationField
+  private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+  /**
+   * Request timeout used by the HTTP_CLIENT transport
+   */
+  @ConfigurationField
+  private Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
 }
@@ -0,0 +1,196 @@
+package com.mx.path.service.facility.security.vault;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Encrypts locally with AES-GCM under data keys issued by the transit engine.
+ *
+ * <p>Ciphertext format: {@code vault-envelope:v1:<wrapped data key>:<nonce + ciphertext + tag>}, both parts
+ * unpadded base64url. The prefix and wrapped data key are authenticated as associated data.
+ *
+ * <p>One data key is used for encryption until it reaches {@link VaultEnvelopeConfiguration#getDataKeyMaxUses()} or
+ * {@link VaultEnvelopeConfiguration#getDataKeyLifetime()}. Wrapped data keys seen while decrypting are unwrapped by
+ * Vault once and kept in a bounded, least-recently-used cache.
+ */
+final class VaultEnvelopeCipher {
+  static final String PREFIX = "vault-envelope:v1:";
+
+  private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+  private static final int NONCE_BYTES = 12;
+  private static final int TAG_BITS = 128;
+  private static final char SEPARATOR = ':';
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  private final VaultEnvelopeConfiguration configuration;
+  private final Supplier<VaultDataKey> dataKeyGenerator;
+  private final Function<String, byte[]> dataKeyUnwrapper;
+  private final SecureRandom random = new SecureRandom();
+  private final LinkedHashMap<String, SecretKey> unwrappedKeys = new LinkedHashMap<>(16, 0.75f, true);
+  private volatile VaultDataKey currentKey;
+
+  /**
+   * @param configuration envelope configuration
+   * @param dataKeyGenerator requests a new data key from Vault
+   * @param dataKeyUnwrapper decrypts a wrapped data key with Vault, returning the raw key bytes
+   */
+  VaultEnvelopeCipher(VaultEnvelopeConfiguration configuration, Supplier<VaultDataKey> dataKeyGenerator, Function<String, byte[]> dataKeyUnwrapper) {
+    this.configuration = configuration;
+    this.dataKeyGenerator = dataKeyGenerator;
+    this.dataKeyUnwrapper = dataKeyUnwrapper;
+  }
+
+  /**
+   * @param value to evaluate
+   * @return true if value is an envelope ciphertext
+   */
+  static boolean isEnvelope(String value) {
+    return value != null && value.startsWith(PREFIX);
+  }
+
+  /**
+   * @param ciphertext envelope ciphertext
+   * @return wrapped data key embedded in ciphertext, or null if malformed
+   */
+  static String wrappedKey(String ciphertext) {
+    int separator = ciphertext.indexOf(SEPARATOR, PREFIX.length());
+    if (!isEnvelope(ciphertext) || separator < 0) {
+      return null;
+    }
+
+    try {
+      return new String(DECODER.decode(ciphertext.substring(PREFIX.length(), separator)), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param plaintext to encrypt
+   * @return envelope ciphertext
+   */
+  String encrypt(String plaintext) {
+    VaultDataKey dataKey = acquireDataKey();
+    String header = PREFIX + ENCODER.encodeToString(dataKey.getWrappedKey().getBytes(StandardCharsets.UTF_8));
+
+    byte[] nonce = new byte[NONCE_BYTES];
+    random.nextBytes(nonce);
+
+    try {
+      Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+      cipher.init(Cipher.ENCRYPT_MODE, dataKey.getKey(), new GCMParameterSpec(TAG_BITS, nonce));
+      cipher.updateAAD(header.getBytes(StandardCharsets.UTF_8));
+      byte[] sealed = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+
+      byte[] payload = ByteBuffer.allocate(NONCE_BYTES + sealed.length).put(nonce).put(sealed).array();
+      return header + SEPARATOR + ENCODER.encodeToString(payload);
+    } catch (GeneralSecurityException e) {
+      throw new VaultEncryptionOperationException("Envelope encrypt failed", e);
+    }
+  }
+
+  /**
+   * @param ciphertext envelope ciphertext
+   * @return plaintext
+   */
+  String decrypt(String ciphertext) {
+    int separator = ciphertext.indexOf(SEPARATOR, PREFIX.length());
+    if (!isEnvelope(ciphertext) || separator < 0) {
+      throw new VaultEncryptionOperationException("Invalid envelope ciphertext");
+    }
+
+    String header = ciphertext.substring(0, separator);
+
+    try {
+      String wrappedKey = new String(DECODER.decode(header.substring(PREFIX.length())), StandardCharsets.UTF_8);
+      byte[] payload = DECODER.decode(ciphertext.substring(separator + 1));
+      if (payload.length < NONCE_BYTES + TAG_BITS / Byte.SIZE) {
+        throw new VaultEncryptionOperationException("Invalid envelope ciphertext");
+      }
+
+      Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+      cipher.init(Cipher.DECRYPT_MODE, unwrappedKey(wrappedKey), new GCMParameterSpec(TAG_BITS, payload, 0, NONCE_BYTES));
+      cipher.updateAAD(header.getBytes(StandardCharsets.UTF_8));
+
+      return new String(cipher.doFinal(payload, NONCE_BYTES, payload.length - NONCE_BYTES), StandardCharsets.UTF_8);
+    } catch (GeneralSecurityException | IllegalArgumentException e) {
+      throw new VaultEncryptionOperationException("Envelope decrypt failed", e);
+    }
+  }
+
+  /**
+   * Drop the current data key and all unwrapped data keys.
+   */
+  synchronized void clear() {
+    currentKey = null;
+    synchronized (unwrappedKeys) {
+      unwrappedKeys.clear();
+    }
+  }
+
+  /**
+   * @return number of unwrapped data keys held for decryption
+   */
+  int cachedKeyCount() {
+    synchronized (unwrappedKeys) {
+      return unwrappedKeys.size();
+    }
+  }
+
+  private VaultDataKey acquireDataKey() {
+    VaultDataKey dataKey = currentKey;
+    if (dataKey != null && dataKey.tryUse(configuration.getDataKeyMaxUses(), configuration.getDataKeyLifetime())) {
+      return dataKey;
+    }
+
+    synchronized (this) {
+      dataKey = currentKey;
+      if (dataKey == null || !dataKey.tryUse(configuration.getDataKeyMaxUses(), configuration.getDataKeyLifetime())) {
+        dataKey = dataKeyGenerator.get();
+        dataKey.tryUse(configuration.getDataKeyMaxUses(), configuration.getDataKeyLifetime());
+        currentKey = dataKey;
+        cacheUnwrappedKey(dataKey.getWrappedKey(), dataKey.getKey());
+      }
+
+      return dataKey;
+    }
+  }
+
+  private SecretKey unwrappedKey(String wrappedKey) {
+    synchronized (unwrappedKeys) {
+      SecretKey key = unwrappedKeys.get(wrappedKey);
+      if (key != null) {
+        return key;
+      }
+    }
+
+    SecretKey key = new VaultDataKey(wrappedKey, dataKeyUnwrapper.apply(wrappedKey)).getKey();
+    cacheUnwrappedKey(wrappedKey, key);
+
+    return key;
+  }
+
+  private void cacheUnwrappedKey(String wrappedKey, SecretKey key) {
+    synchronized (unwrappedKeys) {
+      unwrappedKeys.put(wrappedKey, key);
+
+      Iterator<String> eldest = unwrappedKeys.keySet().iterator();
+      while (eldest.hasNext() && unwrappedKeys.size() > configuration.getDataKeyCacheSize()) {
+        eldest.next();
+        eldest.remove();
+      }
+    }
+  }
+}
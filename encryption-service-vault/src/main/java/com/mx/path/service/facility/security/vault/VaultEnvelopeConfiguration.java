@@ -0,0 +1,43 @@
+package com.mx.path.service.facility.security.vault;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+import com.mx.path.core.common.configuration.ConfigurationField;
+
+/**
+ * Local (envelope) encryption with data keys issued by the transit engine.
+ */
+@Data
+public class VaultEnvelopeConfiguration {
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final Duration DEFAULT_DATA_KEY_LIFETIME = Duration.ofHours(1);
+  private static final long DEFAULT_DATA_KEY_MAX_USES = 1_000_000;
+  private static final int DEFAULT_DATA_KEY_CACHE_SIZE = 1000;
+
+  /**
+   * Encrypt locally with AES-GCM using a data key from {@code transit/datakey/plaintext}. Envelope ciphertexts are
+   * always decryptable, whether or not this is enabled.
+   */
+  @ConfigurationField
+  private boolean enabled = DEFAULT_ENABLED;
+
+  /**
+   * How long one data key is used for encryption before a new one is requested.
+   */
+  @ConfigurationField
+  private Duration dataKeyLifetime = DEFAULT_DATA_KEY_LIFETIME;
+
+  /**
+   * How many values one data key encrypts before a new one is requested. Bounds random nonce reuse for AES-GCM.
+   */
+  @ConfigurationField
+  private long dataKeyMaxUses = DEFAULT_DATA_KEY_MAX_USES;
+
+  /**
+   * Number of unwrapped data keys kept for decryption.
+   */
+  @ConfigurationField
+  private int dataKeyCacheSize = DEFAULT_DATA_KEY_CACHE_SIZE;
+}
@@ -0,0 +1,111 @@
+package com.mx.path.service.facility.security.vault
+
+import java.time.Duration
+
+import spock.lang.Specification
+
+class VaultDecryptCacheTest extends Specification {
+  VaultDecryptCacheConfiguration configuration
+  VaultDecryptCache subject
+
+  def setup() {
+    configuration = new VaultDecryptCacheConfiguration().tap {
+      setEnabled(true)
+      setMaxEntries(2)
+    }
+    subject = new VaultDecryptCache(configuration)
+  }
+
+  def "caches plaintext by ciphertext"() {
+    when:
+    subject.put("vault:v1:abc", 1, "plaintext")
+
+    then:
+    subject.get("vault:v1:abc") == "plaintext"
+    subject.get("vault:v1:def") == null
+    subject.getHitCount() == 1
+    subject.getMissCount() == 1
+    subject.getHitRate() == 0.5d
+  }
+
+  def "evicts least recently used"() {
+    given:
+    subject.put("vault:v1:a", 1, "a")
+    subject.put("vault:v1:b", 1, "b")
+    subject.get("vault:v1:a")
+
+    when:
+    subject.put("vault:v1:c", 1, "c")
+
+    then:
+    subject.size() == 2
+    subject.getEvictionCount() == 1
+    subject.get("vault:v1:a") == "a"
+    subject.get("vault:v1:b") == null
+  }
+
+  def "expires entries"() {
+    given:
+    configuration.setTtl(Duration.ZERO)
+    subject.put("vault:v1:a", 1, "a")
+
+    expect:
+    subject.get("vault:v1:a") == null
+    subject.size() == 0
+  }
+
+  def "put() zeroes expired entries that are never looked up again"() {
+    given:
+    configuration.setTtl(Duration.ZERO)
+    subject.put("vault:v1:a", 1, "a")
+    byte[] plaintext = subject.entries.values().first().plaintext
+
+    when:
+    configuration.setTtl(Duration.ofMinutes(5))
+    subject.put("vault:v1:b", 1, "b")
+
+    then:
+    plaintext == [0] as byte[]
+    subject.size() == 1
+    subject.getEvictionCount() == 0
+    subject.get("vault:v1:b") == "b"
+  }
+
+  def "invalidateBelow() drops older key versions"() {
+    given:
+    subject.put("vault:v1:a", 1, "a")
+    subject.put("vault:v3:b", 3, "b")
+
+    when:
+    subject.invalidateBelow(2)
+
+    then:
+    subject.get("vault:v1:a") == null
+    subject.get("vault:v3:b") == "b"
+
+    when: "a stale result arrives"
+    subject.put("vault:v1:a", 1, "a")
+
+    then:
+    subject.get("vault:v1:a") == null
+  }
+
+  def "clear()"() {
+    given:
+    subject.put("vault:v1:a", 1, "a")
+
+    when:
+    subject.clear()
+
+    then:
+    subject.size() == 0
+  }
+
+  def "keyVersion()"() {
+    expect:
+    VaultDecryptCache.keyVersion("vault:v12:abc") == 12
+    VaultDecryptCache.keyVersion("vault-12345") == 0
+    VaultDecryptCache.keyVersion(VaultEnvelopeCipher.PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString("vault:v4:key".getBytes("UTF-8")) + ":abc") == 4
+    VaultDecryptCache.keyVersion(VaultEnvelopeCipher.PREFIX + "abc") == 0
+  }
+}
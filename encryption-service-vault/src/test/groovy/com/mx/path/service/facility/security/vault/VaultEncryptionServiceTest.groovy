@@ -2,6 +2,7 @@ package com.mx.path.service.facility.security.vault
 
 import static org.mockito.ArgumentMatchers.any
 import static org.mockito.ArgumentMatchers.eq
+import static org.mockito.Mockito.doAnswer
 import static org.mockito.Mockito.doReturn
 import static org.mockito.Mockito.doThrow
 import static org.mockito.Mockito.mock
@@ -11,16 +12,22 @@ import static org.mockito.Mockito.times
 import static org.mockito.Mockito.verify
 import static org.mockito.Mockito.when
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 import com.bettercloud.vault.Vault
 import com.bettercloud.vault.VaultException
 import com.bettercloud.vault.api.Auth
 import com.bettercloud.vault.api.Logical
+import com.bettercloud.vault.json.Json
 import com.bettercloud.vault.response.AuthResponse
 import com.bettercloud.vault.response.LogicalResponse
 import com.bettercloud.vault.response.VaultResponse
 import com.bettercloud.vault.rest.RestResponse
 import com.google.common.collect.ImmutableMap
 import com.mx.path.core.common.accessor.PathResponseStatus
+import com.mx.path.service.facility.vault.VaultHttpClientRegistry
+import com.mx.path.service.facility.vault.VaultHttpDriver
 
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -136,6 +143,49 @@ class VaultEncryptionServiceTest extends Specification {
     configWithAppRoleSSL()  | _
   }
 
+  def "buildVaultDriver shares HTTP client when transport is HTTP_CLIENT"() {
+    given:
+    def config = configWithAppRole().tap {
+      setTransport(VaultEncryptionServiceConfiguration.Transport.HTTP_CLIENT)
+    }
+    subject = new VaultEncryptionService(config)
+
+    when:
+    def driver = subject.buildVaultDriver("token12345")
+    def otherDriver = new VaultEncryptionService(config).buildVaultDriver("token67890")
+
+    then:
+    driver instanceof VaultHttpDriver
+    otherDriver instanceof VaultHttpDriver
+    driver.getClient().is(otherDriver.getClient())
+    driver.getClient().getOptions().getAddress() == config.getUri()
+    driver.getClient().getOptions().getRequestTimeout() == config.getRequestTimeout()
+  }
+
+  def "close() releases shared HTTP client"() {
+    given:
+    def config = configWithAppRole().tap {
+      setUri("http://localhost:8299")
+      setTransport(VaultEncryptionServiceConfiguration.Transport.HTTP_CLIENT)
+    }
+    subject = new VaultEncryptionService(config)
+    def other = new VaultEncryptionService(config)
+    def options = subject.buildVaultDriver("token12345").getClient().getOptions()
+    other.buildVaultDriver("token67890")
+
+    when:
+    subject.close()
+
+    then:
+    VaultHttpClientRegistry.references(options) == 1
+
+    when:
+    other.close()
+
+    then:
+    VaultHttpClientRegistry.references(options) == 0
+  }
+
   @Unroll
   def "decrypt()"() {
     given:
@@ -229,6 +279,225 @@ class VaultEncryptionServiceTest extends Specification {
     ciphertext == "plaintext"
   }
 
+  def batchResponse(int status, String body) {
+    return new LogicalResponse(new RestResponse(status, "application/json", body.replace('\'', '\"').getBytes("UTF-8")), 0, Logical.logicalOperations.writeV1)
+  }
+
+  def "encryptAll() sends batch_input in batches"() {
+    given:
+    def config = configWithAppRole().tap { setBatchSize(2) }
+    subject = new VaultEncryptionService(config)
+    subject.setDriver(vaultDriver)
+
+    when(logicalDriver.write("transit/encrypt/test-key", ImmutableMap.of("partial_failure_response_code", 200, "batch_input", Json.array()
+        .add(Json.object().add("plaintext", "b25l"))
+        .add(Json.object().add("plaintext", "dHdv")))))
+        .thenReturn(batchResponse(200, "{'data': {'batch_results': [{'ciphertext': 'vault:v1:one'}, {'ciphertext': 'vault:v1:two'}]}}"))
+    when(logicalDriver.write("transit/encrypt/test-key", ImmutableMap.of("partial_failure_response_code", 200, "batch_input", Json.array()
+        .add(Json.object().add("plaintext", "dGhyZWU=")))))
+        .thenReturn(batchResponse(200, "{'data': {'batch_results': [{'ciphertext': 'vault:v1:three'}]}}"))
+
+    when:
+    def result = subject.encryptAll(["one", "", "two", null, "three"])
+
+    then:
+    result == ["vault:v1:one", "", "vault:v1:two", null, "vault:v1:three"]
+  }
+
+  def "decryptAll() decodes results"() {
+    given:
+    subject = new VaultEncryptionService(configWithAppRole())
+    subject.setDriver(vaultDriver)
+
+    when(logicalDriver.write("transit/decrypt/test-key", ImmutableMap.of("partial_failure_response_code", 200, "batch_input", Json.array()
+        .add(Json.object().add("ciphertext", "vault:v1:one"))
+        .add(Json.object().add("ciphertext", "vault:v1:two")))))
+        .thenReturn(batchResponse(200, "{'data': {'batch_results': [{'plaintext': 'b25l'}, {'plaintext': 'dHdv'}]}}"))
+
+    when:
+    def result = subject.decryptAll(["vault:v1:one", "vault:v1:two"])
+
+    then:
+    result == ["one", "two"]
+  }
+
+  def "decryptAll() maps per-item errors back to inputs"() {
+    given:
+    subject = new VaultEncryptionService(configWithAppRole())
+    subject.setDriver(vaultDriver)
+
+    when(logicalDriver.write(eq("transit/decrypt/test-key"), any()))
+        .thenReturn(batchResponse(400, "{'data': {'batch_results': [{'plaintext': 'b25l'}, {'error': 'invalid ciphertext'}]}}"))
+
+    when:
+    subject.decryptAll(["vault:v1:one", "bad"])
+
+    then:
+    def ex = thrown(VaultEncryptionBatchException)
+    ex.getMessage() == "Vault batch decrypt failed for 1 of 2 values"
+    ex.getResults() == ["one", null]
+    ex.getErrors() == [1: "invalid ciphertext"]
+  }
+
+  def "decryptAll() maps per-item errors back to inputs when every item fails"() {
+    given:
+    subject = new VaultEncryptionService(configWithAppRole())
+    subject.setDriver(vaultDriver)
+
+    when(logicalDriver.write(eq("transit/decrypt/test-key"), any()))
+        .thenReturn(batchResponse(400, "{'data': {'batch_results': [{'error': 'invalid ciphertext'}, {'error': 'cipher: message authentication failed'}]}}"))
+
+    when:
+    subject.decryptAll(["bad", "tampered"])
+
+    then:
+    def ex = thrown(VaultEncryptionBatchException)
+    ex.getMessage() == "Vault batch decrypt failed for 2 of 2 values"
+    ex.getResults() == [null, null]
+    ex.getErrors() == [0: "invalid ciphertext", 1: "cipher: message authentication failed"]
+  }
+
+  def "decryptAll() raises exception when batch fails"() {
+    given:
+    subject = new VaultEncryptionService(configWithAppRole())
+    subject.setDriver(vaultDriver)
+
+    when(logicalDriver.write(eq("transit/decrypt/test-key"), any()))
+        .thenReturn(batchResponse(500, "{'errors': ['internal error']}"))
+
+    when:
+    subject.decryptAll(["vault:v1:one"])
+
+    then:
+    def ex = thrown(VaultEncryptionOperationException)
+    ex.getMessage().startsWith("Vault batch decrypt failed (500)")
+  }
+
+  def "encryptAll() returns input when not enabled"() {
+    given:
+    subject = new VaultEncryptionService(new VaultEncryptionServiceConfiguration().tap { setEnabled(false) })
+
+    expect:
+    subject.encryptAll(["one", "two"]) == ["one", "two"]
+    subject.decryptAll(["one", "two"]) == ["one", "two"]
+  }
+
+  def "encrypt() in envelope mode encrypts locally with a transit data key"() {
+    given:
+    def config = configWithAppRole().tap { getEnvelope().setEnabled(true) }
+    subject = new VaultEncryptionService(config)
+    subject.setDriver(vaultDriver)
+
+    def dataKeyResponse = mock(LogicalResponse)
+    when(dataKeyResponse.getData()).thenReturn(ImmutableMap.of(
+        "ciphertext", "vault:v1:wrapped",
+        "plaintext", "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8="))
+    when(logicalDriver.write("transit/datakey/plaintext/test-key", Collections.singletonMap("bits", 256))).thenReturn(dataKeyResponse)
+
+    when:
+    def first = subject.encrypt("plaintext")
+    def second = subject.encrypt("plaintext")
+
+    then:
+    subject.isEncrypted(first)
+    first != second
+    subject.decrypt(first) == "plaintext"
+    subject.decryptAll([first, second]) == ["plaintext", "plaintext"]
+    verify(logicalDriver, times(1)).write("transit/datakey/plaintext/test-key", Collections.singletonMap("bits", 256)) || true
+    verify(logicalDriver, never()).write(eq("transit/encrypt/test-key"), any()) || true
+  }
+
+  def "decrypt() unwraps envelope data key through transit"() {
+    given:
+    def config = configWithAppRole().tap { getEnvelope().setEnabled(true) }
+    def dataKeyResponse = mock(LogicalResponse)
+    when(dataKeyResponse.getData()).thenReturn(ImmutableMap.of(
+        "ciphertext", "vault:v1:wrapped",
+        "plaintext", "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8="))
+    when(logicalDriver.write("transit/datakey/plaintext/test-key", Collections.singletonMap("bits", 256))).thenReturn(dataKeyResponse)
+
+    def encrypter = new VaultEncryptionService(config)
+    encrypter.setDriver(vaultDriver)
+    def ciphertext = encrypter.encrypt("plaintext")
+
+    def unwrapResponse = mock(LogicalResponse)
+    when(unwrapResponse.getData()).thenReturn(Collections.singletonMap("plaintext", "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8="))
+    when(logicalDriver.write("transit/decrypt/test-key", Collections.singletonMap("ciphertext", "vault:v1:wrapped"))).thenReturn(unwrapResponse)
+
+    subject = new VaultEncryptionService(configWithAppRole())
+    subject.setDriver(vaultDriver)
+
+    when:
+    def plaintext = subject.decrypt(ciphertext)
+    subject.decrypt(ciphertext)
+
+    then:
+    plaintext == "plaintext"
+    verify(logicalDriver, times(1)).write("transit/decrypt/test-key", Collections.singletonMap("ciphertext", "vault:v1:wrapped")) || true
+  }
+
+  def "decrypt() serves repeated ciphertexts from decrypt cache"() {
+    given:
+    def config = configWithAppRole().tap { getDecryptCache().setEnabled(true) }
+    subject = new VaultEncryptionService(config)
+    subject.setDriver(vaultDriver)
+
+    def decryptResponse = mock(LogicalResponse)
+    when(decryptResponse.getData()).thenReturn(Collections.singletonMap("plaintext", "cGxhaW50ZXh0"))
+    when(logicalDriver.write(eq("transit/decrypt/test-key"), any())).thenReturn(decryptResponse)
+
+    when:
+    def first = subject.decrypt("vault:v2:abc")
+    def second = subject.decrypt("vault:v2:abc")
+    def batch = subject.decryptAll(["vault:v2:abc"])
+
+    then:
+    first == "plaintext"
+    second == "plaintext"
+    batch == ["plaintext"]
+    verify(logicalDriver, times(1)).write("transit/decrypt/test-key", Collections.singletonMap("ciphertext", "vault:v2:abc")) || true
+    subject.getDecryptCache().getHitCount() == 2
+    subject.getDecryptCache().getMissCount() == 1
+  }
+
+  def "decryptAll() caches batch results"() {
+    given:
+    def config = configWithAppRole().tap { getDecryptCache().setEnabled(true) }
+    subject = new VaultEncryptionService(config)
+    subject.setDriver(vaultDriver)
+
+    when(logicalDriver.write(eq("transit/decrypt/test-key"), any()))
+        .thenReturn(batchResponse(200, "{'data': {'batch_results': [{'plaintext': 'b25l'}]}}"))
+
+    when:
+    subject.decryptAll(["vault:v1:one"])
+
+    then:
+    subject.decrypt("vault:v1:one") == "one"
+    subject.getDecryptCache().getHitCount() == 1
+  }
+
+  def "setMinVersion() invalidates cached results of older key versions"() {
+    given:
+    def config = configWithAppRole().tap { getDecryptCache().setEnabled(true) }
+    subject = new VaultEncryptionService(config)
+    subject.setDriver(vaultDriver)
+    subject.getDecryptCache().put("vault:v1:abc", 1, "old")
+    subject.getDecryptCache().put("vault:v3:abc", 3, "new")
+
+    when:
+    subject.setMinVersion(3)
+
+    then:
+    subject.getDecryptCache().get("vault:v1:abc") == null
+    subject.getDecryptCache().get("vault:v3:abc") == "new"
+  }
+
+  def "decrypt cache is disabled by default"() {
+    expect:
+    new VaultEncryptionService(configWithAppRole()).getDecryptCache() == null
+  }
+
   def "isEncrypted()"() {
     given:
     subject = new VaultEncryptionService(config)
@@ -238,6 +507,7 @@ class VaultEncryptionServiceTest extends Specification {
     !subject.isEncrypted("")
     !subject.isEncrypted("some crap")
     subject.isEncrypted("vault-1231827361")
+    subject.isEncrypted("vault-envelope:v1:abc:def")
 
     where:
     config              | _
@@ -653,6 +923,222 @@ class VaultEncryptionServiceTest extends Specification {
     verify(subject, never()).resetDriver() || true
   }
 
+  def "login records expiring token lease"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultEncryptionService(config))
+
+    def authDriver = mock(Auth)
+    def authResponse = mock(AuthResponse)
+
+    when(vaultDriver.auth()).thenReturn(authDriver)
+    when(authDriver.loginByAppRole(config.getAppRole(), config.getSecretId())).thenReturn(authResponse)
+    when(authResponse.getAuthClientToken()).thenReturn("token12345")
+    when(authResponse.getAuthLeaseDuration()).thenReturn(3600L)
+    when(authResponse.isAuthRenewable()).thenReturn(true)
+
+    def encryptResponse = mock(LogicalResponse)
+    when(encryptResponse.getData()).thenReturn(Collections.singletonMap("ciphertext", "vault:v1:abc"))
+    when(logicalDriver.write(eq("transit/encrypt/" + config.getKeyName()), any())).thenReturn(encryptResponse)
+
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+
+    when:
+    subject.encrypt("text")
+
+    then:
+    subject.getToken().getClientToken() == "token12345"
+    subject.getToken().getLeaseDurationSeconds() == 3600L
+    subject.getToken().isRenewable()
+    subject.getToken().isExpiring()
+  }
+
+  def "login with TOKEN authentication does not manage lease"() {
+    given:
+    subject = spy(new VaultEncryptionService(configWithToken()))
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+
+    when:
+    subject.buildAuthenticatedDriver(vaultDriver)
+
+    then:
+    subject.getToken().getClientToken() == "token12345"
+    !subject.getToken().isExpiring()
+  }
+
+  def "renewToken() extends renewable lease without logging in again"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultEncryptionService(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+    def renewResponse = mock(AuthResponse)
+
+    when(vaultDriver.auth()).thenReturn(authDriver)
+    when(authDriver.loginByAppRole(config.getAppRole(), config.getSecretId())).thenReturn(loginResponse)
+    when(loginResponse.getAuthClientToken()).thenReturn("token12345")
+    when(loginResponse.getAuthLeaseDuration()).thenReturn(3600L)
+    when(loginResponse.isAuthRenewable()).thenReturn(true)
+    when(authDriver.renewSelf()).thenReturn(renewResponse)
+    when(renewResponse.getAuthLeaseDuration()).thenReturn(3600L)
+    when(renewResponse.isAuthRenewable()).thenReturn(true)
+
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+    subject.setDriver(subject.buildAuthenticatedDriver(vaultDriver))
+
+    when:
+    subject.renewToken()
+
+    then:
+    verify(authDriver, times(1)).renewSelf() || true
+    verify(authDriver, times(1)).loginByAppRole(config.getAppRole(), config.getSecretId()) || true
+    subject.getToken().getClientToken() == "token12345"
+    subject.getToken().isRenewable()
+  }
+
+  def "renewToken() logs in again once lease reaches max TTL"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultEncryptionService(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+    def renewResponse = mock(AuthResponse)
+
+    when(vaultDriver.auth()).thenReturn(authDriver)
+    when(authDriver.loginByAppRole(config.getAppRole(), config.getSecretId())).thenReturn(loginResponse)
+    when(loginResponse.getAuthClientToken()).thenReturn("token12345", "token67890")
+    when(loginResponse.getAuthLeaseDuration()).thenReturn(3600L)
+    when(loginResponse.isAuthRenewable()).thenReturn(true)
+    when(authDriver.renewSelf()).thenReturn(renewResponse)
+    when(renewResponse.getAuthLeaseDuration()).thenReturn(120L)
+    when(renewResponse.isAuthRenewable()).thenReturn(true)
+
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+    subject.setDriver(subject.buildAuthenticatedDriver(vaultDriver))
+
+    when: "renewal is capped"
+    subject.renewToken()
+
+    then:
+    subject.getToken().getClientToken() == "token12345"
+    subject.getToken().getLeaseDurationSeconds() == 120L
+    !subject.getToken().isRenewable()
+
+    when: "next renewal"
+    subject.renewToken()
+
+    then:
+    verify(authDriver, times(2)).loginByAppRole(config.getAppRole(), config.getSecretId()) || true
+    subject.getToken().getClientToken() == "token67890"
+    subject.getToken().getLeaseDurationSeconds() == 3600L
+  }
+
+  def "renewToken() does not raise exceptions"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultEncryptionService(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+
+    when(vaultDriver.auth()).thenReturn(authDriver)
+    when(authDriver.loginByAppRole(config.getAppRole(), config.getSecretId()))
+        .thenReturn(loginResponse)
+        .thenThrow(new VaultException("connection refused"))
+    when(loginResponse.getAuthClientToken()).thenReturn("token12345")
+    when(loginResponse.getAuthLeaseDuration()).thenReturn(3600L)
+    when(loginResponse.isAuthRenewable()).thenReturn(true)
+    when(authDriver.renewSelf()).thenThrow(new VaultException("permission denied"))
+
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+    subject.setDriver(subject.buildAuthenticatedDriver(vaultDriver))
+
+    when:
+    subject.renewToken()
+
+    then:
+    noExceptionThrown()
+    subject.getToken().getClientToken() == "token12345"
+  }
+
+  def "renewToken() logs in again without holding the service lock"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultEncryptionService(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+
+    when(vaultDriver.auth()).thenReturn(authDriver)
+    when(authDriver.loginByAppRole(config.getAppRole(), config.getSecretId())).thenReturn(loginResponse)
+    when(loginResponse.getAuthClientToken()).thenReturn("token12345")
+    when(loginResponse.getAuthLeaseDuration()).thenReturn(3600L)
+    when(loginResponse.isAuthRenewable()).thenReturn(false)
+
+    subject.setDriver(subject.buildAuthenticatedDriver(vaultDriver))
+
+    def reset = new CountDownLatch(1)
+    def resetDuringLogin = false
+    doAnswer({
+      Thread.start {
+        subject.resetDriver()
+        reset.countDown()
+      }
+      resetDuringLogin = reset.await(5, TimeUnit.SECONDS)
+      vaultDriver
+    }).when(subject).buildVaultDriver(any())
+
+    when:
+    subject.renewToken()
+
+    then: "the driver reset during login is not replaced"
+    resetDuringLogin
+    verify(authDriver, times(2)).loginByAppRole(config.getAppRole(), config.getSecretId()) || true
+    subject.@driver == null
+  }
+
+  def "resetDriver() drops token"() {
+    given:
+    subject = spy(new VaultEncryptionService(configWithToken()))
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+    subject.setDriver(subject.buildAuthenticatedDriver(vaultDriver))
+
+    when:
+    subject.resetDriver()
+    subject.renewToken()
+
+    then:
+    subject.getToken() == null
+  }
+
+  def "close() drops token and stops renewal"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultEncryptionService(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+
+    when(vaultDriver.auth()).thenReturn(authDriver)
+    when(authDriver.loginByAppRole(config.getAppRole(), config.getSecretId())).thenReturn(loginResponse)
+    when(loginResponse.getAuthClientToken()).thenReturn("token12345")
+    when(loginResponse.getAuthLeaseDuration()).thenReturn(3600L)
+    when(loginResponse.isAuthRenewable()).thenReturn(true)
+
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+    subject.setDriver(subject.buildAuthenticatedDriver(vaultDriver))
+
+    when:
+    subject.close()
+    subject.renewToken()
+
+    then:
+    subject.getToken() == null
+    verify(authDriver, never()).renewSelf() || true
+  }
+
   def "can retrieve configurations"() {
     when:
     def config = configWithAppId()
@@ -0,0 +1,143 @@
+package com.mx.path.service.facility.security.vault
+
+import java.time.Duration
+
+import spock.lang.Specification
+
+class VaultEnvelopeCipherTest extends Specification {
+  byte[] rawKey
+  int generated
+  int unwrapped
+  VaultEnvelopeConfiguration configuration
+  VaultEnvelopeCipher subject
+
+  def setup() {
+    rawKey = new byte[32]
+    new Random(42).nextBytes(rawKey)
+    generated = 0
+    unwrapped = 0
+    configuration = new VaultEnvelopeConfiguration().tap { setEnabled(true) }
+    subject = newCipher()
+  }
+
+  def newCipher() {
+    return new VaultEnvelopeCipher(configuration, {
+      generated++
+      new VaultDataKey("vault:v1:wrapped" + generated, rawKey.clone())
+    }, { String wrappedKey ->
+      unwrapped++
+      rawKey.clone()
+    })
+  }
+
+  def "encrypts and decrypts locally"() {
+    when:
+    def ciphertext = subject.encrypt("plaintext")
+
+    then:
+    ciphertext.startsWith(VaultEnvelopeCipher.PREFIX)
+    VaultEnvelopeCipher.isEnvelope(ciphertext)
+    !ciphertext.contains("plaintext")
+    subject.decrypt(ciphertext) == "plaintext"
+    generated == 1
+    unwrapped == 0
+  }
+
+  def "isEnvelope()"() {
+    expect:
+    !VaultEnvelopeCipher.isEnvelope(null)
+    !VaultEnvelopeCipher.isEnvelope("")
+    !VaultEnvelopeCipher.isEnvelope("vault:v1:abc")
+    VaultEnvelopeCipher.isEnvelope("vault-envelope:v1:abc:def")
+  }
+
+  def "uses fresh nonce for each value"() {
+    expect:
+    subject.encrypt("plaintext") != subject.encrypt("plaintext")
+  }
+
+  def "reuses data key until max uses"() {
+    given:
+    configuration.setDataKeyMaxUses(2)
+
+    when:
+    3.times { subject.encrypt("plaintext") }
+
+    then:
+    generated == 2
+  }
+
+  def "replaces data key after lifetime"() {
+    given:
+    configuration.setDataKeyLifetime(Duration.ZERO)
+
+    when:
+    2.times { subject.encrypt("plaintext") }
+
+    then:
+    generated == 2
+  }
+
+  def "unwraps each data key once when decrypting"() {
+    given:
+    def ciphertexts = (1..3).collect { subject.encrypt("plaintext" + it) }
+    def other = newCipher()
+
+    when:
+    def plaintexts = ciphertexts.collect { other.decrypt(it) }
+
+    then:
+    plaintexts == ["plaintext1", "plaintext2", "plaintext3"]
+    unwrapped == 1
+    other.cachedKeyCount() == 1
+  }
+
+  def "bounds unwrapped key cache"() {
+    given:
+    configuration.setDataKeyMaxUses(1)
+    configuration.setDataKeyCacheSize(2)
+
+    when:
+    3.times { subject.encrypt("plaintext") }
+
+    then:
+    subject.cachedKeyCount() == 2
+  }
+
+  def "clear() drops data keys"() {
+    given:
+    def ciphertext = subject.encrypt("plaintext")
+
+    when:
+    subject.clear()
+    subject.encrypt("plaintext")
+
+    then:
+    subject.cachedKeyCount() == 1
+    generated == 2
+    subject.decrypt(ciphertext) == "plaintext"
+    unwrapped == 1
+  }
+
+  def "rejects tampered ciphertext"() {
+    given:
+    def ciphertext = subject.encrypt("plaintext")
+    def tampered = ciphertext.substring(0, ciphertext.length() - 2) + (ciphertext.endsWith("AA") ? "BB" : "AA")
+
+    when:
+    subject.decrypt(tampered)
+
+    then:
+    def ex = thrown(VaultEncryptionOperationException)
+    ex.getMessage() == "Envelope decrypt failed"
+  }
+
+  def "rejects malformed ciphertext"() {
+    when:
+    subject.decrypt(VaultEnvelopeCipher.PREFIX + "abc")
+
+    then:
+    def ex = thrown(VaultEncryptionOperationException)
+    ex.getMessage() == "Invalid envelope ciphertext"
+  }
+}
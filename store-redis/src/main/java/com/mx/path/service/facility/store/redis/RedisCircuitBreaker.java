@@ -0,0 +1,66 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.Getter;
+
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisConnectionException;
+
+/**
+ * Tracks Redis health for {@link RedisStore}. Opens after {@link RedisCircuitBreakerConfiguration#getFailureThreshold()}
+ * consecutive connection failures or timeouts and stays open until closed by a successful background probe. Error
+ * replies from Redis (e.g. WRONGTYPE) show Redis is reachable and count as successes. Failures are classified by
+ * exception type, never by message. Any failure on a connection that is not open counts as a connection failure, which
+ * covers commands Lettuce rejects because the connection is down (see
+ * {@link RedisStoreConfiguration#isFailFastOnDisconnect()}).
+ */
+final class RedisCircuitBreaker {
+
+  @Getter
+  private final RedisCircuitBreakerConfiguration configuration;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private final AtomicBoolean open = new AtomicBoolean();
+
+  RedisCircuitBreaker(RedisCircuitBreakerConfiguration configuration) {
+    this.configuration = configuration;
+  }
+
+  boolean isOpen() {
+    return open.get();
+  }
+
+  /**
+   * @param failure translated exception, or null on success
+   * @param connected false if the connection the command was sent on was not open when it failed
+   * @return true if this call opened the circuit. The caller is then responsible for starting the probe.
+   */
+  boolean record(Throwable failure, boolean connected) {
+    if (failure == null || connected && !isConnectionFailure(failure)) {
+      consecutiveFailures.set(0);
+      return false;
+    }
+
+    return consecutiveFailures.incrementAndGet() >= configuration.getFailureThreshold() && open.compareAndSet(false, true);
+  }
+
+  void close() {
+    consecutiveFailures.set(0);
+    open.set(false);
+  }
+
+  static boolean isConnectionFailure(Throwable failure) {
+    for (Throwable e = failure; e != null; e = e.getCause()) {
+      if (e instanceof RedisStoreConnectionException
+          || e instanceof RedisConnectionException
+          || e instanceof RedisCommandTimeoutException
+          || e instanceof IOException) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+}
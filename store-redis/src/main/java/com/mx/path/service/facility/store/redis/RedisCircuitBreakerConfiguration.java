@@ -0,0 +1,49 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+import com.mx.path.core.common.configuration.ConfigurationField;
+
+/**
+ * Fast-fail behavior of {@link RedisStore} while Redis is unreachable.
+ */
+@Data
+public class RedisCircuitBreakerConfiguration {
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  private static final Duration DEFAULT_PROBE_INTERVAL = Duration.ofSeconds(1);
+  private static final int DEFAULT_FALLBACK_MAX_ENTRIES = 0;
+  private static final Duration DEFAULT_FALLBACK_TTL = Duration.ofMinutes(5);
+
+  @ConfigurationField
+  private boolean enabled = DEFAULT_ENABLED;
+
+  /**
+   * Consecutive connection failures or timeouts that open the circuit.
+   */
+  @ConfigurationField
+  private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+  /**
+   * How often Redis is pinged in the background while the circuit is open. The circuit closes on the first success.
+   */
+  @ConfigurationField
+  private Duration probeInterval = DEFAULT_PROBE_INTERVAL;
+
+  /**
+   * Size of the local fallback store. While closed, values read and written through get, inSet, put, putSet,
+   * putIfNotExist, delete and deleteSet (and their async variants) are mirrored into it; while open, get and inSet are
+   * served from it instead of failing. Writes and deletes still fail while open, so they are never acknowledged without
+   * reaching Redis. 0 disables.
+   */
+  @ConfigurationField
+  private int fallbackMaxEntries = DEFAULT_FALLBACK_MAX_ENTRIES;
+
+  /**
+   * How long a value stays in the local fallback store.
+   */
+  @ConfigurationField
+  private Duration fallbackTtl = DEFAULT_FALLBACK_TTL;
+}
@@ -0,0 +1,128 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import io.lettuce.core.resource.ClientResources;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+/**
+ * Process-wide registry of Lettuce {@link ClientResources}. Every {@link RedisStore} configured with the same thread
+ * pool sizes shares one set of event loops instead of creating its own. Resources are reference counted and shut
+ * down when the last store using them releases them.
+ */
+public final class RedisClientResourcesRegistry {
+
+  private static final Map<PoolSizes, Registration> REGISTRATIONS = new LinkedHashMap<>();
+  private static final Map<ClientResources, PoolSizes> OWNERS = new IdentityHashMap<>();
+
+  private RedisClientResourcesRegistry() {
+  }
+
+  /**
+   * Point-in-time usage of one set of shared resources.
+   */
+  @Builder
+  @Getter
+  public static final class Usage {
+    private final int ioThreadPoolSize;
+    private final int computationThreadPoolSize;
+    private final int references;
+    private final int pendingComputationTasks;
+  }
+
+  /**
+   * Get shared resources for the given pool sizes, creating them if needed. Must be paired with {@link #release(ClientResources)}.
+   *
+   * @param ioThreadPoolSize io thread count
+   * @param computationThreadPoolSize computation thread count
+   * @return shared resources
+   */
+  static synchronized ClientResources acquire(int ioThreadPoolSize, int computationThreadPoolSize) {
+    PoolSizes sizes = new PoolSizes(ioThreadPoolSize, computationThreadPoolSize);
+    Registration registration = REGISTRATIONS.get(sizes);
+    if (registration == null) {
+      ClientResources resources = ClientResources.builder()
+          .ioThreadPoolSize(ioThreadPoolSize)
+          .computationThreadPoolSize(computationThreadPoolSize)
+          .build();
+      registration = new Registration(resources);
+      REGISTRATIONS.put(sizes, registration);
+      OWNERS.put(resources, sizes);
+    }
+
+    registration.references++;
+    return registration.resources;
+  }
+
+  /**
+   * Release resources obtained from {@link #acquire(int, int)}. Shuts them down when no longer referenced.
+   *
+   * @param resources to release
+   */
+  static synchronized void release(ClientResources resources) {
+    PoolSizes sizes = OWNERS.get(resources);
+    if (sizes == null) {
+      return;
+    }
+
+    Registration registration = REGISTRATIONS.get(sizes);
+    registration.references--;
+    if (registration.references <= 0) {
+      REGISTRATIONS.remove(sizes);
+      OWNERS.remove(resources);
+      resources.shutdown();
+    }
+  }
+
+  /**
+   * @return usage of every live set of shared resources
+   */
+  public static synchronized List<Usage> usage() {
+    List<Usage> result = new ArrayList<>();
+    REGISTRATIONS.forEach((sizes, registration) -> result.add(Usage.builder()
+        .ioThreadPoolSize(sizes.ioThreadPoolSize)
+        .computationThreadPoolSize(sizes.computationThreadPoolSize)
+        .references(registration.references)
+        .pendingComputationTasks(pendingTasks(registration.resources))
+        .build()));
+
+    return result;
+  }
+
+  private static int pendingTasks(ClientResources resources) {
+    int pending = 0;
+    for (EventExecutor executor : resources.eventExecutorGroup()) {
+      if (executor instanceof SingleThreadEventExecutor) {
+        pending += ((SingleThreadEventExecutor) executor).pendingTasks();
+      }
+    }
+
+    return pending;
+  }
+
+  private static final class Registration {
+    private final ClientResources resources;
+    private int references;
+
+    Registration(ClientResources resources) {
+      this.resources = resources;
+    }
+  }
+
+  @AllArgsConstructor
+  @EqualsAndHashCode
+  private static final class PoolSizes {
+    private final int ioThreadPoolSize;
+    private final int computationThreadPoolSize;
+  }
+}
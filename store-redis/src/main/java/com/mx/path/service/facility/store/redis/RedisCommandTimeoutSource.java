@@ -0,0 +1,108 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.protocol.CommandType;
+import io.lettuce.core.protocol.ProtocolKeyword;
+import io.lettuce.core.protocol.RedisCommand;
+
+/**
+ * Per-command timeouts for {@link RedisStore}. Commands are grouped into reads, writes and set operations, each with
+ * its own timeout, and are cut short by the caller deadline set with {@link RedisStore#withDeadline}.
+ *
+ * <p>Lettuce asks for the timeout on the thread that issues the command, which is what makes the thread-local
+ * deadline visible here.
+ */
+final class RedisCommandTimeoutSource extends TimeoutOptions.TimeoutSource {
+
+  private static final Map<CommandType, Category> CATEGORIES = new EnumMap<>(CommandType.class);
+
+  enum Category {
+    READ,
+    WRITE,
+    SET,
+    OTHER
+  }
+
+  static {
+    for (CommandType type : new CommandType[] { CommandType.GET, CommandType.MGET, CommandType.HGET, CommandType.HMGET,
+        CommandType.HGETALL, CommandType.PTTL, CommandType.TTL, CommandType.EXISTS, CommandType.SCAN }) {
+      CATEGORIES.put(type, Category.READ);
+    }
+    for (CommandType type : new CommandType[] { CommandType.SET, CommandType.DEL, CommandType.UNLINK, CommandType.HSET,
+        CommandType.HDEL, CommandType.EXPIRE, CommandType.PEXPIRE, CommandType.EVAL, CommandType.EVALSHA }) {
+      CATEGORIES.put(type, Category.WRITE);
+    }
+    for (CommandType type : new CommandType[] { CommandType.SADD, CommandType.SREM, CommandType.SMEMBERS,
+        CommandType.SISMEMBER, CommandType.SSCAN, CommandType.SCARD }) {
+      CATEGORIES.put(type, Category.SET);
+    }
+  }
+
+  private final long defaultNanos;
+  private final long readNanos;
+  private final long writeNanos;
+  private final long setNanos;
+  private final ThreadLocal<Long> deadlineNanos;
+
+  /**
+   * @param configuration store configuration. Unset per-category timeouts fall back to
+   *                      {@link RedisStoreConfiguration#getTimeout()}.
+   * @param deadlineNanos holds the caller deadline ({@link System#nanoTime()} based) of the current thread, if any
+   */
+  RedisCommandTimeoutSource(RedisStoreConfiguration configuration, ThreadLocal<Long> deadlineNanos) {
+    this.defaultNanos = configuration.getTimeout().toNanos();
+    this.readNanos = orDefault(configuration.getReadTimeout());
+    this.writeNanos = orDefault(configuration.getWriteTimeout());
+    this.setNanos = orDefault(configuration.getSetTimeout());
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  static Category categorize(ProtocolKeyword type) {
+    if (type instanceof CommandType) {
+      return CATEGORIES.getOrDefault(type, Category.OTHER);
+    }
+
+    return Category.OTHER;
+  }
+
+  @Override
+  public long getTimeout(RedisCommand<?, ?, ?> command) {
+    long timeout = timeout(categorize(command.getType()));
+
+    Long deadline = deadlineNanos.get();
+    if (deadline != null) {
+      // Never 0, which would mean no timeout at all
+      timeout = Math.max(1, Math.min(timeout, deadline - System.nanoTime()));
+    }
+
+    return timeout;
+  }
+
+  @Override
+  public TimeUnit getTimeUnit() {
+    return TimeUnit.NANOSECONDS;
+  }
+
+  long timeout(Category category) {
+    switch (category) {
+      case READ:
+        return readNanos;
+      case WRITE:
+        return writeNanos;
+      case SET:
+        return setNanos;
+      case OTHER:
+      default:
+        return defaultNanos;
+    }
+  }
+
+  private long orDefault(Duration timeout) {
+    return timeout == null ? defaultNanos : timeout.toNanos();
+  }
+}
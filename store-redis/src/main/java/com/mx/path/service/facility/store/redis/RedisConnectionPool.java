@@ -0,0 +1,99 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import io.lettuce.core.api.StatefulConnection;
+
+/**
+ * Fixed set of multiplexed connections used by {@link RedisStore}.
+ *
+ * @param <C> connection type
+ */
+final class RedisConnectionPool<C extends StatefulConnection<String, String>> {
+
+  private final List<C> connections;
+  private final C largePayloadConnection;
+  private final Set<String> largePayloadOperations;
+  private final RedisConnectionPoolConfiguration.Selection selection;
+  private final AtomicInteger next = new AtomicInteger();
+
+  /**
+   * @param configuration pool configuration
+   * @param primary first connection in the pool
+   * @param connectionFactory builds the remaining connections
+   * @param largePayloadOperations operations routed to the dedicated large payload connection, if enabled
+   * @throws RuntimeException from connectionFactory, after closing the connections opened so far
+   */
+  RedisConnectionPool(RedisConnectionPoolConfiguration configuration, C primary, Supplier<C> connectionFactory, Set<String> largePayloadOperations) {
+    List<C> opened = new ArrayList<>();
+    C newLargePayloadConnection;
+    try {
+      for (int i = 1; i < configuration.getSize(); i++) {
+        opened.add(connectionFactory.get());
+      }
+      newLargePayloadConnection = configuration.isDedicatedLargePayloadConnection() ? connectionFactory.get() : null;
+    } catch (RuntimeException e) {
+      opened.forEach(StatefulConnection::close);
+      throw e;
+    }
+
+    List<C> newConnections = new ArrayList<>();
+    newConnections.add(primary);
+    newConnections.addAll(opened);
+
+    this.connections = Collections.unmodifiableList(newConnections);
+    this.largePayloadConnection = newLargePayloadConnection;
+    this.largePayloadOperations = largePayloadOperations;
+    this.selection = configuration.getSelection();
+  }
+
+  /**
+   * @param operation being executed
+   * @param key the operation is for, or null if it has no single key
+   * @return connection to execute the operation on
+   */
+  C select(String operation, @Nullable String key) {
+    if (largePayloadConnection != null && largePayloadOperations.contains(operation)) {
+      return largePayloadConnection;
+    }
+
+    if (connections.size() == 1) {
+      return connections.get(0);
+    }
+
+    if (selection == RedisConnectionPoolConfiguration.Selection.KEY_HASH && key != null) {
+      return connections.get(Math.floorMod(key.hashCode(), connections.size()));
+    }
+
+    return connections.get(Math.floorMod(next.getAndIncrement(), connections.size()));
+  }
+
+  /**
+   * @return all connections, including the large payload connection
+   */
+  List<C> all() {
+    List<C> result = new ArrayList<>(connections);
+    if (largePayloadConnection != null) {
+      result.add(largePayloadConnection);
+    }
+
+    return result;
+  }
+
+  /**
+   * Close the connections this pool opened. The primary connection it was given is left to its owner.
+   */
+  void closeOwned() {
+    connections.subList(1, connections.size()).forEach(StatefulConnection::close);
+    if (largePayloadConnection != null) {
+      largePayloadConnection.close();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.mx.path.service.facility.store.redis;
+
+import lombok.Data;
+
+import com.mx.path.core.common.configuration.ConfigurationField;
+
+/**
+ * Controls how many connections {@link RedisStore} multiplexes commands over.
+ */
+@Data
+public class RedisConnectionPoolConfiguration {
+  public enum Selection {
+    /**
+     * Spread commands evenly across connections.
+     */
+    ROUND_ROBIN,
+    /**
+     * Always send commands for the same key over the same connection, preserving per-key ordering of pipelined commands.
+     */
+    KEY_HASH
+  }
+
+  private static final int DEFAULT_SIZE = 1;
+  private static final Selection DEFAULT_SELECTION = Selection.ROUND_ROBIN;
+  private static final boolean DEFAULT_DEDICATED_LARGE_PAYLOAD_CONNECTION = false;
+
+  @ConfigurationField
+  private int size = DEFAULT_SIZE;
+
+  @ConfigurationField
+  private Selection selection = DEFAULT_SELECTION;
+
+  /**
+   * Send commands with potentially large replies (e.g. SMEMBERS, MGET) over their own connection so they do not
+   * hold up small commands queued behind them.
+   */
+  @ConfigurationField
+  private boolean dedicatedLargePayloadConnection = DEFAULT_DEDICATED_LARGE_PAYLOAD_CONNECTION;
+}
@@ -0,0 +1,111 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+
+import lombok.Getter;
+
+/**
+ * Lease on a key acquired with {@link RedisStore#acquireLease(String, RedisLeaseOptions)}. Only the owner that acquired
+ * the lease can renew or release it, so a holder whose lease already expired cannot release someone else's.
+ *
+ * <pre>{@code
+ * try (RedisLease lease = store.acquireLease("refresh:accounts", options)) {
+ *   if (lease != null) {
+ *     refresh();
+ *   }
+ * }
+ * }</pre>
+ */
+public final class RedisLease implements AutoCloseable {
+
+  private final RedisStore store;
+  @Getter
+  private final String key;
+  /**
+   * Random value identifying this owner.
+   */
+  @Getter
+  private final String token;
+  /**
+   * Monotonically increasing per key when fencing is enabled, 0 otherwise.
+   */
+  @Getter
+  private final long fencingToken;
+  @Getter
+  private final Duration leaseTime;
+  private volatile ScheduledFuture<?> watchdog;
+  private volatile boolean lost;
+
+  RedisLease(RedisStore store, String key, String token, long fencingToken, Duration leaseTime) {
+    this.store = store;
+    this.key = key;
+    this.token = token;
+    this.fencingToken = fencingToken;
+    this.leaseTime = leaseTime;
+  }
+
+  /**
+   * @return true once renewal or release found the lease owned by someone else (or expired)
+   */
+  public boolean isLost() {
+    return lost;
+  }
+
+  /**
+   * Extend the lease by {@link #getLeaseTime()} from now.
+   *
+   * @return true if still owned and extended, false if the lease was lost
+   */
+  public boolean renew() {
+    boolean renewed = store.renewLease(this);
+    if (!renewed) {
+      lost = true;
+      stopWatchdog();
+    }
+
+    return renewed;
+  }
+
+  /**
+   * Release the lease and stop the watchdog.
+   *
+   * @return true if the lease was still owned and has been released
+   */
+  public boolean release() {
+    stopWatchdog();
+    boolean released = store.releaseLease(this);
+    if (!released) {
+      lost = true;
+    }
+
+    return released;
+  }
+
+  /**
+   * Same as {@link #release()}.
+   */
+  @Override
+  public void close() {
+    release();
+  }
+
+  final void startWatchdog(ScheduledFuture<?> scheduled) {
+    this.watchdog = scheduled;
+  }
+
+  final void watchdogTick() {
+    try {
+      renew();
+    } catch (RuntimeException e) {
+      // Transient failure. Retry on the next tick; the lease is lost on its own if Redis stays unreachable.
+    }
+  }
+
+  private void stopWatchdog() {
+    ScheduledFuture<?> current = watchdog;
+    if (current != null) {
+      current.cancel(false);
+    }
+  }
+}
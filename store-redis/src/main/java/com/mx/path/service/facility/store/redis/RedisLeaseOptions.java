@@ -0,0 +1,45 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.time.Duration;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Options for {@link RedisStore#acquireLease(String, RedisLeaseOptions)}.
+ */
+@Builder
+@Getter
+public final class RedisLeaseOptions {
+
+  /**
+   * How long the lease is held unless renewed or released. Bounds how long a crashed holder blocks others.
+   */
+  @Builder.Default
+  private final Duration leaseTime = Duration.ofSeconds(30);
+
+  /**
+   * How long to keep retrying while another owner holds the lease. Zero tries once.
+   */
+  @Builder.Default
+  private final Duration waitTimeout = Duration.ZERO;
+
+  /**
+   * Pause between attempts while waiting.
+   */
+  @Builder.Default
+  private final Duration retryInterval = Duration.ofMillis(100);
+
+  /**
+   * Issue a fencing token that increases with every acquisition of the key. Pass it to downstream systems so they can
+   * reject writes from a holder whose lease has already expired.
+   */
+  @Builder.Default
+  private final boolean fencing = false;
+
+  /**
+   * Keep extending the lease in the background (every third of {@link #leaseTime}) until it is released.
+   */
+  @Builder.Default
+  private final boolean watchdog = false;
+}
@@ -0,0 +1,287 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.RedisPubSubListener;
+
+/**
+ * Bounded, time-limited, in-process cache of string values and set memberships read through {@link RedisStore}.
+ *
+ * <p>Entries are evicted least-recently-used once {@link RedisNearCacheConfiguration#getMaxEntries()} or
+ * {@link RedisNearCacheConfiguration#getMaxMemoryBytes()} is exceeded, expire after {@link RedisNearCacheConfiguration#getTtl()},
+ * and are invalidated by keyspace notifications delivered to {@link #invalidationListener()}.
+ *
+ * <p>To avoid caching a value that was read before a concurrent invalidation arrived, readers take a {@link #stamp()}
+ * before going to Redis and hand it back on {@link #putValue(String, String, long)}. The value is discarded if any
+ * invalidation happened in between.
+ */
+public final class RedisNearCache {
+
+  private static final String KEYSPACE_CHANNEL_PREFIX = "__keyspace@";
+  private static final String KEYSPACE_KEY_SEPARATOR = "__:";
+  private static final long ENTRY_OVERHEAD_BYTES = 64;
+
+  @Getter
+  private final RedisNearCacheConfiguration configuration;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicLong invalidations = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private long memoryBytes;
+
+  public RedisNearCache(RedisNearCacheConfiguration configuration) {
+    this.configuration = configuration;
+  }
+
+  /**
+   * @param key to check
+   * @return true if key matches one of the configured prefixes, or no prefixes are configured
+   */
+  public boolean isCacheable(String key) {
+    if (configuration.getPrefixes() == null || configuration.getPrefixes().isEmpty()) {
+      return true;
+    }
+
+    return configuration.getPrefixes().stream().anyMatch(key::startsWith);
+  }
+
+  /**
+   * @return current invalidation stamp. Pass to {@link #putValue(String, String, long)} or
+   * {@link #putMembership(String, String, boolean, long)} after reading from Redis.
+   */
+  public long stamp() {
+    return invalidations.get();
+  }
+
+  /**
+   * @param key to look up
+   * @return cached value, or null on miss
+   */
+  public String getValue(String key) {
+    synchronized (entries) {
+      Entry entry = liveEntry(key);
+      if (entry == null || entry.value == null) {
+        misses.incrementAndGet();
+        return null;
+      }
+
+      hits.incrementAndGet();
+      return entry.value;
+    }
+  }
+
+  /**
+   * @param key of set
+   * @param member to look up
+   * @return cached membership, or null on miss
+   */
+  public Boolean getMembership(String key, String member) {
+    synchronized (entries) {
+      Entry entry = liveEntry(key);
+      Boolean result = entry == null || entry.members == null ? null : entry.members.get(member);
+      if (result == null) {
+        misses.incrementAndGet();
+        return null;
+      }
+
+      hits.incrementAndGet();
+      return result;
+    }
+  }
+
+  /**
+   * Cache value read from Redis. Null values are not cached.
+   *
+   * @param key of value
+   * @param value read
+   * @param stamp taken before the read
+   */
+  public void putValue(String key, String value, long stamp) {
+    if (value == null) {
+      return;
+    }
+
+    synchronized (entries) {
+      if (stamp != invalidations.get()) {
+        return;
+      }
+
+      Entry entry = new Entry(System.nanoTime() + configuration.getTtl().toNanos());
+      entry.value = value;
+      entry.weight = weigh(key) + weigh(value);
+      replace(key, entry);
+    }
+  }
+
+  /**
+   * Cache set membership read from Redis.
+   *
+   * @param key of set
+   * @param member checked
+   * @param isMember result of the check
+   * @param stamp taken before the read
+   */
+  public void putMembership(String key, String member, boolean isMember, long stamp) {
+    synchronized (entries) {
+      if (stamp != invalidations.get()) {
+        return;
+      }
+
+      Entry entry = liveEntry(key);
+      if (entry == null || entry.members == null) {
+        entry = new Entry(System.nanoTime() + configuration.getTtl().toNanos());
+        entry.members = new HashMap<>();
+        entry.weight = weigh(key);
+        replace(key, entry);
+      }
+
+      if (entry.members.put(member, isMember) == null) {
+        entry.weight += weigh(member);
+        if (entries.get(key) == entry) {
+          memoryBytes += weigh(member);
+          evictOverflow();
+        }
+      }
+    }
+  }
+
+  /**
+   * Drop cached entry for key.
+   *
+   * @param key to drop
+   */
+  public void invalidate(String key) {
+    synchronized (entries) {
+      invalidations.incrementAndGet();
+      remove(key);
+    }
+  }
+
+  /**
+   * Drop all cached entries.
+   */
+  public void clear() {
+    synchronized (entries) {
+      invalidations.incrementAndGet();
+      entries.clear();
+      memoryBytes = 0;
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getMemoryBytes() {
+    synchronized (entries) {
+      return memoryBytes;
+    }
+  }
+
+  /**
+   * @return keyspace notification patterns to subscribe to for the configured prefixes
+   */
+  public String[] invalidationPatterns() {
+    if (configuration.getPrefixes() == null || configuration.getPrefixes().isEmpty()) {
+      return new String[] { KEYSPACE_CHANNEL_PREFIX + "*" + KEYSPACE_KEY_SEPARATOR + "*" };
+    }
+
+    return configuration.getPrefixes().stream()
+        .map((prefix) -> KEYSPACE_CHANNEL_PREFIX + "*" + KEYSPACE_KEY_SEPARATOR + prefix + "*")
+        .toArray(String[]::new);
+  }
+
+  /**
+   * Listener that invalidates entries on keyspace notifications. Everything is dropped whenever the subscription is
+   * (re)established, since notifications may have been missed while disconnected.
+   *
+   * @return pub/sub listener
+   */
+  public RedisPubSubListener<String, String> invalidationListener() {
+    return new RedisPubSubAdapter<String, String>() {
+      @Override
+      public void message(String pattern, String channel, String message) {
+        int separator = channel.indexOf(KEYSPACE_KEY_SEPARATOR);
+        if (separator >= 0) {
+          invalidate(channel.substring(separator + KEYSPACE_KEY_SEPARATOR.length()));
+        }
+      }
+
+      @Override
+      public void psubscribed(String pattern, long count) {
+        clear();
+      }
+    };
+  }
+
+  private Entry liveEntry(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.expiresAtNanos - System.nanoTime() <= 0) {
+      remove(key);
+      return null;
+    }
+
+    return entry;
+  }
+
+  private void replace(String key, Entry entry) {
+    remove(key);
+    entries.put(key, entry);
+    memoryBytes += entry.weight;
+    evictOverflow();
+  }
+
+  private void remove(String key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) {
+      memoryBytes -= removed.weight;
+    }
+  }
+
+  private void evictOverflow() {
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (eldest.hasNext() && (entries.size() > configuration.getMaxEntries() || memoryBytes > configuration.getMaxMemoryBytes())) {
+      memoryBytes -= eldest.next().getValue().weight;
+      eldest.remove();
+      evictions.incrementAndGet();
+    }
+  }
+
+  private static long weigh(String value) {
+    return ENTRY_OVERHEAD_BYTES + 2L * value.length();
+  }
+
+  private static final class Entry {
+    private final long expiresAtNanos;
+    private String value;
+    private Map<String, Boolean> members;
+    private long weight;
+
+    Entry(long expiresAtNanos) {
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+import com.mx.path.core.common.configuration.ConfigurationField;
+
+/**
+ * Configuration for the optional in-process cache in front of {@link RedisStore#get(String)} and
+ * {@link RedisStore#inSet(String, String)}.
+ *
+ * <p>Entries are invalidated by Redis keyspace notifications, so the server must have {@code notify-keyspace-events}
+ * configured to publish keyspace events for generic, string, set and expired events (e.g. {@code Kg$sx}).
+ */
+@Data
+public class RedisNearCacheConfiguration {
+
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final int DEFAULT_MAX_ENTRIES = 10000;
+  private static final long DEFAULT_MAX_MEMORY_BYTES = 16L * 1024 * 1024;
+  private static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+  @ConfigurationField
+  private boolean enabled = DEFAULT_ENABLED;
+
+  @ConfigurationField
+  private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+  /**
+   * Approximate upper bound of heap used by cached keys and values.
+   */
+  @ConfigurationField
+  private long maxMemoryBytes = DEFAULT_MAX_MEMORY_BYTES;
+
+  /**
+   * Longest time an entry is served locally. Entries are also dropped as soon as an invalidation is received.
+   */
+  @ConfigurationField
+  private Duration ttl = DEFAULT_TTL;
+
+  /**
+   * Key prefixes eligible for caching. When empty, all keys are cached.
+   */
+  @ConfigurationField(elementType = String.class)
+  private List<String> prefixes = new ArrayList<>();
+}
@@ -0,0 +1,173 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+import io.lettuce.core.ScriptOutputType;
+
+/**
+ * Distributed rate limiter using the generic cell rate algorithm (GCRA). Each check is a single Lua script against one
+ * key, so it is atomic and cluster-safe, and state per id is a single number with a TTL.
+ *
+ * <p>Time is taken from the Redis server, so clock skew between nodes does not affect limits. With
+ * {@link RedisRateLimiterConfiguration#getLocalBatchSize()} above 1, permits are reserved in batches and handed out
+ * locally, saving a round trip whenever the local reservation already covers the request.
+ *
+ * <pre>{@code
+ * RedisRateLimiter limiter = new RedisRateLimiter(store, configuration);
+ * if (!limiter.tryAcquire(clientId)) {
+ *   throw new TooManyRequestsException();
+ * }
+ * }</pre>
+ */
+public final class RedisRateLimiter {
+
+  // KEYS[1] theoretical arrival time (TAT) in microseconds.
+  // ARGV: emission interval (us), burst tolerance (us), minimum permits, maximum permits to reserve.
+  // Returns {granted permits, retry after (us), remaining permits}.
+  private static final String GCRA_SCRIPT = "local time = redis.call('TIME') "
+      + "local now = tonumber(time[1]) * 1000000 + tonumber(time[2]) "
+      + "local interval = tonumber(ARGV[1]) "
+      + "local tolerance = tonumber(ARGV[2]) "
+      + "local minimum = tonumber(ARGV[3]) "
+      + "local maximum = tonumber(ARGV[4]) "
+      + "local tat = math.max(tonumber(redis.call('GET', KEYS[1]) or now), now) "
+      + "local available = math.floor((tolerance - (tat - now)) / interval) "
+      + "if available < minimum then "
+      + "  return {0, tat + interval * minimum - tolerance - now, math.max(available, 0)} "
+      + "end "
+      + "local granted = math.min(available, maximum) "
+      + "local newTat = tat + interval * granted "
+      + "redis.call('SET', KEYS[1], string.format('%d', newTat), 'PX', math.ceil((newTat - now) / 1000)) "
+      + "return {granted, 0, available - granted}";
+
+  @Getter
+  private final RedisRateLimiterConfiguration configuration;
+  private final RedisStore store;
+  private final long intervalMicros;
+  private final long toleranceMicros;
+  private final Map<String, LocalBudget> localBudgets = new ConcurrentHashMap<>();
+
+  /**
+   * Result of a rate limit check.
+   */
+  @Getter
+  public static final class Decision {
+    private final boolean allowed;
+    /**
+     * Permits still available right after this check, excluding permits reserved locally.
+     */
+    private final long remaining;
+    /**
+     * When denied, how long until the request would be allowed.
+     */
+    private final long retryAfterMillis;
+
+    Decision(boolean allowed, long remaining, long retryAfterMillis) {
+      this.allowed = allowed;
+      this.remaining = remaining;
+      this.retryAfterMillis = retryAfterMillis;
+    }
+  }
+
+  public RedisRateLimiter(RedisStore store, RedisRateLimiterConfiguration configuration) {
+    this.store = store;
+    this.configuration = configuration;
+
+    int burst = configuration.getBurst() > 0 ? configuration.getBurst() : configuration.getLimit();
+    this.intervalMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(configuration.getPeriod().toNanos()) / configuration.getLimit());
+    this.toleranceMicros = intervalMicros * burst;
+  }
+
+  /**
+   * @param id to limit, e.g. client id
+   * @return true if a permit was granted
+   */
+  public boolean tryAcquire(String id) {
+    return check(id, 1).isAllowed();
+  }
+
+  /**
+   * Take permits for id if available.
+   *
+   * @param id to limit, e.g. client id
+   * @param permits to take
+   * @return decision
+   */
+  public Decision check(String id, int permits) {
+    LocalBudget local = localBudgets.get(id);
+    if (local != null) {
+      if (local.take(permits)) {
+        return new Decision(true, 0, 0);
+      }
+      localBudgets.remove(id, local);
+    }
+
+    int reserve = Math.max(permits, configuration.getLocalBatchSize());
+    List<Long> result = store.<List<Long>>evalScript("rateLimit", GCRA_SCRIPT, ScriptOutputType.MULTI, key(id),
+        String.valueOf(intervalMicros), String.valueOf(toleranceMicros), String.valueOf(permits), String.valueOf(reserve));
+
+    long granted = result.get(0);
+    if (granted == 0) {
+      return new Decision(false, result.get(2), TimeUnit.MICROSECONDS.toMillis(result.get(1)) + 1);
+    }
+
+    if (granted > permits) {
+      reserveLocally(id, granted - permits);
+    }
+
+    return new Decision(true, result.get(2), 0);
+  }
+
+  /**
+   * @param id limited id
+   * @return key holding the limiter state for id. The id is the hash tag, so limiter keys spread across the cluster
+   * by id.
+   */
+  String key(String id) {
+    return configuration.getKeyPrefix() + "{" + id + "}";
+  }
+
+  int localEntries() {
+    return localBudgets.size();
+  }
+
+  private void reserveLocally(String id, long permits) {
+    if (localBudgets.size() >= configuration.getMaxLocalEntries()) {
+      localBudgets.values().removeIf(LocalBudget::isExpired);
+      if (localBudgets.size() >= configuration.getMaxLocalEntries()) {
+        return;
+      }
+    }
+
+    // Reserved permits stand for the next permits * interval of capacity. Drop them once that has passed.
+    localBudgets.put(id, new LocalBudget(permits, System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(intervalMicros * permits)));
+  }
+
+  private static final class LocalBudget {
+    private final long expiresAtNanos;
+    private long permits;
+
+    LocalBudget(long permits, long expiresAtNanos) {
+      this.permits = permits;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+
+    synchronized boolean take(int requested) {
+      if (isExpired() || permits < requested) {
+        return false;
+      }
+
+      permits -= requested;
+      return true;
+    }
+
+    boolean isExpired() {
+      return expiresAtNanos - System.nanoTime() <= 0;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+import com.mx.path.core.common.configuration.ConfigurationField;
+
+/**
+ * Limits for {@link RedisRateLimiter}. Allows {@link #limit} permits per {@link #period}, with bursts of up to
+ * {@link #burst} permits at once.
+ */
+@Data
+public class RedisRateLimiterConfiguration {
+  private static final int DEFAULT_LIMIT = 100;
+  private static final Duration DEFAULT_PERIOD = Duration.ofSeconds(1);
+  private static final int DEFAULT_BURST = 0;
+  private static final String DEFAULT_KEY_PREFIX = "ratelimit:";
+  private static final int DEFAULT_LOCAL_BATCH_SIZE = 1;
+  private static final int DEFAULT_MAX_LOCAL_ENTRIES = 10000;
+
+  @ConfigurationField
+  private int limit = DEFAULT_LIMIT;
+
+  @ConfigurationField
+  private Duration period = DEFAULT_PERIOD;
+
+  /**
+   * Permits that may be taken at once. 0 uses {@link #limit}.
+   */
+  @ConfigurationField
+  private int burst = DEFAULT_BURST;
+
+  /**
+   * Prefix of the keys holding limiter state.
+   */
+  @ConfigurationField
+  private String keyPrefix = DEFAULT_KEY_PREFIX;
+
+  /**
+   * Permits to reserve per round trip. Reserved permits are handed out locally without contacting Redis until they run
+   * out or the time they represent has passed. Values above 1 save round trips for busy ids at the cost of letting
+   * one node hold permits another could have used.
+   */
+  @ConfigurationField
+  private int localBatchSize = DEFAULT_LOCAL_BATCH_SIZE;
+
+  /**
+   * Upper bound on ids with locally reserved permits.
+   */
+  @ConfigurationField
+  private int maxLocalEntries = DEFAULT_MAX_LOCAL_ENTRIES;
+}
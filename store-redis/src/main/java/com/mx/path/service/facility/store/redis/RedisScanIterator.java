@@ -0,0 +1,65 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.lettuce.core.ScanCursor;
+
+/**
+ * Lazily walks a Redis cursor (SCAN, SSCAN, ...), fetching the next page only once the current one is consumed.
+ * Like the underlying commands, elements may be returned more than once.
+ *
+ * @param <C> cursor type returned by the command
+ * @param <T> element type
+ */
+final class RedisScanIterator<C extends ScanCursor, T> implements Iterator<T> {
+
+  private final Function<ScanCursor, C> fetch;
+  private final Function<C, List<T>> contents;
+  private ScanCursor cursor = ScanCursor.INITIAL;
+  private Iterator<T> page = Collections.emptyIterator();
+
+  /**
+   * @param fetch issues the command for a cursor
+   * @param contents extracts the page elements from the returned cursor
+   */
+  RedisScanIterator(Function<ScanCursor, C> fetch, Function<C, List<T>> contents) {
+    this.fetch = fetch;
+    this.contents = contents;
+  }
+
+  /**
+   * @return stream over the remaining elements
+   */
+  Stream<T> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  @Override
+  public boolean hasNext() {
+    // Pages may be empty even though the cursor is not finished
+    while (!page.hasNext() && !cursor.isFinished()) {
+      C next = fetch.apply(cursor);
+      page = contents.apply(next).iterator();
+      cursor = next;
+    }
+
+    return page.hasNext();
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    return page.next();
+  }
+}
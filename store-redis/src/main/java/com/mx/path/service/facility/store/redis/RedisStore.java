@@ -2,138 +2,419 @@ package com.mx.path.service.facility.store.redis;
 
 import java.io.File;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import com.mx.path.core.common.configuration.Configuration;
+import com.mx.path.core.common.lang.Strings;
 import com.mx.path.core.common.store.Store;
 
 import io.lettuce.core.ClientOptions;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisCommandTimeoutException;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisFuture;
 import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.SocketOptions;
 import io.lettuce.core.SslOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.ValueScanCursor;
+import io.lettuce.core.api.StatefulConnection;
 import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.BaseRedisAsyncCommands;
+import io.lettuce.core.api.async.RedisStringAsyncCommands;
+import io.lettuce.core.api.sync.BaseRedisCommands;
+import io.lettuce.core.api.sync.RedisStringCommands;
 import io.lettuce.core.cluster.ClusterClientOptions;
 import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
 import io.lettuce.core.cluster.RedisClusterClient;
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.pubsub.StatefulRedisClusterPubSubConnection;
+import io.lettuce.core.event.DefaultEventPublisherOptions;
+import io.lettuce.core.masterreplica.MasterReplica;
+import io.lettuce.core.masterreplica.StatefulRedisMasterReplicaConnection;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.CommandType;
 import io.lettuce.core.protocol.ProtocolVersion;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.lettuce.core.resource.ClientResources;
 
 /**
  * Redis key-value store
  */
-public class RedisStore implements Store {
+public class RedisStore implements Store, AutoCloseable {
 
   private static final String PUT_UNSUPPORTED_OPERATION = "Put operations must have an expiration";
 
   private static final long REDIS_REFRESH_INTERVAL = 3;
 
+  private static final int DEFAULT_SENTINEL_PORT = 26379;
+
+  private static final String SET_OK = "OK";
+
+  // Operations that may return large replies. Routed to the dedicated connection when one is configured.
+  private static final Set<String> LARGE_PAYLOAD_OPERATIONS = Set.of("getSet", "getAll");
+
+  // Adds the member and (re)sets the key expiration in a single, atomic round trip.
+  private static final String PUT_SET_SCRIPT = "redis.call('SADD', KEYS[1], ARGV[1]) "
+      + "return redis.call('EXPIRE', KEYS[1], ARGV[2])";
+
+  // Sets the owner token and expiration atomically. Returns 0 if held by someone else, otherwise the next fencing
+  // token when a fencing counter key is given, or 1.
+  private static final String ACQUIRE_LEASE_SCRIPT = "if not redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 0 end "
+      + "if #KEYS > 1 then return redis.call('INCR', KEYS[2]) end "
+      + "return 1";
+
+  private static final String RENEW_LEASE_SCRIPT = "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+      + "return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end "
+      + "return 0";
+
+  private static final String RELEASE_LEASE_SCRIPT = "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+      + "return redis.call('DEL', KEYS[1]) end "
+      + "return 0";
+
+  private static final String FENCING_SUFFIX = ":fencing";
+
+  // Sets field/value pairs (ARGV[2..]) and (re)sets the key expiration (ARGV[1]) in a single, atomic round trip.
+  private static final String PUT_FIELDS_SCRIPT = "for i = 2, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+      + "return redis.call('EXPIRE', KEYS[1], ARGV[1])";
+
   @Getter
   private final RedisStoreConfiguration configuration;
   @Getter
-  private StatefulRedisConnection<String, String> connection;
+  private volatile StatefulRedisConnection<String, String> connection;
   @Getter
-  private StatefulRedisClusterConnection<String, String> redisClusterConnection;
+  private volatile StatefulRedisClusterConnection<String, String> redisClusterConnection;
+  /**
+   * In-process cache in front of get and inSet. Null unless enabled in {@link RedisStoreConfiguration#getNearCache()}.
+   */
+  @Getter
+  private final RedisNearCache nearCache;
+  /**
+   * Compresses values sent with plain SET. Connections use {@link RedisValueCodec#UNCOMPRESSED}, so set members,
+   * hash values and script arguments always reach Redis as plain UTF-8.
+   */
+  private final RedisValueCodec valueCodec;
+  /**
+   * Null unless enabled in {@link RedisStoreConfiguration#getCircuitBreaker()}.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  private final RedisCircuitBreaker circuitBreaker;
+  /**
+   * Local copy of recently used values served while the circuit breaker is open. Null unless configured.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  private final RedisNearCache fallback;
+  private final RedisStoreInstrumentation instrumentation = new RedisStoreInstrumentation();
+  @Getter(AccessLevel.PACKAGE)
+  private StatefulRedisPubSubConnection<String, String> nearCacheInvalidationConnection;
+  private RedisClient redisClient;
+  private RedisClusterClient redisClusterClient;
+  private ClientResources clientResources;
+  /**
+   * Copy of shared {@link #clientResources} that reports command latency. Null unless command latency metrics are
+   * enabled with shared client resources.
+   */
+  private ClientResources instrumentedClientResources;
+  private RedisURI redisUri;
+  private volatile boolean closed;
+  private final ThreadLocal<Long> deadlineNanos = new ThreadLocal<>();
+  private final Map<String, CompletableFuture<String>> inFlightGets = new ConcurrentHashMap<>();
+  private final Map<String, CompletableFuture<String>> inFlightLoads = new ConcurrentHashMap<>();
+  /**
+   * Guards {@link #scheduler} instead of the store monitor, because probes are scheduled from Lettuce event loop
+   * threads that must not wait on it.
+   */
+  private final Object schedulerLock = new Object();
+  private ScheduledExecutorService scheduler;
+  private volatile RedisConnectionPool<StatefulRedisConnection<String, String>> connectionPool;
+  private volatile RedisConnectionPool<StatefulRedisClusterConnection<String, String>> clusterConnectionPool;
 
-  public final void setConnection(StatefulRedisConnection<String, String> connection) {
+  public final synchronized void setConnection(StatefulRedisConnection<String, String> connection) {
     this.connection = connection;
+    if (connectionPool != null) {
+      connectionPool.closeOwned();
+      connectionPool = null;
+    }
   }
 
-  public final void setRedisClusterConnection(StatefulRedisClusterConnection<String, String> redisClusterConnection) {
+  public final synchronized void setRedisClusterConnection(StatefulRedisClusterConnection<String, String> redisClusterConnection) {
     this.redisClusterConnection = redisClusterConnection;
+    if (clusterConnectionPool != null) {
+      clusterConnectionPool.closeOwned();
+      clusterConnectionPool = null;
+    }
+  }
+
+  /**
+   * @return installed metrics facade, {@link RedisStoreMetrics#NOOP} by default
+   */
+  public final RedisStoreMetrics getMetrics() {
+    return instrumentation.getMetrics();
+  }
+
+  /**
+   * Install metrics facade. May be called at any time; measurements from then on go to the new facade.
+   *
+   * @param metrics facade, or null to stop recording
+   */
+  public final void setMetrics(RedisStoreMetrics metrics) {
+    instrumentation.setMetrics(metrics);
   }
 
   public RedisStore(@Configuration RedisStoreConfiguration redisStoreConfiguration) {
     this.configuration = redisStoreConfiguration;
+    this.nearCache = configuration.getNearCache().isEnabled() ? new RedisNearCache(configuration.getNearCache()) : null;
+    this.valueCodec = new RedisValueCodec(configuration.getValueCompression());
+    this.circuitBreaker = configuration.getCircuitBreaker().isEnabled() ? new RedisCircuitBreaker(configuration.getCircuitBreaker()) : null;
+    this.fallback = circuitBreaker != null && configuration.getCircuitBreaker().getFallbackMaxEntries() > 0 ? new RedisNearCache(fallbackConfiguration()) : null;
+
+    if (configuration.isWarmUp()) {
+      try {
+        warmUp();
+      } catch (RuntimeException e) {
+        close();
+        throw e;
+      }
+    }
   }
 
-  @Override
-  public final void delete(String key) {
+  /**
+   * Opens all configured connections and verifies each one with a PING, so that connection cost and configuration
+   * errors surface at startup instead of on the first request.
+   */
+  public final void warmUp() {
     if (configuration.isCluster()) {
-      safeClusterCall("delete", (conn) -> {
-        conn.sync().del(key);
+      safeClusterCall("warmUp", null, (conn) -> {
+        clusterConnectionPool().all().forEach((c) -> c.sync().ping());
         return Void.TYPE;
       });
     } else {
-      safeCall("delete", (conn) -> {
-        conn.sync().del(key);
+      safeCall("warmUp", null, (conn) -> {
+        connectionPool().all().forEach((c) -> c.sync().ping());
         return Void.TYPE;
       });
     }
   }
 
+  /**
+   * Closes all connections and shuts down the client and its event loops. Subsequent operations fail with
+   * {@link RedisStoreConnectionException}.
+   */
+  @Override
+  public final synchronized void close() {
+    closed = true;
+
+    if (connectionPool != null) {
+      connectionPool.all().forEach(StatefulConnection::close);
+    } else if (connection != null) {
+      connection.close();
+    }
+
+    if (clusterConnectionPool != null) {
+      clusterConnectionPool.all().forEach(StatefulConnection::close);
+    } else if (redisClusterConnection != null) {
+      redisClusterConnection.close();
+    }
+
+    if (nearCacheInvalidationConnection != null) {
+      nearCacheInvalidationConnection.close();
+    }
+
+    synchronized (schedulerLock) {
+      if (scheduler != null) {
+        scheduler.shutdownNow();
+        scheduler = null;
+      }
+    }
+
+    if (redisClient != null) {
+      redisClient.shutdown();
+    }
+
+    if (redisClusterClient != null) {
+      redisClusterClient.shutdown();
+    }
+
+    if (clientResources != null) {
+      if (configuration.isSharedClientResources()) {
+        RedisClientResourcesRegistry.release(clientResources);
+      } else {
+        clientResources.shutdown();
+      }
+    }
+
+    connectionPool = null;
+    clusterConnectionPool = null;
+    connection = null;
+    redisClusterConnection = null;
+    nearCacheInvalidationConnection = null;
+    redisClient = null;
+    redisClusterClient = null;
+    redisUri = null;
+    clientResources = null;
+    instrumentedClientResources = null;
+  }
+
+  @Override
+  public final void delete(String key) {
+    try {
+      if (configuration.isCluster()) {
+        safeClusterCall("delete", key, (conn) -> {
+          conn.sync().del(key);
+          return Void.TYPE;
+        });
+      } else {
+        safeCall("delete", key, (conn) -> {
+          conn.sync().del(key);
+          return Void.TYPE;
+        });
+      }
+      invalidateFallback(key);
+    } catch (RuntimeException e) {
+      invalidateFallback(key);
+      throw e;
+    } finally {
+      invalidateNearCache(key);
+    }
+  }
+
   @Override
   public final void deleteSet(String key, String value) {
-    if (configuration.isCluster()) {
-      safeClusterCall("deleteSet", (conn) -> {
-        conn.sync().srem(key, value);
-        return Void.TYPE;
-      });
-    } else {
-      safeCall("deleteSet", (conn) -> {
-        conn.sync().srem(key, value);
-        return Void.TYPE;
-      });
+    try {
+      if (configuration.isCluster()) {
+        safeClusterCall("deleteSet", key, (conn) -> {
+          conn.sync().srem(key, value);
+          return Void.TYPE;
+        });
+      } else {
+        safeCall("deleteSet", key, (conn) -> {
+          conn.sync().srem(key, value);
+          return Void.TYPE;
+        });
+      }
+      mirrorMembership(key, value, false);
+    } catch (RuntimeException e) {
+      invalidateFallback(key);
+      throw e;
+    } finally {
+      invalidateNearCache(key);
     }
   }
 
   @Override
   public final String get(String key) {
-    if (configuration.isCluster()) {
-      return safeClusterCall("get", (conn) -> {
-        return conn.sync().get(key);
-      });
-    } else {
-      return safeCall("get", (conn) -> {
-        return conn.sync().get(key);
-      });
+    if (isNearCacheable(key)) {
+      String cached = nearCache.getValue(key);
+      if (cached != null) {
+        return cached;
+      }
+
+      long stamp = nearCache.stamp();
+      String value = getCoalesced(key);
+      nearCache.putValue(key, value, stamp);
+      return value;
     }
+
+    return getCoalesced(key);
   }
 
   @Override
   public final Set<String> getSet(String key) {
-    if (configuration.isCluster()) {
-      return safeClusterCall("getSet", (conn) -> {
+    Set<String> members;
+    if (configuration.getSetScanThreshold() > 0 && setSize(key) > configuration.getSetScanThreshold()) {
+      // Many small SSCAN replies instead of one huge SMEMBERS reply that would hold up the connection
+      try (Stream<String> scanned = scanSet(key)) {
+        members = scanned.collect(Collectors.toCollection(LinkedHashSet::new));
+      }
+    } else if (configuration.isCluster()) {
+      members = safeClusterCall("getSet", key, (conn) -> {
         return conn.sync().smembers(key);
       });
     } else {
-      return safeCall("getSet", (conn) -> {
+      members = safeCall("getSet", key, (conn) -> {
         return conn.sync().smembers(key);
       });
     }
+    instrumentation.payload("getSet", members);
+
+    return members;
   }
 
   @Override
   public final boolean inSet(String key, String value) {
-    if (configuration.isCluster()) {
-      return safeClusterCall("inSet", (conn) -> {
-        return conn.sync().sismember(key, value);
-      });
-    } else {
-      return safeCall("inSet", (conn) -> {
-        return conn.sync().sismember(key, value);
-      });
+    if (isNearCacheable(key)) {
+      Boolean cached = nearCache.getMembership(key, value);
+      if (cached != null) {
+        return cached;
+      }
+
+      long stamp = nearCache.stamp();
+      boolean isMember = inSetFromRedis(key, value);
+      nearCache.putMembership(key, value, isMember, stamp);
+      return isMember;
     }
+
+    return inSetFromRedis(key, value);
   }
 
   @Override
   public final void put(String key, String value, long expirySeconds) {
-    if (configuration.isCluster()) {
-      safeClusterCall("put", (conn) -> {
-        conn.sync().set(key, value);
-        conn.sync().expire(key, expirySeconds);
-        return Void.TYPE;
-      });
-    } else {
-      safeCall("put", (conn) -> {
-        conn.sync().set(key, value);
-        conn.sync().expire(key, expirySeconds);
-        return Void.TYPE;
-      });
+    instrumentation.payload("put", value);
+    try {
+      if (configuration.isCluster()) {
+        safeClusterCall("put", key, (conn) -> {
+          set(conn.sync(), key, value, SetArgs.Builder.ex(expirySeconds));
+          return Void.TYPE;
+        });
+      } else {
+        safeCall("put", key, (conn) -> {
+          set(conn.sync(), key, value, SetArgs.Builder.ex(expirySeconds));
+          return Void.TYPE;
+        });
+      }
+      mirrorValue(key, value);
+    } catch (RuntimeException e) {
+      invalidateFallback(key);
+      throw e;
+    } finally {
+      invalidateNearCache(key);
     }
   }
 
@@ -144,18 +425,25 @@ public class RedisStore implements Store {
 
   @Override
   public final void putSet(String key, String value, long expirySeconds) {
-    if (configuration.isCluster()) {
-      safeClusterCall("putSet", (conn) -> {
-        conn.sync().sadd(key, value);
-        conn.sync().expire(key, expirySeconds);
-        return Void.TYPE;
-      });
-    } else {
-      safeCall("putSet", (conn) -> {
-        conn.sync().sadd(key, value);
-        conn.sync().expire(key, expirySeconds);
-        return Void.TYPE;
-      });
+    instrumentation.payload("putSet", value);
+    try {
+      if (configuration.isCluster()) {
+        safeClusterCall("putSet", key, (conn) -> {
+          conn.sync().eval(PUT_SET_SCRIPT, ScriptOutputType.INTEGER, new String[] { key }, value, String.valueOf(expirySeconds));
+          return Void.TYPE;
+        });
+      } else {
+        safeCall("putSet", key, (conn) -> {
+          conn.sync().eval(PUT_SET_SCRIPT, ScriptOutputType.INTEGER, new String[] { key }, value, String.valueOf(expirySeconds));
+          return Void.TYPE;
+        });
+      }
+      mirrorMembership(key, value, true);
+    } catch (RuntimeException e) {
+      invalidateFallback(key);
+      throw e;
+    } finally {
+      invalidateNearCache(key);
     }
   }
 
@@ -166,23 +454,28 @@ public class RedisStore implements Store {
 
   @Override
   public final boolean putIfNotExist(String key, String value, long expirySeconds) {
-    if (configuration.isCluster()) {
-      return safeClusterCall("putIfNotExist", (conn) -> {
-        boolean result = conn.sync().setnx(key, value);
-        if (result) {
-          conn.sync().expire(key, expirySeconds);
-        }
-        return result;
-      });
-    } else {
-      return safeCall("putIfNotExist", (conn) -> {
-        boolean result = conn.sync().setnx(key, value);
-        if (result) {
-          conn.sync().expire(key, expirySeconds);
-        }
+    instrumentation.payload("putIfNotExist", value);
+    try {
+      boolean written;
+      if (configuration.isCluster()) {
+        written = safeClusterCall("putIfNotExist", key, (conn) -> {
+          return SET_OK.equals(set(conn.sync(), key, value, SetArgs.Builder.nx().ex(expirySeconds)));
+        });
+      } else {
+        written = safeCall("putIfNotExist", key, (conn) -> {
+          return SET_OK.equals(set(conn.sync(), key, value, SetArgs.Builder.nx().ex(expirySeconds)));
+        });
+      }
+      if (written) {
+        mirrorValue(key, value);
+      }
 
-        return result;
-      });
+      return written;
+    } catch (RuntimeException e) {
+      invalidateFallback(key);
+      throw e;
+    } finally {
+      invalidateNearCache(key);
     }
   }
 
@@ -191,96 +484,1553 @@ public class RedisStore implements Store {
     throw new RedisStoreUnsupportedException(PUT_UNSUPPORTED_OPERATION);
   }
 
-  // Private
+  // Batch
+
+  /**
+   * Deletes all given keys in as few round trips as possible. In cluster mode the keys are partitioned by slot.
+   *
+   * @param keys to delete
+   */
+  public final void deleteAll(Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return;
+    }
 
-  final synchronized StatefulRedisConnection<String, String> buildConnection() {
     try {
-      ClientResources resources = ClientResources.builder()
-          .ioThreadPoolSize(configuration.getIoThreadPoolSize())
-          .computationThreadPoolSize(configuration.getComputationThreadPoolSize())
-          .build();
+      String[] keyArray = keys.toArray(new String[0]);
+      if (configuration.isCluster()) {
+        safeClusterCall("deleteAll", null, (conn) -> {
+          conn.sync().del(keyArray);
+          return Void.TYPE;
+        });
+      } else {
+        safeCall("deleteAll", null, (conn) -> {
+          conn.sync().del(keyArray);
+          return Void.TYPE;
+        });
+      }
+    } finally {
+      keys.forEach(this::invalidateNearCache);
+    }
+  }
 
-      RedisClient redisClient = RedisClient.create(resources, new RedisURI(configuration.getHost(), configuration.getPort(), configuration.getTimeout()));
+  /**
+   * Gets values for all given keys using MGET. In cluster mode the keys are partitioned by slot.
+   *
+   * @param keys to get
+   * @return map of key to value. Keys that do not exist are omitted.
+   */
+  public final Map<String, String> getAll(Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return new LinkedHashMap<>();
+    }
 
-      // RESP3 executes a HELLO command to discover the protocol before executing any commands made by the client.
-      // This can cause issues if we are communicating over a proxy and the proxy doesn't speak RESP3. For now, it is safer
-      // to default to RESP2 until RESP3 becomes more normalized.
-      ClientOptions options = ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build();
-      redisClient.setOptions(options);
+    String[] keyArray = keys.toArray(new String[0]);
+    Map<String, String> values;
+    if (configuration.isCluster()) {
+      values = safeClusterCall("getAll", null, (conn) -> {
+        return toMap(conn.sync().mget(keyArray));
+      });
+    } else {
+      values = safeCall("getAll", null, (conn) -> {
+        return toMap(conn.sync().mget(keyArray));
+      });
+    }
+    instrumentation.payload("getAll", values.values());
 
-      return redisClient.connect();
-    } catch (RedisException e) {
-      throw new RedisStoreConnectionException("An error occurred connecting to redis", e);
+    return values;
+  }
+
+  /**
+   * Puts all given values with expiration. The writes are pipelined on the connection and awaited together, so the
+   * batch costs roughly one round trip per node. Each key is written atomically, the batch as a whole is not.
+   *
+   * @param values map of key to value
+   * @param expirySeconds time to live applied to every key
+   */
+  public final void putAll(Map<String, String> values, long expirySeconds) {
+    if (values.isEmpty()) {
+      return;
+    }
+
+    instrumentation.payload("putAll", values.values());
+    try {
+      if (configuration.isCluster()) {
+        safeClusterCall("putAll", null, (conn) -> {
+          List<CompletableFuture<String>> futures = new ArrayList<>();
+          values.forEach((key, value) -> futures.add(setAsync(conn.async(), key, value, SetArgs.Builder.ex(expirySeconds)).toCompletableFuture()));
+          CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+          return Void.TYPE;
+        });
+      } else {
+        safeCall("putAll", null, (conn) -> {
+          List<CompletableFuture<String>> futures = new ArrayList<>();
+          values.forEach((key, value) -> futures.add(setAsync(conn.async(), key, value, SetArgs.Builder.ex(expirySeconds)).toCompletableFuture()));
+          CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+          return Void.TYPE;
+        });
+      }
+    } finally {
+      values.keySet().forEach(this::invalidateNearCache);
     }
   }
 
-  final synchronized StatefulRedisClusterConnection<String, String> buildClusterConnection() {
+  // Scan
+
+  /**
+   * Lazily iterates over keys matching pattern using SCAN, fetching {@link RedisStoreConfiguration#getScanCount()} keys
+   * per round trip. In cluster mode every primary is scanned in turn. Keys may be returned more than once, and keys
+   * added or removed during the scan may or may not be returned.
+   *
+   * @param pattern glob-style pattern, e.g. {@code session:*}
+   * @return stream of matching keys. Failures while fetching a page surface from the consuming stream operation.
+   */
+  public final Stream<String> scan(String pattern) {
+    ScanArgs args = ScanArgs.Builder.matches(pattern).limit(configuration.getScanCount());
+    if (configuration.isCluster()) {
+      return new RedisScanIterator<KeyScanCursor<String>, String>((cursor) -> safeClusterCall("scan", null, (conn) -> {
+        return conn.sync().scan(cursor, args);
+      }), KeyScanCursor::getKeys).stream();
+    } else {
+      return new RedisScanIterator<KeyScanCursor<String>, String>((cursor) -> safeCall("scan", null, (conn) -> {
+        return conn.sync().scan(cursor, args);
+      }), KeyScanCursor::getKeys).stream();
+    }
+  }
+
+  /**
+   * Lazily iterates over members of set using SSCAN, fetching {@link RedisStoreConfiguration#getScanCount()} members per
+   * round trip. Use instead of {@link #getSet(String)} for sets too large to hold in memory at once. Members may be
+   * returned more than once.
+   *
+   * @param key of set
+   * @return stream of set members. Failures while fetching a page surface from the consuming stream operation.
+   */
+  public final Stream<String> scanSet(String key) {
+    ScanArgs args = ScanArgs.Builder.limit(configuration.getScanCount());
+    if (configuration.isCluster()) {
+      return new RedisScanIterator<ValueScanCursor<String>, String>((cursor) -> safeClusterCall("scanSet", key, (conn) -> {
+        return conn.sync().sscan(key, cursor, args);
+      }), ValueScanCursor::getValues).stream();
+    } else {
+      return new RedisScanIterator<ValueScanCursor<String>, String>((cursor) -> safeCall("scanSet", key, (conn) -> {
+        return conn.sync().sscan(key, cursor, args);
+      }), ValueScanCursor::getValues).stream();
+    }
+  }
+
+  /**
+   * @param key of set
+   * @return number of members in set (SCARD), 0 if the set does not exist
+   */
+  public final long setSize(String key) {
+    if (configuration.isCluster()) {
+      return safeClusterCall("setSize", key, (conn) -> {
+        return conn.sync().scard(key);
+      });
+    } else {
+      return safeCall("setSize", key, (conn) -> {
+        return conn.sync().scard(key);
+      });
+    }
+  }
+
+  /**
+   * Deletes every key matching pattern. Keys are discovered with {@link #scan(String)} and deleted in batches of
+   * {@link RedisStoreConfiguration#getScanCount()}, so memory use stays bounded regardless of how many keys match.
+   *
+   * @param pattern glob-style pattern, e.g. {@code session:*}
+   * @return number of keys deleted
+   */
+  public final long deleteByPattern(String pattern) {
+    int batchSize = configuration.getScanCount();
+    List<String> batch = new ArrayList<>(batchSize);
+    long deleted = 0;
+
+    try (Stream<String> keys = scan(pattern)) {
+      Iterator<String> iterator = keys.iterator();
+      while (iterator.hasNext()) {
+        batch.add(iterator.next());
+        if (batch.size() >= batchSize) {
+          deleted += deleteBatch(batch);
+          batch.clear();
+        }
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      deleted += deleteBatch(batch);
+    }
+
+    return deleted;
+  }
+
+  // Deadlines
+
+  /**
+   * Runs operation with a caller deadline. Every Redis command issued by this thread inside operation times out at
+   * the earlier of its own timeout and the deadline, so the store only spends the remaining budget. Commands issued
+   * once the deadline has passed fail immediately.
+   *
+   * @param deadline to finish by
+   * @param operation store calls to run
+   * @param <T> result type
+   * @return result of operation
+   */
+  public final <T> T withDeadline(Instant deadline, Supplier<T> operation) {
+    Long previous = deadlineNanos.get();
+    long remaining = Duration.between(Instant.now(), deadline).toNanos();
+    long deadlineAt = System.nanoTime() + remaining;
+    deadlineNanos.set(previous == null ? deadlineAt : Math.min(previous, deadlineAt));
     try {
-      ClientResources resources = ClientResources.builder()
-          .ioThreadPoolSize(configuration.getIoThreadPoolSize())
-          .computationThreadPoolSize(configuration.getComputationThreadPoolSize())
-          .build();
-
-      RedisURI redisUri = RedisURI.Builder.redis(configuration.getHost(), configuration.getPort())
-          .withSsl(configuration.isSsl())
-          .withVerifyPeer(false)
-          .build();
-
-      RedisClusterClient redisClusterClient = RedisClusterClient.create(resources, redisUri);
-      ClusterTopologyRefreshOptions topologyRefreshOptions = ClusterTopologyRefreshOptions.builder()
-          .enablePeriodicRefresh(Duration.ofMinutes(REDIS_REFRESH_INTERVAL))
-          .enableAllAdaptiveRefreshTriggers()
-          .build();
-      SslOptions sslOptions = SslOptions.builder()
-          .keyManager(new File(configuration.getCertFile()), new File(configuration.getKeyFile()), configuration.getPasswordFile().toCharArray())
-          .build();
-      ClusterClientOptions clusterClientOptions = ClusterClientOptions.builder()
-          .topologyRefreshOptions(topologyRefreshOptions)
-          .sslOptions(sslOptions).build();
-      redisClusterClient.setOptions(clusterClientOptions);
-
-      return redisClusterClient.connect();
-    } catch (RedisException e) {
-      throw new RedisStoreConnectionException("An error occurred connecting to redis", e);
+      return operation.get();
+    } finally {
+      if (previous == null) {
+        deadlineNanos.remove();
+      } else {
+        deadlineNanos.set(previous);
+      }
+    }
+  }
+
+  // Hash fields
+
+  /**
+   * @param key of hash
+   * @param field to get
+   * @return field value, or null if the hash or field does not exist
+   */
+  public final String getField(String key, String field) {
+    if (configuration.isCluster()) {
+      return safeClusterCall("getField", key, (conn) -> {
+        return conn.sync().hget(key, field);
+      });
+    } else {
+      return safeCall("getField", key, (conn) -> {
+        return conn.sync().hget(key, field);
+      });
+    }
+  }
+
+  /**
+   * Gets several fields of a hash in one round trip (HMGET).
+   *
+   * @param key of hash
+   * @param fields to get
+   * @return map of field to value. Fields that do not exist are omitted.
+   */
+  public final Map<String, String> getFields(String key, Collection<String> fields) {
+    if (fields.isEmpty()) {
+      return new LinkedHashMap<>();
+    }
+
+    String[] fieldArray = fields.toArray(new String[0]);
+    if (configuration.isCluster()) {
+      return safeClusterCall("getFields", key, (conn) -> {
+        return toMap(conn.sync().hmget(key, fieldArray));
+      });
+    } else {
+      return safeCall("getFields", key, (conn) -> {
+        return toMap(conn.sync().hmget(key, fieldArray));
+      });
     }
   }
 
-  private <T> T safeCall(String operation, Function<StatefulRedisConnection<String, String>, T> runnable) {
+  /**
+   * Sets one field of a hash and (re)sets the expiration of the whole hash. Only the field is sent, not the rest of
+   * the hash.
+   *
+   * @param key of hash
+   * @param field to set
+   * @param value to set
+   * @param expirySeconds time to live of the hash
+   */
+  public final void putField(String key, String field, String value, long expirySeconds) {
+    putFields(key, Map.of(field, value), expirySeconds);
+  }
+
+  /**
+   * Sets several fields of a hash and (re)sets the expiration of the whole hash, atomically and in one round trip.
+   *
+   * @param key of hash
+   * @param values map of field to value
+   * @param expirySeconds time to live of the hash
+   */
+  public final void putFields(String key, Map<String, String> values, long expirySeconds) {
+    if (values.isEmpty()) {
+      return;
+    }
+
+    String[] args = new String[values.size() * 2 + 1];
+    args[0] = String.valueOf(expirySeconds);
+    int i = 1;
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      args[i++] = entry.getKey();
+      args[i++] = entry.getValue();
+    }
+
+    instrumentation.payload("putFields", values.values());
     try {
-      return runnable.apply(connection());
-    } catch (RedisStoreConnectionException e) {
-      throw e;
-    } catch (RedisException e) {
-      throw new RedisStoreOperationException("Redis error occurred on " + operation, e);
-    } catch (RuntimeException e) {
-      throw new RedisStoreOperationException("Unknown exception thrown by redis on " + operation, e);
+      if (configuration.isCluster()) {
+        safeClusterCall("putFields", key, (conn) -> {
+          return conn.sync().eval(PUT_FIELDS_SCRIPT, ScriptOutputType.INTEGER, new String[] { key }, args);
+        });
+      } else {
+        safeCall("putFields", key, (conn) -> {
+          return conn.sync().eval(PUT_FIELDS_SCRIPT, ScriptOutputType.INTEGER, new String[] { key }, args);
+        });
+      }
+    } finally {
+      invalidateNearCache(key);
     }
   }
 
-  private <T> T safeClusterCall(String operation, Function<StatefulRedisClusterConnection<String, String>, T> runnable) {
+  /**
+   * @param key of hash
+   * @param field to delete
+   */
+  public final void deleteField(String key, String field) {
     try {
-      return (T) runnable.apply(clusterConnection());
-    } catch (RedisStoreConnectionException e) {
-      throw e;
-    } catch (RedisException e) {
-      throw new RedisStoreOperationException("Redis error occurred on " + operation, e);
-    } catch (RuntimeException e) {
-      throw new RedisStoreOperationException("Unknown exception thrown by redis on " + operation, e);
+      if (configuration.isCluster()) {
+        safeClusterCall("deleteField", key, (conn) -> {
+          conn.sync().hdel(key, field);
+          return Void.TYPE;
+        });
+      } else {
+        safeCall("deleteField", key, (conn) -> {
+          conn.sync().hdel(key, field);
+          return Void.TYPE;
+        });
+      }
+    } finally {
+      invalidateNearCache(key);
     }
   }
 
-  private StatefulRedisConnection<String, String> connection() {
-    if (connection == null) {
-      connection = buildConnection();
+  // Read-through
+
+  /**
+   * Gets value for key, loading and storing it on a miss. Concurrent misses for the same key on this node share a
+   * single load.
+   *
+   * <p>A hit may instead refresh the value before it expires, with a probability that rises as expiry approaches and
+   * with the time a load takes (XFetch, scaled by {@link RedisStoreConfiguration#getEarlyRefreshBeta()}). A hot key
+   * is then usually refreshed by one caller shortly before it expires, instead of by every caller at once after it
+   * expires. Callers that hit while a refresh is already running on this node get the current value.
+   *
+   * <p>Reads go to Redis (not the near cache), since the remaining time to live is needed.
+   *
+   * @param key to get
+   * @param expirySeconds time to live of loaded values
+   * @param recomputeTime typical time loader takes. {@link Duration#ZERO} disables early refresh.
+   * @param loader produces the value on a miss or refresh. A null result is returned but not stored.
+   * @return value
+   */
+  public final String getOrLoad(String key, long expirySeconds, Duration recomputeTime, Supplier<String> loader) {
+    List<Object> current;
+    if (configuration.isCluster()) {
+      current = safeClusterCall("getOrLoad", key, (conn) -> {
+        return awaitAll(conn.async().get(key), conn.async().pttl(key));
+      });
+    } else {
+      current = safeCall("getOrLoad", key, (conn) -> {
+        return awaitAll(conn.async().get(key), conn.async().pttl(key));
+      });
+    }
+
+    String value = (String) current.get(0);
+    if (value == null) {
+      return coalesce("getOrLoad", inFlightLoads, key, () -> load(key, expirySeconds, loader));
+    }
+
+    if (shouldRefreshEarly((Long) current.get(1), recomputeTime)) {
+      CompletableFuture<String> refresh = new CompletableFuture<>();
+      if (inFlightLoads.putIfAbsent(key, refresh) == null) {
+        try {
+          String refreshed = load(key, expirySeconds, loader);
+          refresh.complete(refreshed);
+          return refreshed;
+        } catch (RuntimeException e) {
+          refresh.completeExceptionally(e);
+          throw e;
+        } finally {
+          inFlightLoads.remove(key, refresh);
+        }
+      }
+    }
+
+    return value;
+  }
+
+  /**
+   * XFetch: refresh when {@code recomputeTime * beta * -ln(random)} reaches the remaining time to live.
+   *
+   * @param ttlMillis remaining time to live, negative if the key has no expiration
+   * @param recomputeTime typical load time
+   * @return true if this caller should refresh now
+   */
+  final boolean shouldRefreshEarly(long ttlMillis, Duration recomputeTime) {
+    if (ttlMillis < 0 || recomputeTime.isZero() || configuration.getEarlyRefreshBeta() <= 0) {
+      return false;
+    }
+
+    double gap = recomputeTime.toMillis() * configuration.getEarlyRefreshBeta() * -Math.log(ThreadLocalRandom.current().nextDouble());
+    return gap >= ttlMillis;
+  }
+
+  // Leases
+
+  /**
+   * Acquires an exclusive, expiring lease on key. The owner token and expiration are set in one atomic command, so a
+   * lease can never be left without a TTL.
+   *
+   * @param key to lease
+   * @param options lease time, wait timeout, fencing and watchdog options
+   * @return lease, or null if another owner still held it when the wait timeout elapsed
+   */
+  public final RedisLease acquireLease(String key, RedisLeaseOptions options) {
+    String token = UUID.randomUUID().toString();
+    long deadline = System.nanoTime() + options.getWaitTimeout().toNanos();
+
+    while (true) {
+      long acquired = tryAcquireLease(key, token, options);
+      if (acquired > 0) {
+        RedisLease lease = new RedisLease(this, key, token, options.isFencing() ? acquired : 0, options.getLeaseTime());
+        if (options.isWatchdog()) {
+          long period = Math.max(1, options.getLeaseTime().toMillis() / 3);
+          lease.startWatchdog(scheduler().scheduleAtFixedRate(lease::watchdogTick, period, period, TimeUnit.MILLISECONDS));
+        }
+
+        return lease;
+      }
+
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+
+      try {
+        Thread.sleep(Math.min(options.getRetryInterval().toMillis(), TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Key holding the fencing counter for a lease key. Shares the lease key's hash slot, so both can be used in one
+   * script in cluster mode.
+   *
+   * @param key lease key
+   * @return fencing counter key
+   */
+  static String fencingKey(String key) {
+    return slotLocalKey(key, FENCING_SUFFIX);
+  }
+
+  /**
+   * Derives a key that hashes to the same cluster slot as key.
+   *
+   * @param key base key
+   * @param suffix to append
+   * @return derived key
+   * @throws RedisStoreUnsupportedException if key contains '}' outside a hash tag, in which case no derived key can
+   *                                        share its slot
+   */
+  static String slotLocalKey(String key, String suffix) {
+    int open = key.indexOf('{');
+    if (open >= 0) {
+      int close = key.indexOf('}', open + 1);
+      if (close > open + 1) {
+        // Already has a hash tag, which the derived key inherits
+        return key + suffix;
+      }
+    }
+
+    if (key.indexOf('}') >= 0) {
+      throw new RedisStoreUnsupportedException("Cannot derive a key in the same hash slot as " + key);
+    }
+
+    return "{" + key + "}" + suffix;
+  }
+
+  /**
+   * Runs a single-key Lua script with the same error handling and metrics as the built-in operations.
+   *
+   * @param operation name used in errors and metrics
+   * @param script Lua source
+   * @param type of the script result
+   * @param key KEYS[1]
+   * @param args ARGV
+   * @param <T> result type
+   * @return script result
+   */
+  final <T> T evalScript(String operation, String script, ScriptOutputType type, String key, String... args) {
+    String[] keys = new String[] { key };
+    if (configuration.isCluster()) {
+      return safeClusterCall(operation, key, (conn) -> {
+        return conn.sync().<T>eval(script, type, keys, args);
+      });
+    } else {
+      return safeCall(operation, key, (conn) -> {
+        return conn.sync().<T>eval(script, type, keys, args);
+      });
+    }
+  }
+
+  final boolean renewLease(RedisLease lease) {
+    String[] keys = new String[] { lease.getKey() };
+    String leaseMillis = String.valueOf(lease.getLeaseTime().toMillis());
+    if (configuration.isCluster()) {
+      return safeClusterCall("renewLease", lease.getKey(), (conn) -> {
+        return conn.sync().<Long>eval(RENEW_LEASE_SCRIPT, ScriptOutputType.INTEGER, keys, lease.getToken(), leaseMillis) > 0;
+      });
+    } else {
+      return safeCall("renewLease", lease.getKey(), (conn) -> {
+        return conn.sync().<Long>eval(RENEW_LEASE_SCRIPT, ScriptOutputType.INTEGER, keys, lease.getToken(), leaseMillis) > 0;
+      });
+    }
+  }
+
+  final boolean releaseLease(RedisLease lease) {
+    String[] keys = new String[] { lease.getKey() };
+    if (configuration.isCluster()) {
+      return safeClusterCall("releaseLease", lease.getKey(), (conn) -> {
+        return conn.sync().<Long>eval(RELEASE_LEASE_SCRIPT, ScriptOutputType.INTEGER, keys, lease.getToken()) > 0;
+      });
+    } else {
+      return safeCall("releaseLease", lease.getKey(), (conn) -> {
+        return conn.sync().<Long>eval(RELEASE_LEASE_SCRIPT, ScriptOutputType.INTEGER, keys, lease.getToken()) > 0;
+      });
+    }
+  }
+
+  // Asynchronous
+
+  /**
+   * Asynchronously deletes key.
+   *
+   * @param key to delete
+   * @return stage completed when the key has been deleted
+   */
+  public final CompletionStage<Void> deleteAsync(String key) {
+    CompletionStage<Void> deleted;
+    if (configuration.isCluster()) {
+      deleted = safeClusterAsyncCall("delete", key, (conn) -> {
+        return conn.async().del(key).thenAccept((result) -> {
+        });
+      });
+    } else {
+      deleted = safeAsyncCall("delete", key, (conn) -> {
+        return conn.async().del(key).thenAccept((result) -> {
+        });
+      });
+    }
+
+    return invalidatingNearCache(key, mirroringFallback(key, deleted, (result) -> invalidateFallback(key)));
+  }
+
+  /**
+   * Asynchronously gets value for key.
+   *
+   * @param key to get
+   * @return stage completed with the value, or null if the key does not exist
+   */
+  public final CompletionStage<String> getAsync(String key) {
+    if (isNearCacheable(key)) {
+      String cached = nearCache.getValue(key);
+      if (cached != null) {
+        return CompletableFuture.completedFuture(cached);
+      }
+
+      long stamp = nearCache.stamp();
+      return getCoalescedAsync(key).thenApply((value) -> {
+        nearCache.putValue(key, value, stamp);
+        return value;
+      });
+    }
+
+    return getCoalescedAsync(key);
+  }
+
+  /**
+   * Asynchronously gets all members of set.
+   *
+   * @param key of set
+   * @return stage completed with the set members
+   */
+  public final CompletionStage<Set<String>> getSetAsync(String key) {
+    CompletionStage<Set<String>> members;
+    if (configuration.isCluster()) {
+      members = safeClusterAsyncCall("getSet", key, (conn) -> {
+        return conn.async().smembers(key);
+      });
+    } else {
+      members = safeAsyncCall("getSet", key, (conn) -> {
+        return conn.async().smembers(key);
+      });
+    }
+
+    return members.whenComplete((result, throwable) -> instrumentation.payload("getSet", result));
+  }
+
+  /**
+   * Asynchronously checks set membership.
+   *
+   * @param key of set
+   * @param value to check
+   * @return stage completed with true if value is a member of the set
+   */
+  public final CompletionStage<Boolean> inSetAsync(String key, String value) {
+    if (isNearCacheable(key)) {
+      Boolean cached = nearCache.getMembership(key, value);
+      if (cached != null) {
+        return CompletableFuture.completedFuture(cached);
+      }
+
+      long stamp = nearCache.stamp();
+      return inSetFromRedisAsync(key, value).thenApply((isMember) -> {
+        nearCache.putMembership(key, value, isMember, stamp);
+        return isMember;
+      });
+    }
+
+    return inSetFromRedisAsync(key, value);
+  }
+
+  /**
+   * Asynchronously puts value with expiration.
+   *
+   * @param key to put
+   * @param value to put
+   * @param expirySeconds time to live
+   * @return stage completed when the value has been written
+   */
+  public final CompletionStage<Void> putAsync(String key, String value, long expirySeconds) {
+    instrumentation.payload("put", value);
+    CompletionStage<Void> written;
+    if (configuration.isCluster()) {
+      written = safeClusterAsyncCall("put", key, (conn) -> {
+        return setAsync(conn.async(), key, value, SetArgs.Builder.ex(expirySeconds)).thenAccept((result) -> {
+        });
+      });
+    } else {
+      written = safeAsyncCall("put", key, (conn) -> {
+        return setAsync(conn.async(), key, value, SetArgs.Builder.ex(expirySeconds)).thenAccept((result) -> {
+        });
+      });
+    }
+
+    return invalidatingNearCache(key, mirroringFallback(key, written, (result) -> mirrorValue(key, value)));
+  }
+
+  /**
+   * Asynchronously adds value to set and resets the set expiration.
+   *
+   * @param key of set
+   * @param value to add
+   * @param expirySeconds time to live
+   * @return stage completed when the value has been added
+   */
+  public final CompletionStage<Void> putSetAsync(String key, String value, long expirySeconds) {
+    instrumentation.payload("putSet", value);
+    CompletionStage<Void> added;
+    if (configuration.isCluster()) {
+      added = safeClusterAsyncCall("putSet", key, (conn) -> {
+        return conn.async().eval(PUT_SET_SCRIPT, ScriptOutputType.INTEGER, new String[] { key }, value, String.valueOf(expirySeconds)).thenAccept((result) -> {
+        });
+      });
+    } else {
+      added = safeAsyncCall("putSet", key, (conn) -> {
+        return conn.async().eval(PUT_SET_SCRIPT, ScriptOutputType.INTEGER, new String[] { key }, value, String.valueOf(expirySeconds)).thenAccept((result) -> {
+        });
+      });
+    }
+
+    return invalidatingNearCache(key, mirroringFallback(key, added, (result) -> mirrorMembership(key, value, true)));
+  }
+
+  /**
+   * Asynchronously puts value with expiration only if the key does not exist.
+   *
+   * @param key to put
+   * @param value to put
+   * @param expirySeconds time to live
+   * @return stage completed with true if the value was written
+   */
+  public final CompletionStage<Boolean> putIfNotExistAsync(String key, String value, long expirySeconds) {
+    instrumentation.payload("putIfNotExist", value);
+    CompletionStage<Boolean> written;
+    if (configuration.isCluster()) {
+      written = safeClusterAsyncCall("putIfNotExist", key, (conn) -> {
+        return setAsync(conn.async(), key, value, SetArgs.Builder.nx().ex(expirySeconds)).thenApply(SET_OK::equals);
+      });
+    } else {
+      written = safeAsyncCall("putIfNotExist", key, (conn) -> {
+        return setAsync(conn.async(), key, value, SetArgs.Builder.nx().ex(expirySeconds)).thenApply(SET_OK::equals);
+      });
+    }
+
+    return invalidatingNearCache(key, mirroringFallback(key, written, (result) -> {
+      if (result) {
+        mirrorValue(key, value);
+      }
+    }));
+  }
+
+  // Private
+
+  /**
+   * SET whose value is encoded by {@link #valueCodec}. Without compression this is a plain set, so the command is only
+   * dispatched by hand when the value may need compressing.
+   */
+  private <C extends BaseRedisCommands<String, String> & RedisStringCommands<String, String>> String set(C commands, String key, String value, SetArgs setArgs) {
+    if (!valueCodec.isCompressing()) {
+      return commands.set(key, value, setArgs);
+    }
+
+    return commands.dispatch(CommandType.SET, new StatusOutput<>(RedisValueCodec.UNCOMPRESSED), setCommandArgs(key, value, setArgs));
+  }
+
+  private <C extends BaseRedisAsyncCommands<String, String> & RedisStringAsyncCommands<String, String>> RedisFuture<String> setAsync(C commands, String key, String value, SetArgs setArgs) {
+    if (!valueCodec.isCompressing()) {
+      return commands.set(key, value, setArgs);
+    }
+
+    return commands.dispatch(CommandType.SET, new StatusOutput<>(RedisValueCodec.UNCOMPRESSED), setCommandArgs(key, value, setArgs));
+  }
+
+  private CommandArgs<String, String> setCommandArgs(String key, String value, SetArgs setArgs) {
+    CommandArgs<String, String> args = new CommandArgs<>(valueCodec)
+        .addKey(key)
+        .addValue(value);
+    setArgs.build(args);
+
+    return args;
+  }
+
+  private String load(String key, long expirySeconds, Supplier<String> loader) {
+    String value = loader.get();
+    if (value != null) {
+      put(key, value, expirySeconds);
+    }
+
+    return value;
+  }
+
+  private String getCoalesced(String key) {
+    if (!configuration.isSingleFlightGets()) {
+      return getFromRedis(key);
+    }
+
+    return coalesce("get", inFlightGets, key, () -> getFromRedis(key));
+  }
+
+  /**
+   * Shares the in-flight Lettuce future between concurrent callers for the same key. Callers receive copies so none
+   * can complete the shared future.
+   */
+  private CompletionStage<String> getCoalescedAsync(String key) {
+    if (!configuration.isSingleFlightGets()) {
+      return getFromRedisAsync(key);
+    }
+
+    CompletableFuture<String> leader = new CompletableFuture<>();
+    CompletableFuture<String> existing = inFlightGets.putIfAbsent(key, leader);
+    if (existing != null) {
+      return existing.copy();
+    }
+
+    getFromRedisAsync(key).whenComplete((value, throwable) -> {
+      inFlightGets.remove(key, leader);
+      if (throwable == null) {
+        leader.complete(value);
+      } else {
+        leader.completeExceptionally(throwable);
+      }
+    });
+
+    return leader.copy();
+  }
+
+  /**
+   * Runs supplier unless another caller is already running it for key, in which case that caller's result (or
+   * exception) is shared. A shared result may predate a put this node made while it was in flight.
+   */
+  private String coalesce(String operation, Map<String, CompletableFuture<String>> inFlight, String key, Supplier<String> supplier) {
+    CompletableFuture<String> leader = new CompletableFuture<>();
+    CompletableFuture<String> existing = inFlight.putIfAbsent(key, leader);
+    if (existing != null) {
+      return awaitInFlight(operation, existing);
+    }
+
+    try {
+      String value = supplier.get();
+      leader.complete(value);
+      return value;
+    } catch (RuntimeException e) {
+      leader.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, leader);
+    }
+  }
+
+  /**
+   * Waits for another caller's result, giving up when the {@link #withDeadline} deadline of this thread passes.
+   */
+  private String awaitInFlight(String operation, CompletableFuture<String> inFlight) {
+    Long deadline = deadlineNanos.get();
+    try {
+      if (deadline == null) {
+        return inFlight.get();
+      }
+
+      return inFlight.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw translateException(operation, e);
+    } catch (TimeoutException e) {
+      throw translateException(operation, new RedisCommandTimeoutException("Deadline passed waiting for in-flight " + operation));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw translateException(operation, e);
+    }
+  }
+
+  /**
+   * Waits for pipelined commands, sent together so they cost one round trip.
+   */
+  private static List<Object> awaitAll(CompletionStage<?>... stages) {
+    List<Object> results = new ArrayList<>();
+    for (CompletionStage<?> stage : stages) {
+      results.add(stage.toCompletableFuture().join());
+    }
+
+    return results;
+  }
+
+  private long tryAcquireLease(String key, String token, RedisLeaseOptions options) {
+    String[] keys = options.isFencing() ? new String[] { key, fencingKey(key) } : new String[] { key };
+    String leaseMillis = String.valueOf(options.getLeaseTime().toMillis());
+    if (configuration.isCluster()) {
+      return safeClusterCall("acquireLease", key, (conn) -> {
+        return conn.sync().<Long>eval(ACQUIRE_LEASE_SCRIPT, ScriptOutputType.INTEGER, keys, token, leaseMillis);
+      });
+    } else {
+      return safeCall("acquireLease", key, (conn) -> {
+        return conn.sync().<Long>eval(ACQUIRE_LEASE_SCRIPT, ScriptOutputType.INTEGER, keys, token, leaseMillis);
+      });
+    }
+  }
+
+  /**
+   * Single daemon thread for background work (lease watchdogs, circuit breaker probes). Shut down on close.
+   */
+  private ScheduledExecutorService scheduler() {
+    synchronized (schedulerLock) {
+      ensureOpen();
+      if (scheduler == null) {
+        scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+          Thread thread = new Thread(runnable, "redis-store-scheduler");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+
+      return scheduler;
+    }
+  }
+
+  private long deleteBatch(List<String> keys) {
+    try {
+      String[] keyArray = keys.toArray(new String[0]);
+      if (configuration.isCluster()) {
+        return safeClusterCall("deleteByPattern", null, (conn) -> {
+          return conn.sync().del(keyArray);
+        });
+      } else {
+        return safeCall("deleteByPattern", null, (conn) -> {
+          return conn.sync().del(keyArray);
+        });
+      }
+    } finally {
+      keys.forEach(this::invalidateNearCache);
+    }
+  }
+
+  private String getFromRedis(String key) {
+    String value;
+    try {
+      if (configuration.isCluster()) {
+        value = safeClusterCall("get", key, (conn) -> {
+          return conn.sync().get(key);
+        });
+      } else {
+        value = safeCall("get", key, (conn) -> {
+          return conn.sync().get(key);
+        });
+      }
+    } catch (RedisStoreCircuitOpenException e) {
+      return fallbackOrThrow(e).getValue(key);
+    }
+    instrumentation.payload("get", value);
+    mirrorValue(key, value);
+
+    return value;
+  }
+
+  private boolean inSetFromRedis(String key, String value) {
+    boolean isMember;
+    try {
+      if (configuration.isCluster()) {
+        isMember = safeClusterCall("inSet", key, (conn) -> {
+          return conn.sync().sismember(key, value);
+        });
+      } else {
+        isMember = safeCall("inSet", key, (conn) -> {
+          return conn.sync().sismember(key, value);
+        });
+      }
+    } catch (RedisStoreCircuitOpenException e) {
+      return Boolean.TRUE.equals(fallbackOrThrow(e).getMembership(key, value));
+    }
+    mirrorMembership(key, value, isMember);
+
+    return isMember;
+  }
+
+  private CompletionStage<String> getFromRedisAsync(String key) {
+    CompletionStage<String> value;
+    if (configuration.isCluster()) {
+      value = safeClusterAsyncCall("get", key, (conn) -> {
+        return conn.async().get(key);
+      });
+    } else {
+      value = safeAsyncCall("get", key, (conn) -> {
+        return conn.async().get(key);
+      });
+    }
+
+    return fallbackWhenOpen(value.whenComplete((result, throwable) -> instrumentation.payload("get", result)),
+        (result) -> mirrorValue(key, result),
+        () -> fallback.getValue(key));
+  }
+
+  private CompletionStage<Boolean> inSetFromRedisAsync(String key, String value) {
+    CompletionStage<Boolean> isMember;
+    if (configuration.isCluster()) {
+      isMember = safeClusterAsyncCall("inSet", key, (conn) -> {
+        return conn.async().sismember(key, value);
+      });
+    } else {
+      isMember = safeAsyncCall("inSet", key, (conn) -> {
+        return conn.async().sismember(key, value);
+      });
+    }
+
+    return fallbackWhenOpen(isMember,
+        (result) -> mirrorMembership(key, value, result),
+        () -> Boolean.TRUE.equals(fallback.getMembership(key, value)));
+  }
+
+  /**
+   * Opens a new connection. All connections opened by this store share one client and its resources.
+   *
+   * @return new connection
+   */
+  final synchronized StatefulRedisConnection<String, String> buildConnection() {
+    try {
+      boolean newClient = redisClient == null;
+      if (newClient) {
+        redisClient = buildClient();
+      }
+
+      StatefulRedisConnection<String, String> newConnection;
+      if (isSentinel()) {
+        // Master/replica connections follow sentinel +switch-master events and reconnect to the new master as soon as
+        // a failover is announced.
+        StatefulRedisMasterReplicaConnection<String, String> masterReplicaConnection = MasterReplica.connect(redisClient, RedisValueCodec.UNCOMPRESSED, redisUri);
+        masterReplicaConnection.setReadFrom(readFrom(configuration.getReadFrom()));
+        newConnection = masterReplicaConnection;
+      } else {
+        newConnection = redisClient.connect(RedisValueCodec.UNCOMPRESSED);
+      }
+      if (newClient && nearCache != null) {
+        subscribeNearCacheInvalidations(redisClient);
+      }
+
+      return newConnection;
+    } catch (RedisException e) {
+      throw new RedisStoreConnectionException("An error occurred connecting to redis", e);
+    }
+  }
+
+  /**
+   * Opens a new cluster connection. All connections opened by this store share one client and its resources.
+   *
+   * @return new cluster connection
+   */
+  final synchronized StatefulRedisClusterConnection<String, String> buildClusterConnection() {
+    try {
+      boolean newClient = redisClusterClient == null;
+      if (newClient) {
+        redisClusterClient = buildClusterClient();
+      }
+
+      StatefulRedisClusterConnection<String, String> newConnection = redisClusterClient.connect(RedisValueCodec.UNCOMPRESSED);
+      newConnection.setReadFrom(readFrom(configuration.getReadFrom()));
+      if (newClient && nearCache != null) {
+        subscribeNearCacheInvalidations(redisClusterClient);
+      }
+
+      return newConnection;
+    } catch (RedisException e) {
+      throw new RedisStoreConnectionException("An error occurred connecting to redis", e);
+    }
+  }
+
+  static ReadFrom readFrom(RedisStoreConfiguration.ReadFromPolicy policy) {
+    switch (policy) {
+      case MASTER_PREFERRED:
+        return ReadFrom.UPSTREAM_PREFERRED;
+      case REPLICA:
+        return ReadFrom.REPLICA;
+      case REPLICA_PREFERRED:
+        return ReadFrom.REPLICA_PREFERRED;
+      case LOWEST_LATENCY:
+        return ReadFrom.LOWEST_LATENCY;
+      case ANY:
+        return ReadFrom.ANY;
+      case ANY_REPLICA:
+        return ReadFrom.ANY_REPLICA;
+      case MASTER:
+      default:
+        return ReadFrom.UPSTREAM;
+    }
+  }
+
+  private ClientResources acquireClientResources() {
+    if (configuration.isSharedClientResources()) {
+      return RedisClientResourcesRegistry.acquire(configuration.getIoThreadPoolSize(), configuration.getComputationThreadPoolSize());
+    }
+
+    ClientResources.Builder builder = ClientResources.builder()
+        .ioThreadPoolSize(configuration.getIoThreadPoolSize())
+        .computationThreadPoolSize(configuration.getComputationThreadPoolSize());
+    if (configuration.isCommandLatencyMetrics()) {
+      builder.commandLatencyRecorder(instrumentation.commandLatencyRecorder());
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Resources handed to the client. Owned resources already carry the latency recorder. Shared resources belong to the
+   * registry, so latency is reported through a copy instead. The copy reuses every component of the shared resources
+   * and, with its event publisher disabled, owns none. It must not be shut down: mutate() also copies the shared
+   * resources' ownership flags, so that would stop their event loops. It is dropped on close, after the client.
+   */
+  private ClientResources instrumentedClientResources() {
+    if (!configuration.isCommandLatencyMetrics() || !configuration.isSharedClientResources()) {
+      return clientResources;
+    }
+
+    instrumentedClientResources = clientResources.mutate()
+        .commandLatencyRecorder(instrumentation.commandLatencyRecorder())
+        .commandLatencyPublisherOptions(DefaultEventPublisherOptions.disabled())
+        .build();
+
+    return instrumentedClientResources;
+  }
+
+  private RedisClient buildClient() {
+    redisUri = buildRedisUri();
+    clientResources = acquireClientResources();
+
+    RedisClient newClient = RedisClient.create(instrumentedClientResources(), redisUri);
+
+    // RESP3 executes a HELLO command to discover the protocol before executing any commands made by the client.
+    // This can cause issues if we are communicating over a proxy and the proxy doesn't speak RESP3. For now, it is safer
+    // to default to RESP2 until RESP3 becomes more normalized.
+    ClientOptions.Builder options = ClientOptions.builder()
+        .protocolVersion(ProtocolVersion.RESP2)
+        .socketOptions(buildSocketOptions())
+        .disconnectedBehavior(disconnectedBehavior())
+        .timeoutOptions(buildTimeoutOptions());
+    if (Strings.isNotBlank(configuration.getCertFile())) {
+      options.sslOptions(buildSslOptions());
+    }
+    newClient.setOptions(options.build());
+
+    return newClient;
+  }
+
+  private RedisClusterClient buildClusterClient() {
+    redisUri = buildRedisUri();
+    clientResources = acquireClientResources();
+
+    RedisClusterClient newClient = RedisClusterClient.create(instrumentedClientResources(), redisUri);
+    ClusterTopologyRefreshOptions topologyRefreshOptions = ClusterTopologyRefreshOptions.builder()
+        .enablePeriodicRefresh(Duration.ofMinutes(REDIS_REFRESH_INTERVAL))
+        .enableAllAdaptiveRefreshTriggers()
+        .build();
+    ClusterClientOptions.Builder options = ClusterClientOptions.builder()
+        .topologyRefreshOptions(topologyRefreshOptions)
+        .socketOptions(buildSocketOptions())
+        .disconnectedBehavior(disconnectedBehavior())
+        .timeoutOptions(buildTimeoutOptions());
+    if (Strings.isNotBlank(configuration.getCertFile())) {
+      options.sslOptions(buildSslOptions());
+    }
+    newClient.setOptions(options.build());
+
+    return newClient;
+  }
+
+  /**
+   * Builds the URI for the configured mode. In sentinel mode the master is resolved through the listed sentinels.
+   *
+   * @return redis URI
+   */
+  final RedisURI buildRedisUri() {
+    RedisURI.Builder builder;
+    if (isSentinel()) {
+      if (configuration.getSentinels() == null || configuration.getSentinels().isEmpty()) {
+        throw new RedisStoreConnectionException("At least one sentinel is required when sentinelMasterId is set", null);
+      }
+
+      builder = null;
+      for (String sentinel : configuration.getSentinels()) {
+        int separator = sentinel.lastIndexOf(':');
+        String host = separator < 0 ? sentinel : sentinel.substring(0, separator);
+        int port = separator < 0 ? DEFAULT_SENTINEL_PORT : Integer.parseInt(sentinel.substring(separator + 1));
+        if (builder == null) {
+          builder = RedisURI.Builder.sentinel(host, port, configuration.getSentinelMasterId());
+        } else {
+          builder.withSentinel(host, port);
+        }
+      }
+    } else {
+      builder = RedisURI.Builder.redis(configuration.getHost(), configuration.getPort());
+    }
+
+    // Upper bound for synchronous calls. Commands are expired earlier by their per-command timeout.
+    builder.withTimeout(longestTimeout());
+
+    builder.withSsl(configuration.isSsl())
+        .withVerifyPeer(configuration.isVerifyPeer());
+
+    if (Strings.isNotBlank(configuration.getPassword())) {
+      if (Strings.isNotBlank(configuration.getUsername())) {
+        builder.withAuthentication(configuration.getUsername(), configuration.getPassword());
+      } else {
+        builder.withPassword(configuration.getPassword().toCharArray());
+      }
+    }
+
+    return builder.build();
+  }
+
+  final TimeoutOptions buildTimeoutOptions() {
+    return TimeoutOptions.builder()
+        .timeoutCommands(true)
+        .timeoutSource(new RedisCommandTimeoutSource(configuration, deadlineNanos))
+        .build();
+  }
+
+  private Duration longestTimeout() {
+    Duration longest = configuration.getTimeout();
+    for (Duration timeout : new Duration[] { configuration.getReadTimeout(), configuration.getWriteTimeout(), configuration.getSetTimeout() }) {
+      if (timeout != null && timeout.compareTo(longest) > 0) {
+        longest = timeout;
+      }
+    }
+
+    return longest;
+  }
+
+  private boolean isSentinel() {
+    return Strings.isNotBlank(configuration.getSentinelMasterId());
+  }
+
+  private SocketOptions buildSocketOptions() {
+    return SocketOptions.builder()
+        .connectTimeout(configuration.getConnectTimeout())
+        .keepAlive(true)
+        .build();
+  }
+
+  private ClientOptions.DisconnectedBehavior disconnectedBehavior() {
+    // Rejecting commands while disconnected fails callers immediately during a failover instead of queueing them
+    // until the command timeout elapses.
+    if (configuration.isFailFastOnDisconnect()) {
+      return ClientOptions.DisconnectedBehavior.REJECT_COMMANDS;
+    }
+
+    return ClientOptions.DisconnectedBehavior.DEFAULT;
+  }
+
+  private SslOptions buildSslOptions() {
+    return SslOptions.builder()
+        .keyManager(new File(configuration.getCertFile()), new File(configuration.getKeyFile()), configuration.getPasswordFile().toCharArray())
+        .build();
+  }
+
+  final void subscribeNearCacheInvalidations(RedisClient redisClient) {
+    StatefulRedisPubSubConnection<String, String> pubSubConnection = redisClient.connectPubSub();
+    pubSubConnection.addListener(nearCache.invalidationListener());
+    pubSubConnection.sync().psubscribe(nearCache.invalidationPatterns());
+    nearCacheInvalidationConnection = pubSubConnection;
+  }
+
+  final void subscribeNearCacheInvalidations(RedisClusterClient redisClusterClient) {
+    // Keyspace notifications are node-local, so listen on every primary and propagate to the shared listener.
+    StatefulRedisClusterPubSubConnection<String, String> pubSubConnection = redisClusterClient.connectPubSub();
+    pubSubConnection.setNodeMessagePropagation(true);
+    pubSubConnection.addListener(nearCache.invalidationListener());
+    pubSubConnection.sync().upstream().commands().psubscribe(nearCache.invalidationPatterns());
+    nearCacheInvalidationConnection = pubSubConnection;
+  }
+
+  private RedisNearCacheConfiguration fallbackConfiguration() {
+    RedisNearCacheConfiguration fallbackConfiguration = new RedisNearCacheConfiguration();
+    fallbackConfiguration.setEnabled(true);
+    fallbackConfiguration.setMaxEntries(configuration.getCircuitBreaker().getFallbackMaxEntries());
+    fallbackConfiguration.setMaxMemoryBytes(Long.MAX_VALUE);
+    fallbackConfiguration.setTtl(configuration.getCircuitBreaker().getFallbackTtl());
+
+    return fallbackConfiguration;
+  }
+
+  private RedisNearCache fallbackOrThrow(RedisStoreCircuitOpenException e) {
+    if (fallback == null) {
+      throw e;
+    }
+
+    return fallback;
+  }
+
+  private void mirrorValue(String key, String value) {
+    if (fallback != null) {
+      if (value == null) {
+        fallback.invalidate(key);
+      } else {
+        fallback.putValue(key, value, fallback.stamp());
+      }
+    }
+  }
+
+  private void mirrorMembership(String key, String member, boolean isMember) {
+    if (fallback != null) {
+      fallback.putMembership(key, member, isMember, fallback.stamp());
+    }
+  }
+
+  private void invalidateFallback(String key) {
+    if (fallback != null) {
+      fallback.invalidate(key);
+    }
+  }
+
+  /**
+   * Async counterpart of the sync write paths: runs mirror once stage succeeds and drops key from the fallback store if
+   * it fails, including while the circuit is open.
+   */
+  private <T> CompletionStage<T> mirroringFallback(String key, CompletionStage<T> stage, Consumer<T> mirror) {
+    if (fallback == null) {
+      return stage;
+    }
+
+    return stage.whenComplete((result, throwable) -> {
+      if (throwable == null) {
+        mirror.accept(result);
+      } else {
+        fallback.invalidate(key);
+      }
+    });
+  }
+
+  /**
+   * Async counterpart of the sync read paths: runs mirror once stage succeeds, and completes with the fallback store's
+   * answer instead of failing while the circuit is open.
+   */
+  private <T> CompletionStage<T> fallbackWhenOpen(CompletionStage<T> stage, Consumer<T> mirror, Supplier<T> fallbackValue) {
+    if (fallback == null) {
+      return stage;
+    }
+
+    return stage.handle((result, throwable) -> {
+      if (throwable == null) {
+        mirror.accept(result);
+        return result;
+      }
+
+      Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+      if (cause instanceof RedisStoreCircuitOpenException) {
+        return fallbackValue.get();
+      }
+
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    });
+  }
+
+  /**
+   * Fails fast while the circuit breaker is open.
+   */
+  private void checkCircuit(String operation) {
+    if (circuitBreaker != null && circuitBreaker.isOpen()) {
+      throw new RedisStoreCircuitOpenException("Redis circuit breaker is open, rejected " + operation);
+    }
+  }
+
+  /**
+   * @param failure translated exception, or null on success
+   * @param conn connection the command was sent on, null if none was selected
+   */
+  private void recordCircuit(@Nullable Throwable failure, @Nullable StatefulConnection<?, ?> conn) {
+    if (circuitBreaker != null && circuitBreaker.record(failure, conn == null || failure == null || conn.isOpen())) {
+      scheduleCircuitProbe();
+    }
+  }
+
+  private void scheduleCircuitProbe() {
+    long interval = configuration.getCircuitBreaker().getProbeInterval().toMillis();
+    try {
+      scheduler().schedule(() -> {
+        try {
+          if (configuration.isCluster()) {
+            clusterConnection().sync().ping();
+          } else {
+            connection().sync().ping();
+          }
+          circuitBreaker.close();
+        } catch (RuntimeException e) {
+          scheduleCircuitProbe();
+        }
+      }, interval, TimeUnit.MILLISECONDS);
+    } catch (RedisStoreConnectionException | RejectedExecutionException e) {
+      // Closed, possibly concurrently with this call. There is nothing left to probe.
+    }
+  }
+
+  private boolean isNearCacheable(String key) {
+    return nearCache != null && nearCache.isCacheable(key);
+  }
+
+  private void invalidateNearCache(String key) {
+    if (nearCache != null) {
+      nearCache.invalidate(key);
+    }
+  }
+
+  private <T> CompletionStage<T> invalidatingNearCache(String key, CompletionStage<T> stage) {
+    if (nearCache == null) {
+      return stage;
+    }
+
+    return stage.whenComplete((result, throwable) -> nearCache.invalidate(key));
+  }
+
+  private <T> T safeCall(String operation, @Nullable String key, Function<StatefulRedisConnection<String, String>, T> runnable) {
+    checkCircuit(operation);
+    long started = instrumentation.started(operation);
+    StatefulRedisConnection<String, String> conn = null;
+    T result;
+    try {
+      conn = connectionPool().select(operation, key);
+      result = runnable.apply(conn);
+    } catch (RuntimeException e) {
+      RuntimeException translated = translateException(operation, e);
+      instrumentation.completed(operation, started, translated);
+      recordCircuit(translated, conn);
+      throw translated;
+    }
+    instrumentation.completed(operation, started, null);
+    recordCircuit(null, conn);
+
+    return result;
+  }
+
+  private <T> T safeClusterCall(String operation, @Nullable String key, Function<StatefulRedisClusterConnection<String, String>, T> runnable) {
+    checkCircuit(operation);
+    long started = instrumentation.started(operation);
+    StatefulRedisClusterConnection<String, String> conn = null;
+    T result;
+    try {
+      conn = clusterConnectionPool().select(operation, key);
+      result = runnable.apply(conn);
+    } catch (RuntimeException e) {
+      RuntimeException translated = translateException(operation, e);
+      instrumentation.completed(operation, started, translated);
+      recordCircuit(translated, conn);
+      throw translated;
+    }
+    instrumentation.completed(operation, started, null);
+    recordCircuit(null, conn);
+
+    return result;
+  }
+
+  private <T> CompletionStage<T> safeAsyncCall(String operation, @Nullable String key, Function<StatefulRedisConnection<String, String>, CompletionStage<T>> runnable) {
+    try {
+      checkCircuit(operation);
+    } catch (RedisStoreCircuitOpenException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    long started = instrumentation.started(operation);
+    StatefulRedisConnection<String, String> conn = null;
+    try {
+      conn = connectionPool().select(operation, key);
+      return translateFailure(operation, started, conn, runnable.apply(conn));
+    } catch (RuntimeException e) {
+      RuntimeException translated = translateException(operation, e);
+      instrumentation.completed(operation, started, translated);
+      recordCircuit(translated, conn);
+      return CompletableFuture.failedFuture(translated);
+    }
+  }
+
+  private <T> CompletionStage<T> safeClusterAsyncCall(String operation, @Nullable String key, Function<StatefulRedisClusterConnection<String, String>, CompletionStage<T>> runnable) {
+    try {
+      checkCircuit(operation);
+    } catch (RedisStoreCircuitOpenException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    long started = instrumentation.started(operation);
+    StatefulRedisClusterConnection<String, String> conn = null;
+    try {
+      conn = clusterConnectionPool().select(operation, key);
+      return translateFailure(operation, started, conn, runnable.apply(conn));
+    } catch (RuntimeException e) {
+      RuntimeException translated = translateException(operation, e);
+      instrumentation.completed(operation, started, translated);
+      recordCircuit(translated, conn);
+      return CompletableFuture.failedFuture(translated);
+    }
+  }
+
+  /**
+   * Completes the returned stage with the same result as the given stage, translating failures the same way
+   * {@link #safeCall(String, String, Function)} does.
+   */
+  private <T> CompletionStage<T> translateFailure(String operation, long started, StatefulConnection<?, ?> conn, CompletionStage<T> stage) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    stage.whenComplete((value, throwable) -> {
+      if (throwable == null) {
+        instrumentation.completed(operation, started, null);
+        recordCircuit(null, conn);
+        result.complete(value);
+      } else {
+        RuntimeException translated = translateException(operation, throwable);
+        instrumentation.completed(operation, started, translated);
+        recordCircuit(translated, conn);
+        result.completeExceptionally(translated);
+      }
+    });
+
+    return result;
+  }
+
+  private static Map<String, String> toMap(List<KeyValue<String, String>> keyValues) {
+    Map<String, String> result = new LinkedHashMap<>();
+    keyValues.forEach((keyValue) -> {
+      if (keyValue.hasValue()) {
+        result.put(keyValue.getKey(), keyValue.getValue());
+      }
+    });
+
+    return result;
+  }
+
+  private RuntimeException translateException(String operation, Throwable throwable) {
+    Throwable e = throwable;
+    while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+      e = e.getCause();
+    }
+
+    if (e instanceof RedisStoreConnectionException) {
+      return (RedisStoreConnectionException) e;
+    } else if (e instanceof RedisException) {
+      return new RedisStoreOperationException("Redis error occurred on " + operation, e);
+    }
+
+    return new RedisStoreOperationException("Unknown exception thrown by redis on " + operation, e);
+  }
+
+  private StatefulRedisConnection<String, String> connection() {
+    StatefulRedisConnection<String, String> current = connection;
+    if (current == null) {
+      synchronized (this) {
+        current = connection;
+        if (current == null) {
+          ensureOpen();
+          current = buildConnection();
+          connection = current;
+        }
+      }
+    }
+
+    return current;
+  }
+
+  private StatefulRedisClusterConnection<String, String> clusterConnection() {
+    StatefulRedisClusterConnection<String, String> current = redisClusterConnection;
+    if (current == null) {
+      synchronized (this) {
+        current = redisClusterConnection;
+        if (current == null) {
+          ensureOpen();
+          current = buildClusterConnection();
+          redisClusterConnection = current;
+        }
+      }
+    }
+
+    return current;
+  }
+
+  /**
+   * Lock-free once the pool exists. Only the first caller(s) synchronize, and only one of them builds connections.
+   */
+  private RedisConnectionPool<StatefulRedisConnection<String, String>> connectionPool() {
+    RedisConnectionPool<StatefulRedisConnection<String, String>> current = connectionPool;
+    if (current == null) {
+      synchronized (this) {
+        current = connectionPool;
+        if (current == null) {
+          current = new RedisConnectionPool<>(configuration.getConnectionPool(), connection(), this::buildConnection, LARGE_PAYLOAD_OPERATIONS);
+          connectionPool = current;
+        }
+      }
+    }
+
+    return current;
+  }
+
+  private RedisConnectionPool<StatefulRedisClusterConnection<String, String>> clusterConnectionPool() {
+    RedisConnectionPool<StatefulRedisClusterConnection<String, String>> current = clusterConnectionPool;
+    if (current == null) {
+      synchronized (this) {
+        current = clusterConnectionPool;
+        if (current == null) {
+          current = new RedisConnectionPool<>(configuration.getConnectionPool(), clusterConnection(), this::buildClusterConnection, LARGE_PAYLOAD_OPERATIONS);
+          clusterConnectionPool = current;
+        }
+      }
     }
 
-    return connection;
+    return current;
   }
 
-  private StatefulRedisClusterConnection clusterConnection() {
-    if (redisClusterConnection == null) {
-      redisClusterConnection = buildClusterConnection();
+  private void ensureOpen() {
+    if (closed) {
+      throw new RedisStoreConnectionException("Redis store is closed", null);
     }
-    return redisClusterConnection;
   }
 }
@@ -0,0 +1,10 @@
+package com.mx.path.service.facility.store.redis;
+
+/**
+ * Thrown without contacting Redis while the circuit breaker is open.
+ */
+public class RedisStoreCircuitOpenException extends RedisStoreConnectionException {
+  public RedisStoreCircuitOpenException(String message) {
+    super(message, null);
+  }
+}
@@ -1,6 +1,8 @@
 package com.mx.path.service.facility.store.redis;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import lombok.Data;
 
@@ -8,6 +10,18 @@ import com.mx.path.core.common.configuration.ConfigurationField;
 
 @Data
 public class RedisStoreConfiguration {
+  /**
+   * Which cluster nodes serve read operations. Writes always go to the primary.
+   */
+  public enum ReadFromPolicy {
+    MASTER,
+    MASTER_PREFERRED,
+    REPLICA,
+    REPLICA_PREFERRED,
+    LOWEST_LATENCY,
+    ANY,
+    ANY_REPLICA
+  }
 
   private static final String DEFAULT_HOST = "localhost";
   private static final int DEFAULT_COMPUTATION_THREAD_POOL_SIZE = 5;
@@ -17,6 +31,17 @@ public class RedisStoreConfiguration {
   private static final boolean DEFAULT_SSL = false;
   private static final boolean DEFAULT_CLUSTER = false;
   private static final String DEFAULT_PASSWORD_FILE = "";
+  private static final boolean DEFAULT_WARM_UP = false;
+  private static final boolean DEFAULT_SHARED_CLIENT_RESOURCES = true;
+  private static final ReadFromPolicy DEFAULT_READ_FROM = ReadFromPolicy.MASTER;
+  private static final boolean DEFAULT_VERIFY_PEER = false;
+  private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+  private static final boolean DEFAULT_FAIL_FAST_ON_DISCONNECT = false;
+  private static final boolean DEFAULT_COMMAND_LATENCY_METRICS = false;
+  private static final int DEFAULT_SCAN_COUNT = 1000;
+  private static final long DEFAULT_SET_SCAN_THRESHOLD = 0;
+  private static final boolean DEFAULT_SINGLE_FLIGHT_GETS = false;
+  private static final double DEFAULT_EARLY_REFRESH_BETA = 1.0;
 
   @ConfigurationField
   private String host = DEFAULT_HOST;
@@ -24,21 +49,91 @@ public class RedisStoreConfiguration {
   @ConfigurationField
   private int computationThreadPoolSize = DEFAULT_COMPUTATION_THREAD_POOL_SIZE;
 
+  /**
+   * Command timeout, in standalone, sentinel and cluster mode. Also the default for readTimeout, writeTimeout and
+   * setTimeout.
+   */
   @ConfigurationField
   private Duration timeout = DEFAULT_TIMEOUT;
 
+  /**
+   * Timeout of key reads (GET, MGET, HGET, HMGET, PTTL, SCAN). Defaults to timeout.
+   */
+  @ConfigurationField
+  private Duration readTimeout;
+
+  /**
+   * Timeout of key writes and scripts (SET, DEL, HSET, HDEL, EXPIRE, EVAL). Defaults to timeout.
+   */
+  @ConfigurationField
+  private Duration writeTimeout;
+
+  /**
+   * Timeout of set commands (SMEMBERS, SISMEMBER, SADD, SREM, SSCAN, SCARD). Defaults to timeout.
+   */
+  @ConfigurationField
+  private Duration setTimeout;
+
   @ConfigurationField
   private int ioThreadPoolSize = DEFAULT_THREAD_POOL_SIZE;
 
   @ConfigurationField
   private int port = DEFAULT_PORT;
 
+  /**
+   * Share event loops with every other store in the process that uses the same thread pool sizes.
+   */
+  @ConfigurationField
+  private boolean sharedClientResources = DEFAULT_SHARED_CLIENT_RESOURCES;
+
   @ConfigurationField
   private boolean ssl = DEFAULT_SSL;
 
+  @ConfigurationField
+  private boolean verifyPeer = DEFAULT_VERIFY_PEER;
+
+  /**
+   * ACL user name. Only used together with password.
+   */
+  @ConfigurationField
+  private String username;
+
+  @ConfigurationField(secret = true)
+  private String password;
+
+  /**
+   * Enables sentinel mode. The master with this id is resolved through the configured sentinels.
+   */
+  @ConfigurationField
+  private String sentinelMasterId;
+
+  /**
+   * Sentinel addresses as "host:port" (port defaults to 26379).
+   */
+  @ConfigurationField(elementType = String.class)
+  private List<String> sentinels = new ArrayList<>();
+
+  @ConfigurationField
+  private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+  /**
+   * Reject commands immediately while disconnected (e.g. during failover) instead of queueing them until they time out.
+   */
+  @ConfigurationField
+  private boolean failFastOnDisconnect = DEFAULT_FAIL_FAST_ON_DISCONNECT;
+
   @ConfigurationField
   private boolean cluster = DEFAULT_CLUSTER;
 
+  /**
+   * Nodes that serve reads in cluster and sentinel mode. Sentinel connections apply it through
+   * {@code MasterReplica.connect(...).setReadFrom(...)}. Ignored for a standalone {@code host}.
+   *
+   * <p>Replication is asynchronous, so reads served by a replica may be stale and may not see a write made just before.
+   */
+  @ConfigurationField
+  private ReadFromPolicy readFrom = DEFAULT_READ_FROM;
+
   @ConfigurationField
   private String certFile;
 
@@ -47,4 +142,55 @@ public class RedisStoreConfiguration {
 
   @ConfigurationField
   private String passwordFile = DEFAULT_PASSWORD_FILE;
+
+  /**
+   * Connect and verify all connections when the store is constructed instead of on first use.
+   */
+  @ConfigurationField
+  private boolean warmUp = DEFAULT_WARM_UP;
+
+  /**
+   * Concurrent get/getAsync calls for the same key on this node share one GET instead of each sending their own. A get
+   * that joins a GET sent before a put from this node can return the value from before that put.
+   */
+  @ConfigurationField
+  private boolean singleFlightGets = DEFAULT_SINGLE_FLIGHT_GETS;
+
+  /**
+   * Eagerness of early refresh in getOrLoad. Above 1 refreshes earlier, below 1 later. 0 disables early refresh.
+   */
+  @ConfigurationField
+  private double earlyRefreshBeta = DEFAULT_EARLY_REFRESH_BETA;
+
+  /**
+   * Report the latency of every Redis command to {@link RedisStoreMetrics#recordCommandLatency(String, long, long)}.
+   * Off by default.
+   */
+  @ConfigurationField
+  private boolean commandLatencyMetrics = DEFAULT_COMMAND_LATENCY_METRICS;
+
+  /**
+   * COUNT hint for cursor-based iteration (SCAN, SSCAN), and batch size of bulk deletes built on it.
+   */
+  @ConfigurationField
+  private int scanCount = DEFAULT_SCAN_COUNT;
+
+  /**
+   * Sets with more members than this are read by getSet with SSCAN instead of SMEMBERS. Costs an extra SCARD round
+   * trip per getSet. 0 disables.
+   */
+  @ConfigurationField
+  private long setScanThreshold = DEFAULT_SET_SCAN_THRESHOLD;
+
+  @ConfigurationField
+  private RedisCircuitBreakerConfiguration circuitBreaker = new RedisCircuitBreakerConfiguration();
+
+  @ConfigurationField
+  private RedisConnectionPoolConfiguration connectionPool = new RedisConnectionPoolConfiguration();
+
+  @ConfigurationField
+  private RedisValueCompressionConfiguration valueCompression = new RedisValueCompressionConfiguration();
+
+  @ConfigurationField
+  private RedisNearCacheConfiguration nearCache = new RedisNearCacheConfiguration();
 }
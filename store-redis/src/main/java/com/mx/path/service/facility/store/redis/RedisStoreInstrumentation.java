@@ -0,0 +1,120 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import io.lettuce.core.metrics.CommandLatencyRecorder;
+import io.lettuce.core.protocol.ProtocolKeyword;
+
+/**
+ * Tracks in-flight operations and forwards measurements to the current {@link RedisStoreMetrics}. Payload sizes are
+ * only computed when a facade other than {@link RedisStoreMetrics#NOOP} is installed.
+ */
+final class RedisStoreInstrumentation {
+
+  private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+  private volatile RedisStoreMetrics metrics = RedisStoreMetrics.NOOP;
+
+  RedisStoreMetrics getMetrics() {
+    return metrics;
+  }
+
+  void setMetrics(RedisStoreMetrics metrics) {
+    this.metrics = metrics == null ? RedisStoreMetrics.NOOP : metrics;
+    // Re-register existing gauges with the new facade
+    inFlight.forEach((operation, counter) -> this.metrics.registerInFlight(operation, counter::get));
+  }
+
+  /**
+   * @param operation starting
+   * @return start time to hand back to {@link #completed(String, long, Throwable)}
+   */
+  long started(String operation) {
+    inFlight.computeIfAbsent(operation, (name) -> {
+      AtomicInteger counter = new AtomicInteger();
+      metrics.registerInFlight(name, counter::get);
+      return counter;
+    }).incrementAndGet();
+
+    return System.nanoTime();
+  }
+
+  /**
+   * @param operation completed
+   * @param startedNanos returned by {@link #started(String)}
+   * @param failure translated exception, or null on success
+   */
+  void completed(String operation, long startedNanos, @Nullable Throwable failure) {
+    long duration = System.nanoTime() - startedNanos;
+    inFlight.get(operation).decrementAndGet();
+    metrics.recordOperation(operation, outcome(failure), duration);
+  }
+
+  int inFlight(String operation) {
+    AtomicInteger counter = inFlight.get(operation);
+    return counter == null ? 0 : counter.get();
+  }
+
+  void payload(String operation, @Nullable String value) {
+    if (value != null && metrics != RedisStoreMetrics.NOOP) {
+      metrics.recordPayloadSize(operation, utf8Length(value));
+    }
+  }
+
+  void payload(String operation, @Nullable Collection<String> values) {
+    if (values != null && metrics != RedisStoreMetrics.NOOP) {
+      long bytes = 0;
+      for (String value : values) {
+        bytes += utf8Length(value);
+      }
+      metrics.recordPayloadSize(operation, bytes);
+    }
+  }
+
+  /**
+   * @return Lettuce recorder forwarding per-command latencies to the current facade
+   */
+  CommandLatencyRecorder commandLatencyRecorder() {
+    return new CommandLatencyRecorder() {
+      @Override
+      public void recordCommandLatency(SocketAddress local, SocketAddress remote, ProtocolKeyword commandType, long firstResponseLatency, long completionLatency) {
+        metrics.recordCommandLatency(commandType.toString(), firstResponseLatency, completionLatency);
+      }
+    };
+  }
+
+  static RedisStoreMetrics.Outcome outcome(@Nullable Throwable failure) {
+    if (failure == null) {
+      return RedisStoreMetrics.Outcome.SUCCESS;
+    } else if (failure instanceof RedisStoreConnectionException) {
+      return RedisStoreMetrics.Outcome.CONNECTION_ERROR;
+    }
+
+    return RedisStoreMetrics.Outcome.OPERATION_ERROR;
+  }
+
+  private static long utf8Length(String value) {
+    // Avoid encoding the value just to measure it
+    long length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+
+    return length;
+  }
+}
@@ -0,0 +1,74 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics facade for {@link RedisStore}. Implement to bridge store measurements into a metrics library (Micrometer,
+ * OpenTelemetry, ...) and install with {@link RedisStore#setMetrics(RedisStoreMetrics)}. All methods default to no-ops.
+ *
+ * <p>Operation names are the ones used in exception messages, e.g. {@code get}, {@code putSet}, {@code getAll}.
+ * Implementations are called on caller and Lettuce event loop threads and must not block.
+ */
+public interface RedisStoreMetrics {
+
+  /**
+   * Facade that records nothing.
+   */
+  RedisStoreMetrics NOOP = new RedisStoreMetrics() {
+  };
+
+  /**
+   * How an operation ended. Errors are split by the exception the caller receives.
+   */
+  enum Outcome {
+    SUCCESS,
+    /**
+     * Failed with {@link RedisStoreOperationException}.
+     */
+    OPERATION_ERROR,
+    /**
+     * Failed with {@link RedisStoreConnectionException}.
+     */
+    CONNECTION_ERROR
+  }
+
+  /**
+   * Called once per operation name, the first time the operation runs. Suitable for registering a gauge.
+   *
+   * @param operation name
+   * @param inFlight current number of in-flight calls of the operation
+   */
+  default void registerInFlight(String operation, IntSupplier inFlight) {
+  }
+
+  /**
+   * Called when an operation completes. Suitable for a latency histogram/timer and per-outcome counters.
+   *
+   * @param operation name
+   * @param outcome of the operation
+   * @param durationNanos elapsed time, including connection selection and, for asynchronous operations, time until
+   *                      the returned stage completed
+   */
+  default void recordOperation(String operation, Outcome outcome, long durationNanos) {
+  }
+
+  /**
+   * Called with the size of values written or read by an operation. Suitable for a distribution summary.
+   *
+   * @param operation name
+   * @param bytes UTF-8 size of the values, before compression
+   */
+  default void recordPayloadSize(String operation, long bytes) {
+  }
+
+  /**
+   * Called by Lettuce for every command sent to Redis when
+   * {@link RedisStoreConfiguration#isCommandLatencyMetrics()} is enabled.
+   *
+   * @param command Redis command, e.g. {@code GET}, {@code EVAL}
+   * @param firstResponseNanos time until the first response byte arrived
+   * @param completionNanos time until the command completed
+   */
+  default void recordCommandLatency(String command, long firstResponseNanos, long completionNanos) {
+  }
+}
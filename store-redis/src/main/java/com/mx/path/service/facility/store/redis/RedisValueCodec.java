@@ -0,0 +1,135 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+
+/**
+ * UTF-8 string codec that compresses values at or above a size threshold.
+ *
+ * <p>Compressed values are prefixed with a marker byte that can never begin a UTF-8 string, followed by an algorithm
+ * id. Uncompressed values are plain UTF-8, so values written before compression was enabled (or by stores with it
+ * disabled) remain readable, and compressed values are readable regardless of the local configuration.
+ *
+ * <p>Only values sent with plain SET are compressed. Connections use {@link #UNCOMPRESSED}, which still reads
+ * compressed values but sends every argument as plain UTF-8, so set members and script arguments written before
+ * compression was enabled keep matching.
+ */
+final class RedisValueCodec implements RedisCodec<String, String> {
+
+  static final byte COMPRESSED_MARKER = (byte) 0xFF;
+  static final byte DEFLATE = 1;
+  static final RedisValueCodec UNCOMPRESSED = new RedisValueCodec(new RedisValueCompressionConfiguration());
+
+  private static final int HEADER_BYTES = 2;
+  private static final int BUFFER_BYTES = 8192;
+
+  private final RedisValueCompressionConfiguration configuration;
+
+  RedisValueCodec(RedisValueCompressionConfiguration configuration) {
+    this.configuration = configuration;
+  }
+
+  /**
+   * @return true if large values are compressed when encoded
+   */
+  boolean isCompressing() {
+    return configuration.getAlgorithm() != RedisValueCompressionConfiguration.Algorithm.NONE;
+  }
+
+  @Override
+  public String decodeKey(ByteBuffer bytes) {
+    return StringCodec.UTF8.decodeKey(bytes);
+  }
+
+  @Override
+  public String decodeValue(ByteBuffer bytes) {
+    if (bytes.remaining() >= HEADER_BYTES && bytes.get(bytes.position()) == COMPRESSED_MARKER) {
+      byte algorithm = bytes.get(bytes.position() + 1);
+      if (algorithm == DEFLATE) {
+        return inflate(bytes);
+      }
+
+      throw new IllegalStateException("Unknown value compression algorithm: " + algorithm);
+    }
+
+    return StringCodec.UTF8.decodeValue(bytes);
+  }
+
+  @Override
+  public ByteBuffer encodeKey(String key) {
+    return StringCodec.UTF8.encodeKey(key);
+  }
+
+  @Override
+  public ByteBuffer encodeValue(String value) {
+    if (value == null || !isCompressing()) {
+      return StringCodec.UTF8.encodeValue(value);
+    }
+
+    byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+    if (raw.length < configuration.getThresholdBytes()) {
+      return ByteBuffer.wrap(raw);
+    }
+
+    byte[] compressed = deflate(raw);
+    if (compressed.length >= raw.length) {
+      return ByteBuffer.wrap(raw);
+    }
+
+    return ByteBuffer.wrap(compressed);
+  }
+
+  private byte[] deflate(byte[] raw) {
+    Deflater deflater = new Deflater(configuration.getLevel());
+    try {
+      deflater.setInput(raw);
+      deflater.finish();
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + HEADER_BYTES);
+      out.write(COMPRESSED_MARKER);
+      out.write(DEFLATE);
+      byte[] buffer = new byte[BUFFER_BYTES];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private String inflate(ByteBuffer bytes) {
+    byte[] compressed = new byte[bytes.remaining() - HEADER_BYTES];
+    bytes.position(bytes.position() + HEADER_BYTES);
+    bytes.get(compressed);
+
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+      byte[] buffer = new byte[BUFFER_BYTES];
+      while (!inflater.finished()) {
+        int count = inflater.inflate(buffer);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalStateException("Truncated compressed value");
+        }
+        out.write(buffer, 0, count);
+      }
+
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("Corrupt compressed value", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.mx.path.service.facility.store.redis;
+
+import java.util.zip.Deflater;
+
+import lombok.Data;
+
+import com.mx.path.core.common.configuration.ConfigurationField;
+
+/**
+ * Transparent compression of large values written by {@link RedisStore}.
+ */
+@Data
+public class RedisValueCompressionConfiguration {
+  public enum Algorithm {
+    NONE,
+    DEFLATE
+  }
+
+  private static final Algorithm DEFAULT_ALGORITHM = Algorithm.NONE;
+  private static final int DEFAULT_THRESHOLD_BYTES = 1024;
+  private static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+  @ConfigurationField
+  private Algorithm algorithm = DEFAULT_ALGORITHM;
+
+  /**
+   * Values smaller than this (UTF-8 encoded) are stored as-is.
+   */
+  @ConfigurationField
+  private int thresholdBytes = DEFAULT_THRESHOLD_BYTES;
+
+  /**
+   * Compression level, 1 (fastest) through 9 (smallest), or -1 for the algorithm default.
+   */
+  @ConfigurationField
+  private int level = DEFAULT_LEVEL;
+}
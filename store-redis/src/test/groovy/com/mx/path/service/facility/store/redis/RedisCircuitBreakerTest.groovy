@@ -0,0 +1,83 @@
+package com.mx.path.service.facility.store.redis
+
+import java.nio.channels.ClosedChannelException
+
+import io.lettuce.core.RedisCommandExecutionException
+import io.lettuce.core.RedisCommandTimeoutException
+import io.lettuce.core.RedisConnectionException
+import io.lettuce.core.RedisException
+
+import spock.lang.Specification
+
+class RedisCircuitBreakerTest extends Specification {
+
+  RedisCircuitBreaker subject
+
+  def setup() {
+    def configuration = new RedisCircuitBreakerConfiguration()
+    configuration.failureThreshold = 2
+    subject = new RedisCircuitBreaker(configuration)
+  }
+
+  def "opens after consecutive connection failures"() {
+    given:
+    def failure = new RedisStoreConnectionException("down", null)
+
+    expect:
+    !subject.record(failure, true)
+    !subject.isOpen()
+    subject.record(failure, true)
+    subject.isOpen()
+    !subject.record(failure, true)
+  }
+
+  def "success resets failure count"() {
+    given:
+    def failure = new RedisStoreOperationException("timeout", new RedisCommandTimeoutException("timeout"))
+
+    when:
+    subject.record(failure, true)
+    subject.record(null, true)
+    subject.record(failure, true)
+
+    then:
+    !subject.isOpen()
+  }
+
+  def "close resets"() {
+    given:
+    def failure = new RedisStoreConnectionException("down", null)
+    subject.record(failure, true)
+    subject.record(failure, true)
+
+    when:
+    subject.close()
+
+    then:
+    !subject.isOpen()
+    !subject.record(failure, true)
+  }
+
+  def "isConnectionFailure"() {
+    expect:
+    RedisCircuitBreaker.isConnectionFailure(new RedisStoreConnectionException("down", null))
+    RedisCircuitBreaker.isConnectionFailure(new RedisStoreOperationException("failed", new RedisConnectionException("refused")))
+    RedisCircuitBreaker.isConnectionFailure(new RedisStoreOperationException("failed", new RedisCommandTimeoutException("timeout")))
+    RedisCircuitBreaker.isConnectionFailure(new RedisStoreOperationException("failed", new RedisException("failed", new ClosedChannelException())))
+    RedisCircuitBreaker.isConnectionFailure(new RedisStoreOperationException("failed", new RedisException("failed", new IOException("Connection reset by peer"))))
+    !RedisCircuitBreaker.isConnectionFailure(new RedisStoreOperationException("failed", new RedisException("Currently not connected. Commands are rejected.")))
+    !RedisCircuitBreaker.isConnectionFailure(new RedisStoreOperationException("failed", new RedisException("WRONGTYPE")))
+    !RedisCircuitBreaker.isConnectionFailure(new RedisStoreOperationException("failed", new RedisCommandExecutionException("Connection is closed")))
+  }
+
+  def "counts any failure on a connection that is not open"() {
+    given:
+    def rejected = new RedisStoreOperationException("failed", new RedisException("Currently not connected. Commands are rejected."))
+
+    expect:
+    !subject.record(rejected, true)
+    !subject.record(rejected, false)
+    subject.record(rejected, false)
+    subject.isOpen()
+  }
+}
@@ -0,0 +1,57 @@
+package com.mx.path.service.facility.store.redis
+
+import io.lettuce.core.resource.ClientResources
+
+import spock.lang.Specification
+
+class RedisClientResourcesRegistryTest extends Specification {
+
+  def "shares resources for same pool sizes"() {
+    when:
+    def first = RedisClientResourcesRegistry.acquire(2, 3)
+    def second = RedisClientResourcesRegistry.acquire(2, 3)
+    def other = RedisClientResourcesRegistry.acquire(1, 1)
+
+    then:
+    first.is(second)
+    !first.is(other)
+    RedisClientResourcesRegistry.usage().find { it.ioThreadPoolSize == 2 && it.computationThreadPoolSize == 3 }.references == 2
+
+    cleanup:
+    RedisClientResourcesRegistry.release(first)
+    RedisClientResourcesRegistry.release(second)
+    RedisClientResourcesRegistry.release(other)
+  }
+
+  def "shuts down resources when last reference is released"() {
+    given:
+    def first = RedisClientResourcesRegistry.acquire(2, 4)
+    def second = RedisClientResourcesRegistry.acquire(2, 4)
+
+    when:
+    RedisClientResourcesRegistry.release(first)
+
+    then:
+    RedisClientResourcesRegistry.usage().find { it.ioThreadPoolSize == 2 && it.computationThreadPoolSize == 4 }.references == 1
+
+    when:
+    RedisClientResourcesRegistry.release(second)
+
+    then:
+    RedisClientResourcesRegistry.usage().find { it.ioThreadPoolSize == 2 && it.computationThreadPoolSize == 4 } == null
+    first.eventExecutorGroup().isShuttingDown()
+  }
+
+  def "ignores resources it does not own"() {
+    when:
+    def resources = ClientResources.create()
+    RedisClientResourcesRegistry.release(resources)
+
+    then:
+    noExceptionThrown()
+    !resources.eventExecutorGroup().isShuttingDown()
+
+    cleanup:
+    resources.shutdown()
+  }
+}
@@ -0,0 +1,60 @@
+package com.mx.path.service.facility.store.redis
+
+import java.time.Duration
+
+import io.lettuce.core.protocol.Command
+import io.lettuce.core.protocol.CommandType
+
+import spock.lang.Specification
+
+class RedisCommandTimeoutSourceTest extends Specification {
+
+  RedisStoreConfiguration configuration
+  ThreadLocal<Long> deadline
+
+  def setup() {
+    configuration = new RedisStoreConfiguration()
+    configuration.timeout = Duration.ofSeconds(2)
+    deadline = new ThreadLocal<>()
+  }
+
+  def "categorize"() {
+    expect:
+    RedisCommandTimeoutSource.categorize(CommandType.GET) == RedisCommandTimeoutSource.Category.READ
+    RedisCommandTimeoutSource.categorize(CommandType.HMGET) == RedisCommandTimeoutSource.Category.READ
+    RedisCommandTimeoutSource.categorize(CommandType.SET) == RedisCommandTimeoutSource.Category.WRITE
+    RedisCommandTimeoutSource.categorize(CommandType.EVAL) == RedisCommandTimeoutSource.Category.WRITE
+    RedisCommandTimeoutSource.categorize(CommandType.SMEMBERS) == RedisCommandTimeoutSource.Category.SET
+    RedisCommandTimeoutSource.categorize(CommandType.PING) == RedisCommandTimeoutSource.Category.OTHER
+  }
+
+  def "per category timeouts fall back to timeout"() {
+    given:
+    configuration.readTimeout = Duration.ofMillis(100)
+    configuration.setTimeout = Duration.ofMillis(500)
+    def subject = new RedisCommandTimeoutSource(configuration, deadline)
+
+    expect:
+    subject.getTimeout(new Command(CommandType.GET, null)) == Duration.ofMillis(100).toNanos()
+    subject.getTimeout(new Command(CommandType.SET, null)) == Duration.ofSeconds(2).toNanos()
+    subject.getTimeout(new Command(CommandType.SISMEMBER, null)) == Duration.ofMillis(500).toNanos()
+    subject.getTimeout(new Command(CommandType.PING, null)) == Duration.ofSeconds(2).toNanos()
+  }
+
+  def "deadline caps timeout"() {
+    given:
+    def subject = new RedisCommandTimeoutSource(configuration, deadline)
+
+    when:
+    deadline.set(System.nanoTime() + Duration.ofMillis(50).toNanos())
+
+    then:
+    subject.getTimeout(new Command(CommandType.GET, null)) <= Duration.ofMillis(50).toNanos()
+
+    when:
+    deadline.set(System.nanoTime() - 1000)
+
+    then:
+    subject.getTimeout(new Command(CommandType.GET, null)) == 1
+  }
+}
@@ -0,0 +1,110 @@
+package com.mx.path.service.facility.store.redis
+
+import static org.mockito.Mockito.mock
+import static org.mockito.Mockito.never
+import static org.mockito.Mockito.verify
+
+import java.util.function.Supplier
+
+import io.lettuce.core.api.StatefulRedisConnection
+
+import spock.lang.Specification
+
+class RedisConnectionPoolTest extends Specification {
+
+  RedisConnectionPoolConfiguration configuration
+  StatefulRedisConnection<String, String> primary
+  Supplier<StatefulRedisConnection<String, String>> factory
+
+  def setup() {
+    configuration = new RedisConnectionPoolConfiguration()
+    primary = mock(StatefulRedisConnection)
+    factory = { mock(StatefulRedisConnection) } as Supplier
+  }
+
+  def "single connection pool always returns primary"() {
+    given:
+    def subject = new RedisConnectionPool(configuration, primary, factory, ["getSet"] as Set)
+
+    expect:
+    subject.select("get", "key1") == primary
+    subject.select("getSet", "key1") == primary
+    subject.all() == [primary]
+  }
+
+  def "round robin spreads across connections"() {
+    given:
+    configuration.size = 3
+    def subject = new RedisConnectionPool(configuration, primary, factory, [] as Set)
+
+    when:
+    def selected = (1..6).collect { subject.select("get", "key1") }
+
+    then:
+    subject.all().size() == 3
+    selected.toSet() == subject.all().toSet()
+    selected[0] == selected[3]
+  }
+
+  def "key hash pins key to one connection"() {
+    given:
+    configuration.size = 4
+    configuration.selection = RedisConnectionPoolConfiguration.Selection.KEY_HASH
+    def subject = new RedisConnectionPool(configuration, primary, factory, [] as Set)
+
+    expect:
+    (1..10).collect { subject.select("get", "key1") }.toSet().size() == 1
+  }
+
+  def "routes large payload operations to dedicated connection"() {
+    given:
+    configuration.dedicatedLargePayloadConnection = true
+    def subject = new RedisConnectionPool(configuration, primary, factory, ["getSet"] as Set)
+
+    when:
+    def large = subject.select("getSet", "key1")
+
+    then:
+    large != primary
+    subject.select("get", "key1") == primary
+    subject.all() == [primary, large]
+  }
+
+  def "closeOwned closes opened connections but not primary"() {
+    given:
+    configuration.size = 3
+    configuration.dedicatedLargePayloadConnection = true
+    def subject = new RedisConnectionPool(configuration, primary, factory, ["getSet"] as Set)
+
+    when:
+    subject.closeOwned()
+
+    then:
+    subject.all().tail().every { verify(it).close() || true }
+    verify(primary, never()).close() || true
+  }
+
+  def "closes opened connections when the factory fails"() {
+    given:
+    configuration.size = 3
+    configuration.dedicatedLargePayloadConnection = true
+    def opened = []
+    def failing = {
+      if (opened.size() == 2) {
+        throw new RedisStoreConnectionException("Unable to connect", new RuntimeException("connection refused"))
+      }
+      def connection = mock(StatefulRedisConnection)
+      opened << connection
+      connection
+    } as Supplier
+
+    when:
+    new RedisConnectionPool(configuration, primary, failing, ["getSet"] as Set)
+
+    then:
+    thrown(RedisStoreConnectionException)
+    opened.size() == 2
+    opened.every { verify(it).close() || true }
+    verify(primary, never()).close() || true
+  }
+}
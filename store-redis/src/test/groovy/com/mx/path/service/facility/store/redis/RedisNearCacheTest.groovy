@@ -0,0 +1,146 @@
+package com.mx.path.service.facility.store.redis
+
+import java.time.Duration
+
+import spock.lang.Specification
+
+class RedisNearCacheTest extends Specification {
+
+  RedisNearCacheConfiguration configuration
+  RedisNearCache subject
+
+  def setup() {
+    configuration = new RedisNearCacheConfiguration()
+    configuration.enabled = true
+    subject = new RedisNearCache(configuration)
+  }
+
+  def "caches values and counts hits and misses"() {
+    when:
+    def miss = subject.getValue("key1")
+    subject.putValue("key1", "value1", subject.stamp())
+
+    then:
+    miss == null
+    subject.getValue("key1") == "value1"
+    subject.getHitCount() == 1
+    subject.getMissCount() == 1
+  }
+
+  def "does not cache null values"() {
+    when:
+    subject.putValue("key1", null, subject.stamp())
+
+    then:
+    subject.size() == 0
+  }
+
+  def "caches set membership"() {
+    when:
+    subject.putMembership("set1", "member1", true, subject.stamp())
+    subject.putMembership("set1", "member2", false, subject.stamp())
+
+    then:
+    subject.getMembership("set1", "member1")
+    !subject.getMembership("set1", "member2")
+    subject.getMembership("set1", "member3") == null
+  }
+
+  def "discards value read before an invalidation"() {
+    given:
+    def stamp = subject.stamp()
+
+    when:
+    subject.invalidate("key2")
+    subject.putValue("key1", "value1", stamp)
+
+    then:
+    subject.getValue("key1") == null
+  }
+
+  def "invalidate drops entry"() {
+    given:
+    subject.putValue("key1", "value1", subject.stamp())
+
+    when:
+    subject.invalidate("key1")
+
+    then:
+    subject.getValue("key1") == null
+    subject.getMemoryBytes() == 0
+  }
+
+  def "expires entries after ttl"() {
+    given:
+    configuration.ttl = Duration.ofNanos(1)
+    subject.putValue("key1", "value1", subject.stamp())
+
+    when:
+    Thread.sleep(1)
+
+    then:
+    subject.getValue("key1") == null
+  }
+
+  def "evicts least recently used entries over maxEntries"() {
+    given:
+    configuration.maxEntries = 2
+
+    when:
+    subject.putValue("key1", "value1", subject.stamp())
+    subject.putValue("key2", "value2", subject.stamp())
+    subject.getValue("key1")
+    subject.putValue("key3", "value3", subject.stamp())
+
+    then:
+    subject.size() == 2
+    subject.getValue("key1") == "value1"
+    subject.getValue("key2") == null
+    subject.getEvictionCount() == 1
+  }
+
+  def "evicts entries over maxMemoryBytes"() {
+    given:
+    configuration.maxMemoryBytes = 200
+
+    when:
+    subject.putValue("key1", "value1", subject.stamp())
+    subject.putValue("key2", "value2", subject.stamp())
+
+    then:
+    subject.size() == 1
+    subject.getMemoryBytes() <= 200
+  }
+
+  def "only caches configured prefixes"() {
+    given:
+    configuration.prefixes = ["session:"]
+
+    expect:
+    subject.isCacheable("session:abc")
+    !subject.isCacheable("lock:abc")
+    subject.invalidationPatterns() == ["__keyspace@*__:session:*"] as String[]
+  }
+
+  def "invalidation listener drops notified key"() {
+    given:
+    subject.putValue("session:abc", "value1", subject.stamp())
+
+    when:
+    subject.invalidationListener().message("__keyspace@*__:*", "__keyspace@0__:session:abc", "set")
+
+    then:
+    subject.getValue("session:abc") == null
+  }
+
+  def "resubscribe clears cache"() {
+    given:
+    subject.putValue("key1", "value1", subject.stamp())
+
+    when:
+    subject.invalidationListener().psubscribed("__keyspace@*__:*", 1)
+
+    then:
+    subject.size() == 0
+  }
+}
@@ -0,0 +1,128 @@
+package com.mx.path.service.facility.store.redis
+
+import static org.mockito.AdditionalMatchers.aryEq
+import static org.mockito.ArgumentMatchers.anyString
+import static org.mockito.ArgumentMatchers.eq
+import static org.mockito.Mockito.mock
+import static org.mockito.Mockito.times
+import static org.mockito.Mockito.verify
+import static org.mockito.Mockito.when
+
+import java.time.Duration
+
+import org.mockito.Mockito
+
+import io.lettuce.core.ScriptOutputType
+import io.lettuce.core.api.StatefulRedisConnection
+import io.lettuce.core.api.sync.RedisCommands
+
+import spock.lang.Specification
+
+class RedisRateLimiterTest extends Specification {
+
+  RedisCommands<String, String> commands
+  RedisStore store
+  RedisRateLimiterConfiguration configuration
+
+  def setup() {
+    def connection = mock(StatefulRedisConnection.class, Mockito.RETURNS_DEEP_STUBS)
+    commands = mock(RedisCommands.class)
+    when(connection.sync()).thenReturn(commands)
+    store = new RedisStore(new RedisStoreConfiguration())
+    store.setConnection(connection)
+
+    configuration = new RedisRateLimiterConfiguration()
+    configuration.limit = 10
+    configuration.period = Duration.ofSeconds(1)
+  }
+
+  def stubScript(String minimum, String maximum, List<Long> result) {
+    when(commands.eval(anyString(), eq(ScriptOutputType.MULTI), aryEq(["ratelimit:{client1}"] as String[]),
+        eq("100000"), eq("1000000"), eq(minimum), eq(maximum))).thenReturn(result)
+  }
+
+  def "allows when permits are available"() {
+    given:
+    def subject = new RedisRateLimiter(store, configuration)
+    stubScript("1", "1", [1L, 0L, 9L])
+
+    when:
+    def decision = subject.check("client1", 1)
+
+    then:
+    decision.isAllowed()
+    decision.getRemaining() == 9
+  }
+
+  def "denies with retry after"() {
+    given:
+    def subject = new RedisRateLimiter(store, configuration)
+    stubScript("1", "1", [0L, 25000L, 0L])
+
+    when:
+    def decision = subject.check("client1", 1)
+
+    then:
+    !decision.isAllowed()
+    decision.getRetryAfterMillis() == 26
+    !subject.tryAcquire("client1")
+  }
+
+  def "uses configured burst"() {
+    given:
+    configuration.burst = 2
+
+    when:
+    def subject = new RedisRateLimiter(store, configuration)
+    when(commands.eval(anyString(), eq(ScriptOutputType.MULTI), aryEq(["ratelimit:{client1}"] as String[]),
+        eq("100000"), eq("200000"), eq("1"), eq("1"))).thenReturn([1L, 0L, 1L])
+
+    then:
+    subject.tryAcquire("client1")
+  }
+
+  def "serves reserved permits locally"() {
+    given:
+    configuration.localBatchSize = 3
+    def subject = new RedisRateLimiter(store, configuration)
+    stubScript("1", "3", [3L, 0L, 7L])
+
+    when:
+    def results = (1..3).collect { subject.tryAcquire("client1") }
+
+    then:
+    results == [true, true, true]
+    verify(commands, times(1)).eval(anyString(), eq(ScriptOutputType.MULTI), aryEq(["ratelimit:{client1}"] as String[]),
+        anyString(), anyString(), anyString(), anyString()) || true
+  }
+
+  def "goes back to redis once local permits run out"() {
+    given:
+    configuration.localBatchSize = 2
+    def subject = new RedisRateLimiter(store, configuration)
+    stubScript("1", "2", [2L, 0L, 8L])
+
+    when:
+    (1..3).each { subject.tryAcquire("client1") }
+
+    then:
+    verify(commands, times(2)).eval(anyString(), eq(ScriptOutputType.MULTI), aryEq(["ratelimit:{client1}"] as String[]),
+        anyString(), anyString(), anyString(), anyString()) || true
+  }
+
+  def "bounds local entries"() {
+    given:
+    configuration.localBatchSize = 2
+    configuration.maxLocalEntries = 1
+    def subject = new RedisRateLimiter(store, configuration)
+    when(commands.eval(anyString(), eq(ScriptOutputType.MULTI), Mockito.any(String[]),
+        anyString(), anyString(), anyString(), anyString())).thenReturn([2L, 0L, 8L])
+
+    when:
+    subject.tryAcquire("client1")
+    subject.tryAcquire("client2")
+
+    then:
+    subject.localEntries() == 1
+  }
+}
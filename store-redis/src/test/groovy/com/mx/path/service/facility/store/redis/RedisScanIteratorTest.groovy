@@ -0,0 +1,56 @@
+package com.mx.path.service.facility.store.redis
+
+import java.util.function.Function
+
+import io.lettuce.core.KeyScanCursor
+import io.lettuce.core.ScanCursor
+
+import spock.lang.Specification
+
+class RedisScanIteratorTest extends Specification {
+
+  static KeyScanCursor<String> page(String cursor, boolean finished, List<String> keys) {
+    def result = new KeyScanCursor<String>()
+    result.setCursor(cursor)
+    result.setFinished(finished)
+    result.getKeys().addAll(keys)
+    result
+  }
+
+  def "walks all pages lazily"() {
+    given:
+    def requested = []
+    def pages = ["0": page("1", false, ["a", "b"]), "1": page("2", false, []), "2": page("0", true, ["c"])]
+    def subject = new RedisScanIterator<KeyScanCursor<String>, String>({ ScanCursor cursor ->
+      requested << cursor.getCursor()
+      pages[cursor.getCursor()]
+    } as Function, { KeyScanCursor<String> cursor -> cursor.getKeys() } as Function)
+
+    when:
+    def first = subject.next()
+
+    then:
+    first == "a"
+    requested == ["0"]
+
+    when:
+    def rest = subject.stream().toList()
+
+    then:
+    rest == ["b", "c"]
+    requested == ["0", "1", "2"]
+    !subject.hasNext()
+  }
+
+  def "empty scan"() {
+    given:
+    def subject = new RedisScanIterator<KeyScanCursor<String>, String>({ ScanCursor cursor -> page("0", true, []) } as Function,
+    { KeyScanCursor<String> cursor -> cursor.getKeys() } as Function)
+
+    when:
+    subject.next()
+
+    then:
+    thrown(NoSuchElementException)
+  }
+}
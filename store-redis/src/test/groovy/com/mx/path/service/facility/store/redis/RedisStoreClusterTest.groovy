@@ -1,13 +1,25 @@
 package com.mx.path.service.facility.store.redis
 
+import static com.mx.path.service.facility.store.redis.SetArgsMatcher.setArgs
+import static org.mockito.AdditionalMatchers.aryEq
 import static org.mockito.Mockito.*
 
+import java.time.Duration
+import java.util.concurrent.CompletionException
+
+import org.mockito.ArgumentMatchers
 import org.mockito.Mockito
 
+import io.lettuce.core.KeyValue
+import io.lettuce.core.ReadFrom
 import io.lettuce.core.RedisException
+import io.lettuce.core.ScanArgs
+import io.lettuce.core.ScanCursor
+import io.lettuce.core.ScriptOutputType
 import io.lettuce.core.api.StatefulRedisConnection
 import io.lettuce.core.api.sync.RedisCommands
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands
 import io.lettuce.core.cluster.api.sync.RedisClusterCommands
 
@@ -17,6 +29,7 @@ class RedisStoreClusterTest extends Specification implements WithMockery {
 
   StatefulRedisClusterConnection<String, String> clusterConnection
   RedisAdvancedClusterCommands<String, String> commands
+  RedisAdvancedClusterAsyncCommands<String, String> asyncCommands
   RedisStore subject
   RedisStoreConfiguration configurations
 
@@ -26,6 +39,8 @@ class RedisStoreClusterTest extends Specification implements WithMockery {
     clusterConnection = mock(StatefulRedisClusterConnection.class, Mockito.RETURNS_DEEP_STUBS)
     commands = mock(RedisAdvancedClusterCommands.class)
     when(clusterConnection.sync()).thenReturn(commands)
+    asyncCommands = mock(RedisAdvancedClusterAsyncCommands.class)
+    when(clusterConnection.async()).thenReturn(asyncCommands)
 
     subject = spy(new RedisStore(configurations))
     subject.setRedisClusterConnection(clusterConnection)
@@ -90,8 +105,8 @@ class RedisStoreClusterTest extends Specification implements WithMockery {
     subject.put("key1", "value1", 60)
 
     then:
-    verify(commands).set("key1", "value1") || true
-    verify(commands).expire("key1", 60) || true
+    verify(commands).set(eq("key1"), eq("value1"), setArgs("EX 60")) || true
+    verify(commands, never()).expire("key1", 60) || true
   }
 
   def "put with two arguments"() {
@@ -107,8 +122,8 @@ class RedisStoreClusterTest extends Specification implements WithMockery {
     subject.putSet("key1", "value1", 60)
 
     then:
-    verify(commands).sadd("key1", "value1") || true
-    verify(commands).expire("key1", 60) || true
+    verify(commands).eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["key1"] as String[]), eq("value1"), eq("60")) || true
+    verify(commands, never()).sadd("key1", "value1") || true
   }
 
   def "putSet with two arguments"() {
@@ -129,37 +144,39 @@ class RedisStoreClusterTest extends Specification implements WithMockery {
 
   def "setIfNotExist when does not exist"() {
     when:
-    when(commands.setnx("key1", "value1")).thenReturn(true) // The key was set
-    subject.putIfNotExist("key1", "value1", 60)
+    when(commands.set(eq("key1"), eq("value1"), setArgs("EX 60 NX"))).thenReturn("OK") // The key was set
 
     then:
-    verify(commands).expire("key1", 60) || true
+    subject.putIfNotExist("key1", "value1", 60)
+    verify(commands).set(eq("key1"), eq("value1"), setArgs("EX 60 NX")) || true
+    verify(commands, never()).setnx("key1", "value1") || true
+    verify(commands, never()).expire("key1", 60) || true
   }
 
   def "setIfNotExist when does exist"() {
     when:
-    when(commands.setnx("key1", "value1")).thenReturn(false) // The key already set
-    subject.putIfNotExist("key1", "value1", 60)
+    when(commands.set(eq("key1"), eq("value1"), setArgs("EX 60 NX"))).thenReturn(null) // The key already set
 
     then:
-    verify(commands, never()).expire("key1", 60) || true
+    !subject.putIfNotExist("key1", "value1", 60)
   }
 
   def "setIfNotExist with expiration when does not exist"() {
     when:
-    when(commands.setnx("key1", "value1")).thenReturn(true) // The key was set
-    subject.putIfNotExist("key1", "value1", 12)
+    when(commands.set(eq("key1"), eq("value1"), setArgs("EX 12 NX"))).thenReturn("OK") // The key was set
 
     then:
-    verify(commands).expire("key1", 12) || true
+    subject.putIfNotExist("key1", "value1", 12)
+    verify(commands).set(eq("key1"), eq("value1"), setArgs("EX 12 NX")) || true
+    verify(commands, never()).expire("key1", 12) || true
   }
 
   def "setIfNotExist with expiration when does exist"() {
     when:
-    when(commands.setnx("key1", "value1")).thenReturn(false) // The key already set
-    subject.putIfNotExist("key1", "value1", 12)
+    when(commands.set(eq("key1"), eq("value1"), setArgs("EX 12 NX"))).thenReturn(null) // The key already set
 
     then:
+    !subject.putIfNotExist("key1", "value1", 12)
     verify(commands, never()).expire("key1", 12) || true
   }
 
@@ -171,6 +188,184 @@ class RedisStoreClusterTest extends Specification implements WithMockery {
     subject.status() == "OK"
   }
 
+  def "getAll"() {
+    given:
+    when(commands.mget("key1", "key2")).thenReturn([KeyValue.just("key1", "value1"), KeyValue.empty("key2")])
+
+    expect:
+    subject.getAll(["key1", "key2"]) == [key1: "value1"]
+  }
+
+  def "deleteByPattern"() {
+    given:
+    when(commands.scan((ScanCursor) ArgumentMatchers.any(ScanCursor), (ScanArgs) ArgumentMatchers.any(ScanArgs)))
+        .thenReturn(RedisScanIteratorTest.page("1", false, ["key1"]))
+        .thenReturn(RedisScanIteratorTest.page("0", true, ["key2"]))
+    when(commands.del("key1", "key2")).thenReturn(2L)
+
+    expect:
+    subject.deleteByPattern("key*") == 2
+  }
+
+  def "buildRedisUri applies timeout in cluster mode"() {
+    given:
+    configurations.timeout = Duration.ofSeconds(2)
+
+    expect:
+    subject.buildRedisUri().getTimeout() == Duration.ofSeconds(2)
+  }
+
+  def "getAll with no keys"() {
+    expect:
+    subject.getAll([]) == [:]
+    verifyNoInteractions(commands) || true
+  }
+
+  def "putAll"() {
+    given:
+    when(asyncCommands.set(eq("key1"), eq("value1"), setArgs("EX 60"))).thenReturn(TestRedisFuture.completed("OK"))
+    when(asyncCommands.set(eq("key2"), eq("value2"), setArgs("EX 60"))).thenReturn(TestRedisFuture.completed("OK"))
+
+    when:
+    subject.putAll([key1: "value1", key2: "value2"], 60)
+
+    then:
+    verify(asyncCommands).set(eq("key1"), eq("value1"), setArgs("EX 60")) || true
+    verify(asyncCommands).set(eq("key2"), eq("value2"), setArgs("EX 60")) || true
+  }
+
+  def "putAll wraps failed write"() {
+    given:
+    when(asyncCommands.set(eq("key1"), eq("value1"), setArgs("EX 60"))).thenReturn(TestRedisFuture.failed(new RedisException("Something happened")))
+
+    when:
+    subject.putAll([key1: "value1"], 60)
+
+    then:
+    def ex = thrown(RedisStoreOperationException)
+    ex.getMessage() == "Redis error occurred on putAll"
+  }
+
+  def "deleteAll"() {
+    when:
+    subject.deleteAll(["key1", "key2"])
+
+    then:
+    verify(commands).del("key1", "key2") || true
+  }
+
+  def "getAsync"() {
+    given:
+    when(asyncCommands.get("key1")).thenReturn(TestRedisFuture.completed("value1"))
+
+    expect:
+    subject.getAsync("key1").toCompletableFuture().get() == "value1"
+  }
+
+  def "getSetAsync"() {
+    given:
+    when(asyncCommands.smembers("key1")).thenReturn(TestRedisFuture.completed(["value1"] as Set))
+
+    expect:
+    subject.getSetAsync("key1").toCompletableFuture().get() == ["value1"] as Set
+  }
+
+  def "inSetAsync"() {
+    given:
+    when(asyncCommands.sismember("key1", "value1")).thenReturn(TestRedisFuture.completed(true))
+
+    expect:
+    subject.inSetAsync("key1", "value1").toCompletableFuture().get()
+  }
+
+  def "putAsync"() {
+    given:
+    when(asyncCommands.set(eq("key1"), eq("value1"), setArgs("EX 60"))).thenReturn(TestRedisFuture.completed("OK"))
+
+    when:
+    subject.putAsync("key1", "value1", 60).toCompletableFuture().get()
+
+    then:
+    verify(asyncCommands).set(eq("key1"), eq("value1"), setArgs("EX 60")) || true
+  }
+
+  def "putSetAsync"() {
+    given:
+    when(asyncCommands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["key1"] as String[]), eq("value1"), eq("60"))).thenReturn(TestRedisFuture.completed(1L))
+
+    when:
+    subject.putSetAsync("key1", "value1", 60).toCompletableFuture().get()
+
+    then:
+    verify(asyncCommands).eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["key1"] as String[]), eq("value1"), eq("60")) || true
+  }
+
+  def "putIfNotExistAsync"() {
+    given:
+    when(asyncCommands.set(eq("key1"), eq("value1"), setArgs("EX 60 NX"))).thenReturn(TestRedisFuture.completed(result))
+
+    expect:
+    subject.putIfNotExistAsync("key1", "value1", 60).toCompletableFuture().get() == expected
+
+    where:
+    result || expected
+    "OK"   || true
+    null   || false
+  }
+
+  def "deleteAsync"() {
+    given:
+    when(asyncCommands.del("key1")).thenReturn(TestRedisFuture.completed(1L))
+
+    when:
+    subject.deleteAsync("key1").toCompletableFuture().get()
+
+    then:
+    verify(asyncCommands).del("key1") || true
+  }
+
+  def "async wraps RedisException"() {
+    given:
+    when(asyncCommands.get("key1")).thenReturn(TestRedisFuture.failed(new RedisException("Something happened")))
+
+    when:
+    subject.getAsync("key1").toCompletableFuture().join()
+
+    then:
+    def ex = thrown(CompletionException)
+    ex.getCause() instanceof RedisStoreOperationException
+    ex.getCause().getMessage() == "Redis error occurred on get"
+  }
+
+  def "async fails stage on connection failure"() {
+    given:
+    subject.setRedisClusterConnection(null)
+    def exception = new RedisStoreConnectionException("Something happened when connecting", null)
+    doThrow(exception).when(subject).buildClusterConnection()
+
+    when:
+    subject.getAsync("junk").toCompletableFuture().join()
+
+    then:
+    def ex = thrown(CompletionException)
+    ex.getCause() == exception
+  }
+
+  def "readFrom maps policies"() {
+    expect:
+    RedisStore.readFrom(policy) == expected
+
+    where:
+    policy                                                 || expected
+    RedisStoreConfiguration.ReadFromPolicy.MASTER            || ReadFrom.UPSTREAM
+    RedisStoreConfiguration.ReadFromPolicy.MASTER_PREFERRED  || ReadFrom.UPSTREAM_PREFERRED
+    RedisStoreConfiguration.ReadFromPolicy.REPLICA           || ReadFrom.REPLICA
+    RedisStoreConfiguration.ReadFromPolicy.REPLICA_PREFERRED || ReadFrom.REPLICA_PREFERRED
+    RedisStoreConfiguration.ReadFromPolicy.LOWEST_LATENCY    || ReadFrom.LOWEST_LATENCY
+    RedisStoreConfiguration.ReadFromPolicy.ANY               || ReadFrom.ANY
+    RedisStoreConfiguration.ReadFromPolicy.ANY_REPLICA       || ReadFrom.ANY_REPLICA
+  }
+
   def "rethrows connection failure"() {
     given:
     subject.setRedisClusterConnection(null)
@@ -212,4 +407,22 @@ class RedisStoreClusterTest extends Specification implements WithMockery {
     def ex = thrown(RedisStoreOperationException)
     ex.getMessage() == "Unknown exception thrown by redis on get"
   }
+
+  def "buildClusterConnection connects without TLS when no certFile is configured"() {
+    given:
+    def config = new RedisStoreConfiguration()
+    config.cluster = true
+    config.port = 1
+    config.timeout = Duration.ofMillis(500)
+    def store = new RedisStore(config)
+
+    when:
+    store.buildClusterConnection()
+
+    then:
+    thrown(RedisStoreConnectionException)
+
+    cleanup:
+    store.close()
+  }
 }
@@ -0,0 +1,100 @@
+package com.mx.path.service.facility.store.redis
+
+import static org.mockito.ArgumentMatchers.anyLong
+import static org.mockito.ArgumentMatchers.eq
+import static org.mockito.Mockito.mock
+import static org.mockito.Mockito.verify
+import static org.mockito.Mockito.verifyNoInteractions
+
+import java.util.function.IntSupplier
+
+import org.mockito.ArgumentCaptor
+import org.mockito.ArgumentMatchers
+
+import io.lettuce.core.protocol.CommandType
+
+import spock.lang.Specification
+
+class RedisStoreInstrumentationTest extends Specification {
+
+  RedisStoreMetrics metrics
+  RedisStoreInstrumentation subject
+
+  def setup() {
+    metrics = mock(RedisStoreMetrics)
+    subject = new RedisStoreInstrumentation()
+    subject.setMetrics(metrics)
+  }
+
+  def "tracks in-flight operations"() {
+    given:
+    def gauge = ArgumentCaptor.forClass(IntSupplier)
+
+    when:
+    def first = subject.started("get")
+    subject.started("get")
+
+    then:
+    verify(metrics).registerInFlight(eq("get"), gauge.capture()) || true
+    gauge.getValue().getAsInt() == 2
+    subject.inFlight("get") == 2
+
+    when:
+    subject.completed("get", first, null)
+
+    then:
+    subject.inFlight("get") == 1
+    verify(metrics).recordOperation(eq("get"), eq(RedisStoreMetrics.Outcome.SUCCESS), anyLong()) || true
+  }
+
+  def "re-registers gauges with new facade"() {
+    given:
+    subject.started("get")
+    def replacement = mock(RedisStoreMetrics)
+
+    when:
+    subject.setMetrics(replacement)
+
+    then:
+    verify(replacement).registerInFlight(eq("get"), ArgumentMatchers.any(IntSupplier)) || true
+  }
+
+  def "outcome"() {
+    expect:
+    RedisStoreInstrumentation.outcome(null) == RedisStoreMetrics.Outcome.SUCCESS
+    RedisStoreInstrumentation.outcome(new RedisStoreOperationException("failed", null)) == RedisStoreMetrics.Outcome.OPERATION_ERROR
+    RedisStoreInstrumentation.outcome(new RedisStoreConnectionException("failed", null)) == RedisStoreMetrics.Outcome.CONNECTION_ERROR
+  }
+
+  def "payload measures UTF-8 bytes"() {
+    when:
+    subject.payload("put", "aé€😀")
+    subject.payload("getSet", ["ab", "c"])
+
+    then:
+    verify(metrics).recordPayloadSize("put", 10) || true
+    verify(metrics).recordPayloadSize("getSet", 3) || true
+  }
+
+  def "payload skipped without facade"() {
+    given:
+    subject.setMetrics(null)
+
+    expect:
+    subject.getMetrics() == RedisStoreMetrics.NOOP
+
+    when:
+    subject.payload("put", "value")
+
+    then:
+    verifyNoInteractions(metrics)
+  }
+
+  def "forwards command latency"() {
+    when:
+    subject.commandLatencyRecorder().recordCommandLatency(null, null, CommandType.GET, 10, 20)
+
+    then:
+    verify(metrics).recordCommandLatency("GET", 10, 20) || true
+  }
+}
@@ -1,19 +1,47 @@
 package com.mx.path.service.facility.store.redis
 
+import static com.mx.path.service.facility.store.redis.SetArgsMatcher.setArgs
+import static org.mockito.AdditionalMatchers.aryEq
+import static org.mockito.ArgumentMatchers.anyString
+import static org.mockito.ArgumentMatchers.eq
+import static org.mockito.Mockito.doReturn
 import static org.mockito.Mockito.doThrow
 import static org.mockito.Mockito.mock
 import static org.mockito.Mockito.never
 import static org.mockito.Mockito.spy
+import static org.mockito.Mockito.times
 import static org.mockito.Mockito.verify
+import static org.mockito.Mockito.verifyNoInteractions
 import static org.mockito.Mockito.when
 
+import java.nio.charset.StandardCharsets
 import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.CompletionException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.function.IntSupplier
 
+import org.mockito.ArgumentCaptor
+import org.mockito.ArgumentMatchers
 import org.mockito.Mockito
 
+import io.lettuce.core.KeyValue
+import io.lettuce.core.RedisCommandTimeoutException
 import io.lettuce.core.RedisException
+import io.lettuce.core.ScanArgs
+import io.lettuce.core.ScanCursor
+import io.lettuce.core.ScriptOutputType
+import io.lettuce.core.SetArgs
+import io.lettuce.core.ValueScanCursor
 import io.lettuce.core.api.StatefulRedisConnection
+import io.lettuce.core.api.async.RedisAsyncCommands
 import io.lettuce.core.api.sync.RedisCommands
+import io.lettuce.core.output.StatusOutput
+import io.lettuce.core.protocol.Command
+import io.lettuce.core.protocol.CommandArgs
+import io.lettuce.core.protocol.CommandType
+import io.netty.buffer.Unpooled
 
 import spock.lang.Specification
 
@@ -21,6 +49,7 @@ class RedisStoreTest extends Specification implements WithMockery {
 
   StatefulRedisConnection<String, String> connection
   RedisCommands<String, String> commands
+  RedisAsyncCommands<String, String> asyncCommands
   RedisStore subject
   RedisStoreConfiguration configurations
 
@@ -29,6 +58,8 @@ class RedisStoreTest extends Specification implements WithMockery {
     connection = mock(StatefulRedisConnection.class, Mockito.RETURNS_DEEP_STUBS)
     commands = mock(RedisCommands.class)
     when(connection.sync()).thenReturn(commands)
+    asyncCommands = mock(RedisAsyncCommands.class)
+    when(connection.async()).thenReturn(asyncCommands)
 
     subject = spy(new RedisStore(configurations))
     subject.setConnection(connection)
@@ -93,85 +124,1034 @@ class RedisStoreTest extends Specification implements WithMockery {
     subject.put("key1", "value1", 60)
 
     then:
-    verify(commands).set("key1", "value1") || true
-    verify(commands).expire("key1", 60) || true
+    verify(commands).set(eq("key1"), eq("value1"), setArgs("EX 60")) || true
+    verify(commands, never()).expire("key1", 60) || true
+  }
+
+  def "put with two arguments"() {
+    when:
+    subject.put("key1", "value1")
+
+    then:
+    thrown(RedisStoreUnsupportedException)
+  }
+
+  def "putSet"() {
+    when:
+    subject.putSet("key1", "value1", 60)
+
+    then:
+    verify(commands).eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["key1"] as String[]), eq("value1"), eq("60")) || true
+    verify(commands, never()).sadd("key1", "value1") || true
+  }
+
+  def "putSet with two arguments"() {
+    when:
+    subject.putSet("key1", "value1")
+
+    then:
+    thrown(RedisStoreUnsupportedException)
+  }
+
+  def "putIfNotExist with two arguments"() {
+    when:
+    subject.putIfNotExist("key1", "value1")
+
+    then:
+    thrown(RedisStoreUnsupportedException)
+  }
+
+  def "setIfNotExist when does not exist"() {
+    when:
+    when(commands.set(eq("key1"), eq("value1"), setArgs("EX 60 NX"))).thenReturn("OK") // The key was set
+
+    then:
+    subject.putIfNotExist("key1", "value1", 60)
+    verify(commands).set(eq("key1"), eq("value1"), setArgs("EX 60 NX")) || true
+    verify(commands, never()).setnx("key1", "value1") || true
+    verify(commands, never()).expire("key1", 60) || true
+  }
+
+  def "setIfNotExist when does exist"() {
+    when:
+    when(commands.set(eq("key1"), eq("value1"), setArgs("EX 60 NX"))).thenReturn(null) // The key already set
+
+    then:
+    !subject.putIfNotExist("key1", "value1", 60)
+  }
+
+  def "setIfNotExist with expiration when does not exist"() {
+    when:
+    when(commands.set(eq("key1"), eq("value1"), setArgs("EX 12 NX"))).thenReturn("OK") // The key was set
+
+    then:
+    subject.putIfNotExist("key1", "value1", 12)
+    verify(commands).set(eq("key1"), eq("value1"), setArgs("EX 12 NX")) || true
+    verify(commands, never()).expire("key1", 12) || true
+  }
+
+  def "setIfNotExist with expiration when does exist"() {
+    when:
+    when(commands.set(eq("key1"), eq("value1"), setArgs("EX 12 NX"))).thenReturn(null) // The key already set
+
+    then:
+    !subject.putIfNotExist("key1", "value1", 12)
+    verify(commands, never()).expire("key1", 12) || true
+  }
+
+  def "status"() {
+    when:
+    when(commands.ping()).thenReturn("OK")
+
+    then:
+    subject.status() == "OK"
+  }
+
+  def "getAll"() {
+    given:
+    when(commands.mget("key1", "key2")).thenReturn([KeyValue.just("key1", "value1"), KeyValue.empty("key2")])
+
+    expect:
+    subject.getAll(["key1", "key2"]) == [key1: "value1"]
+  }
+
+  def "getAll with no keys"() {
+    expect:
+    subject.getAll([]) == [:]
+    verifyNoInteractions(commands) || true
+  }
+
+  def "putAll"() {
+    given:
+    when(asyncCommands.set(eq("key1"), eq("value1"), setArgs("EX 60"))).thenReturn(TestRedisFuture.completed("OK"))
+    when(asyncCommands.set(eq("key2"), eq("value2"), setArgs("EX 60"))).thenReturn(TestRedisFuture.completed("OK"))
+
+    when:
+    subject.putAll([key1: "value1", key2: "value2"], 60)
+
+    then:
+    verify(asyncCommands).set(eq("key1"), eq("value1"), setArgs("EX 60")) || true
+    verify(asyncCommands).set(eq("key2"), eq("value2"), setArgs("EX 60")) || true
+  }
+
+  def "putAll wraps failed write"() {
+    given:
+    when(asyncCommands.set(eq("key1"), eq("value1"), setArgs("EX 60"))).thenReturn(TestRedisFuture.failed(new RedisException("Something happened")))
+
+    when:
+    subject.putAll([key1: "value1"], 60)
+
+    then:
+    def ex = thrown(RedisStoreOperationException)
+    ex.getMessage() == "Redis error occurred on putAll"
+  }
+
+  def "deleteAll"() {
+    when:
+    subject.deleteAll(["key1", "key2"])
+
+    then:
+    verify(commands).del("key1", "key2") || true
+  }
+
+  def "get serves near cache hits"() {
+    given:
+    configurations.nearCache.enabled = true
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(commands.get("key1")).thenReturn("value1")
+
+    when:
+    def first = store.get("key1")
+    def second = store.get("key1")
+
+    then:
+    first == "value1"
+    second == "value1"
+    verify(commands, times(1)).get("key1") || true
+    store.getNearCache().getHitCount() == 1
+  }
+
+  def "put invalidates near cache"() {
+    given:
+    configurations.nearCache.enabled = true
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(commands.get("key1")).thenReturn("value1")
+    store.get("key1")
+
+    when:
+    store.put("key1", "value2", 60)
+
+    then:
+    store.getNearCache().size() == 0
+  }
+
+  def "inSet serves near cache hits"() {
+    given:
+    configurations.nearCache.enabled = true
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(commands.sismember("key1", "value1")).thenReturn(true)
+
+    when:
+    store.inSet("key1", "value1")
+    def result = store.inSet("key1", "value1")
+
+    then:
+    result
+    verify(commands, times(1)).sismember("key1", "value1") || true
+  }
+
+  def "scan"() {
+    given:
+    configurations.scanCount = 2
+    when(commands.scan((ScanCursor) ArgumentMatchers.any(ScanCursor), (ScanArgs) ArgumentMatchers.any(ScanArgs)))
+        .thenReturn(RedisScanIteratorTest.page("1", false, ["key1", "key2"]))
+        .thenReturn(RedisScanIteratorTest.page("0", true, ["key3"]))
+
+    expect:
+    subject.scan("key*").toList() == ["key1", "key2", "key3"]
+  }
+
+  def "scan wraps RedisException"() {
+    given:
+    when(commands.scan((ScanCursor) ArgumentMatchers.any(ScanCursor), (ScanArgs) ArgumentMatchers.any(ScanArgs))).thenThrow(new RedisException("boom"))
+
+    when:
+    subject.scan("key*").toList()
+
+    then:
+    def ex = thrown(RedisStoreOperationException)
+    ex.getMessage() == "Redis error occurred on scan"
+  }
+
+  def "deleteByPattern deletes in batches"() {
+    given:
+    configurations.scanCount = 2
+    when(commands.scan((ScanCursor) ArgumentMatchers.any(ScanCursor), (ScanArgs) ArgumentMatchers.any(ScanArgs)))
+        .thenReturn(RedisScanIteratorTest.page("1", false, ["key1", "key2"]))
+        .thenReturn(RedisScanIteratorTest.page("0", true, ["key3"]))
+    when(commands.del("key1", "key2")).thenReturn(2L)
+    when(commands.del("key3")).thenReturn(1L)
+
+    expect:
+    subject.deleteByPattern("key*") == 3
+  }
+
+  def "scanSet"() {
+    given:
+    when(commands.sscan(eq("key1"), (ScanCursor) ArgumentMatchers.any(ScanCursor), (ScanArgs) ArgumentMatchers.any(ScanArgs)))
+        .thenReturn(valuePage("1", false, ["value1"]))
+        .thenReturn(valuePage("0", true, ["value2"]))
+
+    expect:
+    subject.scanSet("key1").toList() == ["value1", "value2"]
+  }
+
+  def "setSize"() {
+    given:
+    when(commands.scard("key1")).thenReturn(3L)
+
+    expect:
+    subject.setSize("key1") == 3
+  }
+
+  def "getSet switches to SSCAN above threshold"() {
+    given:
+    configurations.setScanThreshold = 1
+    when(commands.scard("key1")).thenReturn(2L)
+    when(commands.sscan(eq("key1"), (ScanCursor) ArgumentMatchers.any(ScanCursor), (ScanArgs) ArgumentMatchers.any(ScanArgs)))
+        .thenReturn(valuePage("1", false, ["value1", "value2"]))
+        .thenReturn(valuePage("0", true, ["value2"]))
+
+    when:
+    def result = subject.getSet("key1")
+
+    then:
+    result == ["value1", "value2"] as Set
+    verify(commands, never()).smembers("key1") || true
+  }
+
+  def "getSet uses SMEMBERS at or below threshold"() {
+    given:
+    configurations.setScanThreshold = 2
+    when(commands.scard("key1")).thenReturn(2L)
+    when(commands.smembers("key1")).thenReturn(["value1", "value2"] as Set)
+
+    expect:
+    subject.getSet("key1") == ["value1", "value2"] as Set
+  }
+
+  static ValueScanCursor<String> valuePage(String cursor, boolean finished, List<String> values) {
+    def result = new ValueScanCursor<String>()
+    result.setCursor(cursor)
+    result.setFinished(finished)
+    result.getValues().addAll(values)
+    result
+  }
+
+  def "acquireLease"() {
+    given:
+    when(commands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), anyString(), eq("30000"))).thenReturn(1L)
+
+    when:
+    def lease = subject.acquireLease("lock1", RedisLeaseOptions.builder().build())
+
+    then:
+    lease.getKey() == "lock1"
+    lease.getToken() != null
+    lease.getFencingToken() == 0
+    lease.getLeaseTime() == Duration.ofSeconds(30)
+  }
+
+  def "acquireLease with fencing"() {
+    given:
+    when(commands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1", "{lock1}:fencing"] as String[]), anyString(), eq("1000"))).thenReturn(42L)
+
+    when:
+    def lease = subject.acquireLease("lock1", RedisLeaseOptions.builder().leaseTime(Duration.ofSeconds(1)).fencing(true).build())
+
+    then:
+    lease.getFencingToken() == 42
+  }
+
+  def "acquireLease returns null when held by another owner"() {
+    given:
+    when(commands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), anyString(), anyString())).thenReturn(0L)
+
+    when:
+    def lease = subject.acquireLease("lock1", RedisLeaseOptions.builder().waitTimeout(Duration.ofMillis(50)).retryInterval(Duration.ofMillis(10)).build())
+
+    then:
+    lease == null
+    verify(commands, Mockito.atLeast(2)).eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), anyString(), anyString()) || true
+  }
+
+  def "acquireLease waits for release"() {
+    given:
+    when(commands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), anyString(), anyString())).thenReturn(0L, 0L, 1L)
+
+    expect:
+    subject.acquireLease("lock1", RedisLeaseOptions.builder().waitTimeout(Duration.ofSeconds(5)).retryInterval(Duration.ofMillis(1)).build()) != null
+  }
+
+  def "lease release and renew check owner"() {
+    given:
+    when(commands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), anyString(), anyString())).thenReturn(1L)
+    def lease = subject.acquireLease("lock1", RedisLeaseOptions.builder().build())
+    when(commands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), eq(lease.getToken()), eq("30000"))).thenReturn(1L)
+    when(commands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), eq(lease.getToken()))).thenReturn(0L)
+
+    expect:
+    lease.renew()
+    !lease.isLost()
+    !lease.release()
+    lease.isLost()
+  }
+
+  def "lease watchdog renews until released"() {
+    given:
+    when(commands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), anyString(), anyString())).thenReturn(1L)
+    when(commands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), anyString())).thenReturn(1L)
+
+    when:
+    def lease = subject.acquireLease("lock1", RedisLeaseOptions.builder().leaseTime(Duration.ofMillis(30)).watchdog(true).build())
+    Thread.sleep(100)
+    lease.close()
+
+    then:
+    verify(commands, Mockito.atLeast(3)).eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["lock1"] as String[]), anyString(), eq("30")) || true
+  }
+
+  def "slotLocalKey keeps keys in the same slot"() {
+    expect:
+    RedisStore.slotLocalKey("lock1", ":x") == "{lock1}:x"
+    RedisStore.slotLocalKey("user:{42}:lock", ":x") == "user:{42}:lock:x"
+    RedisStore.slotLocalKey("{lock1", ":x") == "{{lock1}:x"
+  }
+
+  def "slotLocalKey rejects keys that cannot share a slot"() {
+    when:
+    RedisStore.slotLocalKey("odd{}key", ":x")
+
+    then:
+    thrown(RedisStoreUnsupportedException)
+  }
+
+  def "single-flight getAsync shares one GET"() {
+    given:
+    configurations.singleFlightGets = true
+    def future = new TestRedisFuture<String>()
+    when(asyncCommands.get("key1")).thenReturn(future)
+
+    when:
+    def first = subject.getAsync("key1")
+    def second = subject.getAsync("key1")
+    future.complete("value1")
+
+    then:
+    first.toCompletableFuture().get() == "value1"
+    second.toCompletableFuture().get() == "value1"
+    verify(asyncCommands, times(1)).get("key1") || true
+  }
+
+  def "single-flight releases key after completion"() {
+    given:
+    configurations.singleFlightGets = true
+    when(asyncCommands.get("key1")).thenReturn(TestRedisFuture.completed("value1"), TestRedisFuture.completed("value2"))
+
+    expect:
+    subject.getAsync("key1").toCompletableFuture().get() == "value1"
+    subject.getAsync("key1").toCompletableFuture().get() == "value2"
+  }
+
+  def "single-flight get shares failure"() {
+    given:
+    configurations.singleFlightGets = true
+    def inGet = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    when(commands.get("key1")).thenAnswer {
+      inGet.countDown()
+      release.await()
+      throw new RedisException("boom")
+    }
+    def leaderError = null
+    def leader = Thread.start {
+      try {
+        subject.get("key1")
+      } catch (RedisStoreOperationException e) {
+        leaderError = e
+      }
+    }
+    inGet.await()
+
+    when:
+    def follower = subject.getAsync("key1")
+    release.countDown()
+    leader.join()
+    follower.toCompletableFuture().get()
+
+    then:
+    def ex = thrown(ExecutionException)
+    ex.getCause() instanceof RedisStoreOperationException
+    ex.getCause() == leaderError
+    verify(asyncCommands, never()).get("key1") || true
+  }
+
+  def "single-flight get stops waiting at the caller deadline"() {
+    given:
+    configurations.singleFlightGets = true
+    def inGet = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    when(commands.get("key1")).thenAnswer {
+      inGet.countDown()
+      release.await()
+      "value1"
+    }
+    def leader = Thread.start { subject.get("key1") }
+    inGet.await()
+
+    when:
+    subject.withDeadline(Instant.now().plusMillis(20), { subject.get("key1") })
+
+    then:
+    def ex = thrown(RedisStoreOperationException)
+    ex.getCause() instanceof RedisCommandTimeoutException
+    verify(commands, times(1)).get("key1") || true
+
+    cleanup:
+    release.countDown()
+    leader.join()
+  }
+
+  def "getAsync without single-flight sends every GET"() {
+    given:
+    when(asyncCommands.get("key1")).thenReturn(new TestRedisFuture<String>())
+
+    when:
+    subject.getAsync("key1")
+    subject.getAsync("key1")
+
+    then:
+    verify(asyncCommands, times(2)).get("key1") || true
+  }
+
+  def "getOrLoad loads and stores on miss"() {
+    given:
+    when(asyncCommands.get("key1")).thenReturn(TestRedisFuture.completed(null))
+    when(asyncCommands.pttl("key1")).thenReturn(TestRedisFuture.completed(-2L))
+
+    when:
+    def result = subject.getOrLoad("key1", 60, Duration.ofMillis(100), { "loaded" })
+
+    then:
+    result == "loaded"
+    verify(commands).set(eq("key1"), eq("loaded"), setArgs("EX 60")) || true
+  }
+
+  def "getOrLoad returns hit without loading"() {
+    given:
+    when(asyncCommands.get("key1")).thenReturn(TestRedisFuture.completed("value1"))
+    when(asyncCommands.pttl("key1")).thenReturn(TestRedisFuture.completed(60000L))
+
+    when:
+    def result = subject.getOrLoad("key1", 60, Duration.ZERO, { throw new IllegalStateException("should not load") })
+
+    then:
+    result == "value1"
+    verify(commands, never()).set(anyString(), anyString(), ArgumentMatchers.any(SetArgs)) || true
+  }
+
+  def "getOrLoad refreshes early as expiry approaches"() {
+    given:
+    when(asyncCommands.get("key1")).thenReturn(TestRedisFuture.completed("stale"))
+    when(asyncCommands.pttl("key1")).thenReturn(TestRedisFuture.completed(0L))
+
+    when:
+    def result = subject.getOrLoad("key1", 60, Duration.ofSeconds(1), { "fresh" })
+
+    then:
+    result == "fresh"
+    verify(commands).set(eq("key1"), eq("fresh"), setArgs("EX 60")) || true
+  }
+
+  def "shouldRefreshEarly"() {
+    expect:
+    !subject.shouldRefreshEarly(-1, Duration.ofSeconds(1))
+    !subject.shouldRefreshEarly(1000, Duration.ZERO)
+    subject.shouldRefreshEarly(0, Duration.ofSeconds(1))
+
+    when:
+    configurations.earlyRefreshBeta = 0
+
+    then:
+    !subject.shouldRefreshEarly(0, Duration.ofSeconds(1))
+  }
+
+  def "getField"() {
+    given:
+    when(commands.hget("key1", "field1")).thenReturn("value1")
+
+    expect:
+    subject.getField("key1", "field1") == "value1"
+  }
+
+  def "getFields"() {
+    given:
+    when(commands.hmget("key1", "field1", "field2")).thenReturn([KeyValue.just("field1", "value1"), KeyValue.empty("field2")])
+
+    expect:
+    subject.getFields("key1", ["field1", "field2"]) == [field1: "value1"]
+    subject.getFields("key1", []) == [:]
+  }
+
+  def "putField sets field and key expiration in one script"() {
+    when:
+    subject.putField("key1", "field1", "value1", 60)
+
+    then:
+    verify(commands).eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["key1"] as String[]), eq("60"), eq("field1"), eq("value1")) || true
+    verify(commands, never()).hset(anyString(), anyString(), anyString()) || true
+  }
+
+  def "putFields skips empty map"() {
+    when:
+    subject.putFields("key1", [:], 60)
+
+    then:
+    verifyNoInteractions(commands)
+  }
+
+  def "deleteField"() {
+    when:
+    subject.deleteField("key1", "field1")
+
+    then:
+    verify(commands).hdel("key1", "field1") || true
+  }
+
+  def "circuit breaker fails fast once open"() {
+    given:
+    configurations.circuitBreaker.enabled = true
+    configurations.circuitBreaker.failureThreshold = 2
+    configurations.circuitBreaker.probeInterval = Duration.ofMinutes(1)
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(commands.get("key1")).thenThrow(new RedisCommandTimeoutException("timeout"))
+
+    when:
+    2.times {
+      try {
+        store.get("key1")
+      } catch (RedisStoreOperationException ignored) {
+      }
+    }
+    store.get("key1")
+
+    then:
+    thrown(RedisStoreCircuitOpenException)
+    verify(commands, times(2)).get("key1") || true
+
+    cleanup:
+    store.close()
+  }
+
+  def "circuit breaker serves reads from fallback while open"() {
+    given:
+    configurations.circuitBreaker.enabled = true
+    configurations.circuitBreaker.failureThreshold = 1
+    configurations.circuitBreaker.probeInterval = Duration.ofMinutes(1)
+    configurations.circuitBreaker.fallbackMaxEntries = 10
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(commands.get("key1")).thenReturn("value1").thenThrow(new RedisCommandTimeoutException("timeout"))
+    when(commands.sismember("set1", "member1")).thenReturn(true)
+
+    when:
+    def first = store.get("key1")
+    store.putSet("set2", "member1", 60)
+    store.inSet("set1", "member1")
+    try {
+      store.get("key1")
+    } catch (RedisStoreOperationException ignored) {
+    }
+
+    then:
+    first == "value1"
+    store.getCircuitBreaker().isOpen()
+    store.get("key1") == "value1"
+    store.inSet("set1", "member1")
+    store.inSet("set2", "member1")
+    !store.inSet("set1", "member2")
+
+    cleanup:
+    store.close()
+  }
+
+  def "circuit breaker rejects writes while open and drops them from fallback"() {
+    given:
+    configurations.circuitBreaker.enabled = true
+    configurations.circuitBreaker.failureThreshold = 1
+    configurations.circuitBreaker.probeInterval = Duration.ofMinutes(1)
+    configurations.circuitBreaker.fallbackMaxEntries = 10
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(commands.get("key1")).thenReturn("value1").thenThrow(new RedisCommandTimeoutException("timeout"))
+    store.get("key1")
+    store.putSet("set1", "member1", 60)
+    try {
+      store.get("key1")
+    } catch (RedisStoreOperationException ignored) {
+    }
+
+    when:
+    store.put("key2", "value2", 60)
+
+    then:
+    thrown(RedisStoreCircuitOpenException)
+    store.getFallback().getValue("key2") == null
+    verify(commands, never()).set(eq("key2"), eq("value2"), ArgumentMatchers.any(SetArgs)) || true
+
+    when:
+    store.delete("key1")
+
+    then:
+    thrown(RedisStoreCircuitOpenException)
+    store.getFallback().getValue("key1") == null
+    verify(commands, never()).del("key1") || true
+
+    when:
+    store.deleteSet("set1", "member1")
+
+    then:
+    thrown(RedisStoreCircuitOpenException)
+    store.getFallback().getMembership("set1", "member1") == null
+
+    when:
+    store.putSet("set2", "member1", 60)
+
+    then:
+    thrown(RedisStoreCircuitOpenException)
+    store.getFallback().getMembership("set2", "member1") == null
+
+    cleanup:
+    store.close()
   }
 
-  def "put with two arguments"() {
+  def "circuit breaker closes after successful probe"() {
+    given:
+    configurations.circuitBreaker.enabled = true
+    configurations.circuitBreaker.failureThreshold = 1
+    configurations.circuitBreaker.probeInterval = Duration.ofMillis(10)
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(commands.get("key1")).thenThrow(new RedisCommandTimeoutException("timeout")).thenReturn("value1")
+
     when:
-    subject.put("key1", "value1")
+    try {
+      store.get("key1")
+    } catch (RedisStoreOperationException ignored) {
+    }
+    def openedImmediately = store.getCircuitBreaker().isOpen()
+    Thread.sleep(200)
 
     then:
-    thrown(RedisStoreUnsupportedException)
+    openedImmediately
+    !store.getCircuitBreaker().isOpen()
+    store.get("key1") == "value1"
+    verify(commands, Mockito.atLeast(1)).ping() || true
+
+    cleanup:
+    store.close()
   }
 
-  def "putSet"() {
+  def "circuit breaker opens on rejected commands without waiting on the store monitor"() {
+    given:
+    configurations.circuitBreaker.enabled = true
+    configurations.circuitBreaker.failureThreshold = 1
+    configurations.circuitBreaker.probeInterval = Duration.ofMinutes(1)
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    def future = new TestRedisFuture<String>()
+    when(asyncCommands.get("key1")).thenReturn(future)
+    when(connection.isOpen()).thenReturn(false)
+    store.getAsync("key1")
+    def locked = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    def holder = Thread.start {
+      synchronized (store) {
+        locked.countDown()
+        release.await()
+      }
+    }
+    locked.await()
+
     when:
-    subject.putSet("key1", "value1", 60)
+    def completer = Thread.start { future.completeExceptionally(new RedisException("Currently not connected. Commands are rejected.")) }
+    completer.join(5000)
 
     then:
-    verify(commands).sadd("key1", "value1") || true
-    verify(commands).expire("key1", 60) || true
+    !completer.isAlive()
+    store.getCircuitBreaker().isOpen()
+
+    cleanup:
+    release.countDown()
+    holder.join()
+    store.close()
   }
 
-  def "putSet with two arguments"() {
+  def "circuit breaker ignores error replies on an open connection"() {
+    given:
+    configurations.circuitBreaker.enabled = true
+    configurations.circuitBreaker.failureThreshold = 1
+    configurations.circuitBreaker.probeInterval = Duration.ofMinutes(1)
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(connection.isOpen()).thenReturn(true)
+    when(commands.get("key1")).thenThrow(new RedisException("Currently not connected. Commands are rejected."))
+
     when:
-    subject.putSet("key1", "value1")
+    store.get("key1")
 
     then:
-    thrown(RedisStoreUnsupportedException)
+    thrown(RedisStoreOperationException)
+    !store.getCircuitBreaker().isOpen()
+
+    cleanup:
+    store.close()
   }
 
-  def "putIfNotExist with two arguments"() {
+  def "circuit breaker handles async and putIfNotExist calls like their sync counterparts"() {
+    given:
+    configurations.circuitBreaker.enabled = true
+    configurations.circuitBreaker.failureThreshold = 1
+    configurations.circuitBreaker.probeInterval = Duration.ofMinutes(1)
+    configurations.circuitBreaker.fallbackMaxEntries = 10
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(asyncCommands.get("key1")).thenReturn(TestRedisFuture.completed("value1"))
+    when(asyncCommands.sismember("set1", "member1")).thenReturn(TestRedisFuture.completed(true))
+    when(asyncCommands.set(eq("key2"), eq("value2"), ArgumentMatchers.any(SetArgs))).thenReturn(TestRedisFuture.completed("OK"))
+    when(commands.set(eq("key3"), eq("value3"), ArgumentMatchers.any(SetArgs))).thenReturn("OK")
+    store.getAsync("key1").toCompletableFuture().get()
+    store.inSetAsync("set1", "member1").toCompletableFuture().get()
+    store.putIfNotExistAsync("key2", "value2", 60).toCompletableFuture().get()
+    store.putIfNotExist("key3", "value3", 60)
+    when(commands.get("key4")).thenThrow(new RedisCommandTimeoutException("timeout"))
+    try {
+      store.get("key4")
+    } catch (RedisStoreOperationException ignored) {
+    }
+
+    expect: "reads are served from the fallback"
+    store.getCircuitBreaker().isOpen()
+    store.getAsync("key1").toCompletableFuture().get() == "value1"
+    store.getAsync("key2").toCompletableFuture().get() == "value2"
+    store.get("key3") == "value3"
+    store.inSetAsync("set1", "member1").toCompletableFuture().get()
+
+    when: "writes fail"
+    store.putAsync("key1", "value9", 60).toCompletableFuture().get()
+
+    then:
+    def putFailure = thrown(ExecutionException)
+    putFailure.cause instanceof RedisStoreCircuitOpenException
+    store.getFallback().getValue("key1") == null
+
     when:
-    subject.putIfNotExist("key1", "value1")
+    store.deleteAsync("key2").toCompletableFuture().get()
 
     then:
-    thrown(RedisStoreUnsupportedException)
+    def deleteFailure = thrown(ExecutionException)
+    deleteFailure.cause instanceof RedisStoreCircuitOpenException
+    store.getFallback().getValue("key2") == null
+
+    when:
+    store.putIfNotExist("key3", "value9", 60)
+
+    then:
+    thrown(RedisStoreCircuitOpenException)
+    store.getFallback().getValue("key3") == null
+
+    cleanup:
+    store.close()
   }
 
-  def "setIfNotExist when does not exist"() {
+  def "circuit breaker probe is not scheduled once closed"() {
+    given:
+    configurations.circuitBreaker.enabled = true
+    def store = new RedisStore(configurations)
+    store.close()
+
     when:
-    when(commands.setnx("key1", "value1")).thenReturn(true) // The key was set
-    subject.putIfNotExist("key1", "value1", 60)
+    store.scheduleCircuitProbe()
 
     then:
-    verify(commands).expire("key1", 60) || true
+    noExceptionThrown()
   }
 
-  def "setIfNotExist when does exist"() {
+  def "getAsync"() {
+    given:
+    when(asyncCommands.get("key1")).thenReturn(TestRedisFuture.completed("value1"))
+
+    expect:
+    subject.getAsync("key1").toCompletableFuture().get() == "value1"
+  }
+
+  def "getSetAsync"() {
+    given:
+    when(asyncCommands.smembers("key1")).thenReturn(TestRedisFuture.completed(["value1"] as Set))
+
+    expect:
+    subject.getSetAsync("key1").toCompletableFuture().get() == ["value1"] as Set
+  }
+
+  def "inSetAsync"() {
+    given:
+    when(asyncCommands.sismember("key1", "value1")).thenReturn(TestRedisFuture.completed(true))
+
+    expect:
+    subject.inSetAsync("key1", "value1").toCompletableFuture().get()
+  }
+
+  def "putAsync"() {
+    given:
+    when(asyncCommands.set(eq("key1"), eq("value1"), setArgs("EX 60"))).thenReturn(TestRedisFuture.completed("OK"))
+
     when:
-    when(commands.setnx("key1", "value1")).thenReturn(false) // The key already set
-    subject.putIfNotExist("key1", "value1", 60)
+    subject.putAsync("key1", "value1", 60).toCompletableFuture().get()
 
     then:
-    verify(commands, never()).expire("key1", 60) || true
+    verify(asyncCommands).set(eq("key1"), eq("value1"), setArgs("EX 60")) || true
   }
 
-  def "setIfNotExist with expiration when does not exist"() {
+  def "putSetAsync"() {
+    given:
+    when(asyncCommands.eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["key1"] as String[]), eq("value1"), eq("60"))).thenReturn(TestRedisFuture.completed(1L))
+
     when:
-    when(commands.setnx("key1", "value1")).thenReturn(true) // The key was set
-    subject.putIfNotExist("key1", "value1", 12)
+    subject.putSetAsync("key1", "value1", 60).toCompletableFuture().get()
 
     then:
-    verify(commands).expire("key1", 12) || true
+    verify(asyncCommands).eval(anyString(), eq(ScriptOutputType.INTEGER), aryEq(["key1"] as String[]), eq("value1"), eq("60")) || true
   }
 
-  def "setIfNotExist with expiration when does exist"() {
+  def "putIfNotExistAsync"() {
+    given:
+    when(asyncCommands.set(eq("key1"), eq("value1"), setArgs("EX 60 NX"))).thenReturn(TestRedisFuture.completed(result))
+
+    expect:
+    subject.putIfNotExistAsync("key1", "value1", 60).toCompletableFuture().get() == expected
+
+    where:
+    result || expected
+    "OK"   || true
+    null   || false
+  }
+
+  def "deleteAsync"() {
+    given:
+    when(asyncCommands.del("key1")).thenReturn(TestRedisFuture.completed(1L))
+
     when:
-    when(commands.setnx("key1", "value1")).thenReturn(false) // The key already set
-    subject.putIfNotExist("key1", "value1", 12)
+    subject.deleteAsync("key1").toCompletableFuture().get()
 
     then:
-    verify(commands, never()).expire("key1", 12) || true
+    verify(asyncCommands).del("key1") || true
   }
 
-  def "status"() {
+  def "async wraps RedisException"() {
+    given:
+    when(asyncCommands.get("key1")).thenReturn(TestRedisFuture.failed(new RedisException("Something happened")))
+
     when:
-    when(commands.ping()).thenReturn("OK")
+    subject.getAsync("key1").toCompletableFuture().join()
 
     then:
-    subject.status() == "OK"
+    def ex = thrown(CompletionException)
+    ex.getCause() instanceof RedisStoreOperationException
+    ex.getCause().getMessage() == "Redis error occurred on get"
+  }
+
+  def "async fails stage on connection failure"() {
+    given:
+    subject.setConnection(null)
+    def exception = new RedisStoreConnectionException("Something happened when connecting", null)
+    doThrow(exception).when(subject).buildConnection()
+
+    when:
+    subject.getAsync("junk").toCompletableFuture().join()
+
+    then:
+    def ex = thrown(CompletionException)
+    ex.getCause() == exception
+  }
+
+  def "warmUp pings connection"() {
+    when:
+    subject.warmUp()
+
+    then:
+    verify(commands).ping() || true
+  }
+
+  def "close closes connection and rejects further operations"() {
+    given:
+    subject.get("key1")
+
+    when:
+    subject.close()
+
+    then:
+    verify(connection).close() || true
+    subject.getConnection() == null
+
+    when:
+    subject.get("key1")
+
+    then:
+    def ex = thrown(RedisStoreConnectionException)
+    ex.getMessage() == "Redis store is closed"
+  }
+
+  def "concurrent first use builds a single connection"() {
+    given:
+    subject.setConnection(null)
+    doReturn(connection).when(subject).buildConnection()
+    def threads = (1..8).collect { Thread.start { subject.get("key1") } }
+
+    when:
+    threads*.join()
+
+    then:
+    verify(subject, times(1)).buildConnection() || true
+  }
+
+  def "setConnection closes connections opened by the replaced pool"() {
+    given:
+    configurations.connectionPool.size = 2
+    def extra = mock(StatefulRedisConnection)
+    doReturn(extra).when(subject).buildConnection()
+    when(commands.get("key1")).thenReturn("value1")
+    subject.get("key1")
+
+    when:
+    subject.setConnection(mock(StatefulRedisConnection))
+
+    then:
+    verify(extra).close() || true
+    verify(connection, never()).close() || true
+  }
+
+  def "records operation metrics"() {
+    given:
+    def metrics = mock(RedisStoreMetrics)
+    subject.setMetrics(metrics)
+    when(commands.get("key1")).thenReturn("value1")
+
+    when:
+    subject.get("key1")
+
+    then:
+    verify(metrics).registerInFlight(eq("get"), ArgumentMatchers.any(IntSupplier)) || true
+    verify(metrics).recordOperation(eq("get"), eq(RedisStoreMetrics.Outcome.SUCCESS), ArgumentMatchers.anyLong()) || true
+    verify(metrics).recordPayloadSize("get", 6) || true
+  }
+
+  def "records payload size of writes"() {
+    given:
+    def metrics = mock(RedisStoreMetrics)
+    subject.setMetrics(metrics)
+
+    when:
+    subject.put("key1", "välue", 60)
+
+    then:
+    verify(metrics).recordPayloadSize("put", 6) || true
+  }
+
+  def "records connection and operation errors separately"() {
+    given:
+    def metrics = mock(RedisStoreMetrics)
+    subject.setMetrics(metrics)
+    when(commands.get("key1")).thenThrow(new RedisException("boom"))
+    when(commands.get("key2")).thenThrow(new RedisStoreConnectionException("down", null))
+
+    when:
+    subject.get("key1")
+
+    then:
+    thrown(RedisStoreOperationException)
+    verify(metrics).recordOperation(eq("get"), eq(RedisStoreMetrics.Outcome.OPERATION_ERROR), ArgumentMatchers.anyLong()) || true
+
+    when:
+    subject.get("key2")
+
+    then:
+    thrown(RedisStoreConnectionException)
+    verify(metrics).recordOperation(eq("get"), eq(RedisStoreMetrics.Outcome.CONNECTION_ERROR), ArgumentMatchers.anyLong()) || true
+  }
+
+  def "records async operation metrics on completion"() {
+    given:
+    def metrics = mock(RedisStoreMetrics)
+    subject.setMetrics(metrics)
+    def future = new TestRedisFuture<String>()
+    when(asyncCommands.get("key1")).thenReturn(future)
+
+    when:
+    def result = subject.getAsync("key1")
+
+    then:
+    verify(metrics, never()).recordOperation(anyString(), ArgumentMatchers.any(RedisStoreMetrics.Outcome), ArgumentMatchers.anyLong()) || true
+
+    when:
+    future.complete("value1")
+    result.toCompletableFuture().get()
+
+    then:
+    verify(metrics).recordOperation(eq("get"), eq(RedisStoreMetrics.Outcome.SUCCESS), ArgumentMatchers.anyLong()) || true
   }
 
   def "rethrows connection failure"() {
@@ -216,6 +1196,87 @@ class RedisStoreTest extends Specification implements WithMockery {
     ex.getMessage() == "Unknown exception thrown by redis on get"
   }
 
+  def "buildRedisUri for standalone with TLS and password"() {
+    given:
+    configurations.ssl = true
+    configurations.verifyPeer = true
+    configurations.password = "secret"
+
+    when:
+    def uri = subject.buildRedisUri()
+
+    then:
+    uri.getHost() == "localhost"
+    uri.getPort() == 6379
+    uri.isSsl()
+    uri.isVerifyPeer()
+    new String(uri.getPassword()) == "secret"
+    uri.getUsername() == null
+    uri.getTimeout() == configurations.timeout
+  }
+
+  def "buildRedisUri with ACL user"() {
+    given:
+    configurations.username = "app"
+    configurations.password = "secret"
+
+    when:
+    def uri = subject.buildRedisUri()
+
+    then:
+    uri.getUsername() == "app"
+    new String(uri.getPassword()) == "secret"
+  }
+
+  def "withDeadline caps command timeouts on the calling thread"() {
+    given:
+    def source = subject.buildTimeoutOptions().getSource()
+    def get = new Command(CommandType.GET, null)
+
+    when:
+    def inside = subject.withDeadline(Instant.now().plusMillis(100), {
+      subject.withDeadline(Instant.now().plusSeconds(60), { source.getTimeout(get) })
+    })
+    def outside = source.getTimeout(get)
+
+    then:
+    inside <= Duration.ofMillis(100).toNanos()
+    outside == configurations.timeout.toNanos()
+  }
+
+  def "buildRedisUri uses longest timeout"() {
+    given:
+    configurations.timeout = Duration.ofSeconds(1)
+    configurations.writeTimeout = Duration.ofSeconds(3)
+
+    expect:
+    subject.buildRedisUri().getTimeout() == Duration.ofSeconds(3)
+  }
+
+  def "buildRedisUri for sentinel"() {
+    given:
+    configurations.sentinelMasterId = "mymaster"
+    configurations.sentinels = ["sentinel1:26380", "sentinel2"]
+
+    when:
+    def uri = subject.buildRedisUri()
+
+    then:
+    uri.getSentinelMasterId() == "mymaster"
+    uri.getSentinels().collect { it.getHost() + ":" + it.getPort() } == ["sentinel1:26380", "sentinel2:26379"]
+  }
+
+  def "buildRedisUri for sentinel requires sentinels"() {
+    given:
+    configurations.sentinelMasterId = "mymaster"
+
+    when:
+    subject.buildRedisUri()
+
+    then:
+    thrown(RedisStoreConnectionException)
+  }
+
   def "buildConnection wraps connection failure as RedisStoreConnectionException"() {
     given:
     def config = new RedisStoreConfiguration()
@@ -229,4 +1290,120 @@ class RedisStoreTest extends Specification implements WithMockery {
     then:
     thrown(RedisStoreConnectionException)
   }
+
+  def "constructor releases shared client resources when warm-up fails"() {
+    given:
+    def config = new RedisStoreConfiguration()
+    config.port = 1
+    config.timeout = Duration.ofMillis(500)
+    config.warmUp = true
+    config.sharedClientResources = true
+    config.ioThreadPoolSize = 3
+    config.computationThreadPoolSize = 7
+
+    when:
+    new RedisStore(config)
+
+    then:
+    thrown(RedisStoreConnectionException)
+    RedisClientResourcesRegistry.usage().find { it.ioThreadPoolSize == 3 && it.computationThreadPoolSize == 7 } == null
+  }
+
+  def "command latency metrics are off by default"() {
+    expect:
+    !new RedisStoreConfiguration().commandLatencyMetrics
+  }
+
+  def "command latency recorder is attached when owned client resources are built"() {
+    given:
+    def config = new RedisStoreConfiguration()
+    config.sharedClientResources = false
+    config.commandLatencyMetrics = true
+    def store = new RedisStore(config)
+    def metrics = mock(RedisStoreMetrics)
+    store.setMetrics(metrics)
+
+    when:
+    store.buildClient()
+    store.@clientResources.commandLatencyRecorder().recordCommandLatency(null, null, CommandType.GET, 10, 20)
+
+    then:
+    store.@instrumentedClientResources == null
+    verify(metrics).recordCommandLatency("GET", 10, 20) || true
+
+    cleanup:
+    store.close()
+  }
+
+  def "command latency recorder does not modify shared client resources and is dropped on close"() {
+    given:
+    def config = new RedisStoreConfiguration()
+    config.sharedClientResources = true
+    config.commandLatencyMetrics = true
+    config.ioThreadPoolSize = 5
+    config.computationThreadPoolSize = 9
+    def store = new RedisStore(config)
+    def metrics = mock(RedisStoreMetrics)
+    store.setMetrics(metrics)
+
+    when:
+    store.buildClient()
+    def instrumented = store.@instrumentedClientResources
+    instrumented.commandLatencyRecorder().recordCommandLatency(null, null, CommandType.GET, 10, 20)
+
+    then:
+    !instrumented.is(store.@clientResources)
+    instrumented.commandLatencyPublisherOptions().eventEmitInterval().isZero()
+    instrumented.@metricEventPublisher == null
+    !store.@clientResources.commandLatencyRecorder().is(instrumented.commandLatencyRecorder())
+    verify(metrics).recordCommandLatency("GET", 10, 20) || true
+
+    when:
+    store.close()
+
+    then:
+    store.@instrumentedClientResources == null
+    RedisClientResourcesRegistry.usage().find { it.ioThreadPoolSize == 5 && it.computationThreadPoolSize == 9 } == null
+  }
+
+  def "put compresses large values when compression is enabled"() {
+    given:
+    configurations.valueCompression.algorithm = RedisValueCompressionConfiguration.Algorithm.DEFLATE
+    configurations.valueCompression.thresholdBytes = 16
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    def args = ArgumentCaptor.forClass(CommandArgs)
+    def encoded = Unpooled.buffer()
+
+    when:
+    store.put("key1", "value" * 500, 60)
+
+    then:
+    verify(commands).dispatch(eq(CommandType.SET), ArgumentMatchers.any(StatusOutput), args.capture()) || true
+    verify(commands, never()).set(anyString(), anyString(), ArgumentMatchers.any(SetArgs)) || true
+
+    when:
+    args.getValue().encode(encoded)
+    def command = encoded.toString(StandardCharsets.ISO_8859_1)
+
+    then:
+    command.contains(new String([RedisValueCodec.COMPRESSED_MARKER, RedisValueCodec.DEFLATE] as byte[], StandardCharsets.ISO_8859_1))
+    !command.contains("value" * 500)
+    command.endsWith("\$2\r\nEX\r\n\$2\r\n60\r\n")
+  }
+
+  def "inSet matches large members written before compression was enabled"() {
+    given:
+    def member = "member" * 500
+    def written = StandardCharsets.UTF_8.encode(member)
+    configurations.valueCompression.algorithm = RedisValueCompressionConfiguration.Algorithm.DEFLATE
+    configurations.valueCompression.thresholdBytes = 16
+    def store = new RedisStore(configurations)
+    store.setConnection(connection)
+    when(commands.sismember("key1", member)).thenReturn(true)
+
+    expect:
+    RedisValueCodec.UNCOMPRESSED.encodeValue(member) == written
+    store.inSet("key1", member)
+  }
 }
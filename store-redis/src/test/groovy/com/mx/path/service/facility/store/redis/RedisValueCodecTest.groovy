@@ -0,0 +1,83 @@
+package com.mx.path.service.facility.store.redis
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+import spock.lang.Specification
+
+class RedisValueCodecTest extends Specification {
+
+  RedisValueCompressionConfiguration configuration
+  RedisValueCodec subject
+
+  def setup() {
+    configuration = new RedisValueCompressionConfiguration()
+    configuration.algorithm = RedisValueCompressionConfiguration.Algorithm.DEFLATE
+    configuration.thresholdBytes = 64
+    subject = new RedisValueCodec(configuration)
+  }
+
+  def "stores small values as plain UTF-8"() {
+    when:
+    def encoded = subject.encodeValue("small")
+
+    then:
+    StandardCharsets.UTF_8.decode(encoded.duplicate()).toString() == "small"
+    subject.decodeValue(encoded) == "small"
+  }
+
+  def "compresses values above threshold"() {
+    given:
+    def value = "{\"attribute\":\"value\"}" * 100
+
+    when:
+    def encoded = subject.encodeValue(value)
+
+    then:
+    encoded.get(0) == RedisValueCodec.COMPRESSED_MARKER
+    encoded.get(1) == RedisValueCodec.DEFLATE
+    encoded.remaining() < value.length()
+    subject.decodeValue(encoded) == value
+  }
+
+  def "does not compress when disabled"() {
+    given:
+    configuration.algorithm = RedisValueCompressionConfiguration.Algorithm.NONE
+    def value = "a" * 1000
+
+    expect:
+    subject.encodeValue(value).remaining() == 1000
+  }
+
+  def "uncompressed codec sends large values as plain UTF-8 and reads compressed values"() {
+    given:
+    def value = "c" * 1000
+
+    expect:
+    RedisValueCodec.UNCOMPRESSED.encodeValue(value) == StandardCharsets.UTF_8.encode(value)
+    RedisValueCodec.UNCOMPRESSED.decodeValue(subject.encodeValue(value)) == value
+  }
+
+  def "reads compressed values even when compression is disabled"() {
+    given:
+    def value = "b" * 1000
+    def encoded = subject.encodeValue(value)
+    configuration.algorithm = RedisValueCompressionConfiguration.Algorithm.NONE
+
+    expect:
+    subject.decodeValue(encoded) == value
+  }
+
+  def "rejects unknown algorithm"() {
+    when:
+    subject.decodeValue(ByteBuffer.wrap([RedisValueCodec.COMPRESSED_MARKER, (byte) 9, (byte) 0] as byte[]))
+
+    then:
+    thrown(IllegalStateException)
+  }
+
+  def "encodes keys as UTF-8"() {
+    expect:
+    subject.decodeKey(subject.encodeKey("key1")) == "key1"
+  }
+}
@@ -0,0 +1,40 @@
+package com.mx.path.service.facility.store.redis
+
+import org.mockito.ArgumentMatcher
+import org.mockito.ArgumentMatchers
+
+import io.lettuce.core.SetArgs
+import io.lettuce.core.codec.StringCodec
+import io.lettuce.core.protocol.CommandArgs
+
+/**
+ * Matches {@link SetArgs} by the options they add to the SET command, e.g. {@code "EX 60 NX"}.
+ */
+class SetArgsMatcher implements ArgumentMatcher<SetArgs> {
+
+  private final String expected
+
+  SetArgsMatcher(String expected) {
+    this.expected = expected
+  }
+
+  static SetArgs setArgs(String expected) {
+    return ArgumentMatchers.argThat(new SetArgsMatcher(expected))
+  }
+
+  static String render(SetArgs args) {
+    def commandArgs = new CommandArgs<String, String>(StringCodec.UTF8)
+    args.build(commandArgs)
+    return commandArgs.toCommandString()
+  }
+
+  @Override
+  boolean matches(SetArgs args) {
+    return args != null && render(args) == expected
+  }
+
+  @Override
+  String toString() {
+    return "SetArgs(" + expected + ")"
+  }
+}
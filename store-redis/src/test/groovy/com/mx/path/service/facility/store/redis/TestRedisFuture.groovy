@@ -0,0 +1,34 @@
+package com.mx.path.service.facility.store.redis
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+import io.lettuce.core.RedisFuture
+
+/**
+ * Minimal, already-completed RedisFuture for stubbing async commands
+ */
+class TestRedisFuture<T> extends CompletableFuture<T> implements RedisFuture<T> {
+
+  static <T> TestRedisFuture<T> completed(T value) {
+    def future = new TestRedisFuture<T>()
+    future.complete(value)
+    future
+  }
+
+  static <T> TestRedisFuture<T> failed(Throwable throwable) {
+    def future = new TestRedisFuture<T>()
+    future.completeExceptionally(throwable)
+    future
+  }
+
+  @Override
+  String getError() {
+    return null
+  }
+
+  @Override
+  boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+    return true
+  }
+}
@@ -21,8 +21,18 @@ import com.bettercloud.vault.response.VaultResponse;
 import com.mx.path.core.common.configuration.Configuration;
 import com.mx.path.core.common.lang.Strings;
 import com.mx.path.core.common.store.Store;
-
-public final class VaultStore implements Store {
+import com.mx.path.service.facility.vault.VaultHttpClient;
+import com.mx.path.service.facility.vault.VaultHttpClientOptions;
+import com.mx.path.service.facility.vault.VaultHttpClientRegistry;
+import com.mx.path.service.facility.vault.VaultHttpDriver;
+import com.mx.path.service.facility.vault.VaultToken;
+import com.mx.path.service.facility.vault.VaultTokenRenewal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class VaultStore implements Store, AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(VaultStore.class);
   private static final int KEY_NOT_FOUND = 404;
   private static final String TTL_UNSUPPORTED = "TTL is not supported with Vault";
   private static final String SET_UNSUPPORTED = "Sets are not supported with Vault";
@@ -35,8 +45,14 @@ public final class VaultStore implements Store {
   @Setter
   private volatile Vault driver;
 
+  private final VaultTokenRenewal tokenRenewal;
+
+  private VaultHttpClient httpClient;
+
   public VaultStore(@Configuration VaultStoreConfiguration configuration) {
     this.configuration = configuration;
+    this.tokenRenewal = new VaultTokenRenewal("vault-store-token-renewal", configuration.isTokenRenewalEnabled(),
+        configuration.getTokenRenewalRatio(), configuration.getTokenRenewalRetryInterval());
   }
 
   /**
@@ -47,6 +63,16 @@ public final class VaultStore implements Store {
    */
   Vault buildVaultDriver(@Nullable String authToken) {
     try {
+      if (configuration.getTransport() == VaultStoreConfiguration.Transport.HTTP_CLIENT) {
+        VaultConfig vaultConfig = new VaultConfig()
+            .token(authToken)
+            .engineVersion(configuration.getEngineVersion())
+            .address(configuration.getUri())
+            .build();
+
+        return new VaultHttpDriver(vaultConfig, httpClient());
+      }
+
       if (configuration.isSsl()) { // If SSL is enabled, set up the SSL configuration
         SslConfig sslConfig = new SslConfig();
         sslConfig.verify(false);
@@ -95,53 +121,125 @@ public final class VaultStore implements Store {
    * @return new driver with auth token
    */
   Vault authenticateDriver(Vault newDriver) {
+    VaultToken newToken = login(newDriver);
+    Vault authenticatedDriver = buildVaultDriver(newToken.getClientToken());
+    tokenRenewal.setToken(newToken);
+
+    return authenticatedDriver;
+  }
+
+  /**
+   * Renew the current token in the background, or log in again if it can no longer be renewed, then swap in the new
+   * driver and schedule the next renewal. Requests keep using the current driver until the swap. Only the swap holds
+   * this object's lock, so requests are never blocked behind a background renewal or login.
+   *
+   * <p>Does not raise exception on failure. A failed renewal is retried after {@link VaultStoreConfiguration#getTokenRenewalRetryInterval()}.
+   */
+  void renewToken() {
+    Vault currentDriver = driver;
+    if (currentDriver == null) {
+      return;
+    }
+
+    tokenRenewal.renew(currentDriver, () -> {
+      swapDriver(currentDriver, authenticateDriver(buildVaultDriver(null)));
+    }, this::renewToken);
+  }
+
+  /**
+   * Swap in the driver from a background login, unless the driver was reset or replaced while logging in.
+   */
+  private synchronized void swapDriver(Vault expected, Vault newDriver) {
+    if (driver == expected) {
+      driver = newDriver;
+    }
+  }
+
+  /**
+   * @return token of the current driver, or null before login
+   */
+  VaultToken getToken() {
+    return tokenRenewal.getToken();
+  }
+
+  /**
+   * Drops the driver, stops background token renewal and releases the shared HTTP client, if any.
+   */
+  @Override
+  public synchronized void close() {
+    driver = null;
+    tokenRenewal.close();
+    if (httpClient != null) {
+      VaultHttpClientRegistry.release(httpClient);
+      httpClient = null;
+    }
+  }
+
+  private Vault getDriver() {
+    if (driver == null) {
+      synchronized (this) {
+        if (driver == null) {
+          Vault newDriver = buildVaultDriver(null);
+          driver = authenticateDriver(newDriver);
+          tokenRenewal.schedule(this::renewToken);
+        }
+      }
+    }
+
+    return driver;
+  }
+
+  private VaultToken login(Vault newDriver) {
     try {
-      String token;
       AuthResponse resp;
 
       switch (getConfiguration().getAuthentication()) {
         case TOKEN:
-          token = getConfiguration().getToken();
-          if (token == null) {
+          if (getConfiguration().getToken() == null) {
             throw new VaultStoreConfigurationException("Vault token required for TOKEN authentication");
           }
-          break;
+
+          return VaultToken.unmanaged(getConfiguration().getToken());
 
         case APPROLE:
           resp = newDriver.auth().loginByAppRole(getConfiguration().getAppRole(), getConfiguration().getSecretId());
           validateVaultAuthenticationResponse(resp, "Unable to login via app-role");
 
-          token = resp.getAuthClientToken();
-          break;
+          return VaultToken.fromAuthResponse(resp);
 
         case APPID:
           resp = newDriver.auth().loginByAppID("app-id/login", getConfiguration().getAppId(), getConfiguration().getUserId());
           validateVaultAuthenticationResponse(resp, "Unable to login via app-id");
 
-          token = resp.getAuthClientToken();
-          break;
+          return VaultToken.fromAuthResponse(resp);
 
         default:
           throw new VaultStoreConfigurationException("Unsupported authentication type: " + getConfiguration().getAuthentication());
       }
-
-      return buildVaultDriver(token);
     } catch (VaultException e) {
       throw new VaultStoreAuthenticationException("Unable to authenticate", e);
     }
   }
 
-  private Vault getDriver() {
-    if (driver == null) {
-      synchronized (this) {
-        if (driver == null) {
-          Vault newDriver = buildVaultDriver(null);
-          driver = authenticateDriver(newDriver);
-        }
+  /**
+   * @return client shared with every Vault facility using the same server and HTTP settings
+   */
+  private synchronized VaultHttpClient httpClient() {
+    if (httpClient == null) {
+      if (configuration.isSsl()) {
+        LOGGER.warn("ssl-enabled does not disable certificate verification for the HTTP_CLIENT transport. Using the JVM trust store.");
       }
+
+      httpClient = VaultHttpClientRegistry.acquire(VaultHttpClientOptions.builder()
+          .address(configuration.getUri())
+          .connectTimeout(configuration.getConnectTimeout())
+          .requestTimeout(configuration.getRequestTimeout())
+          .maxRetries(configuration.getMaxRetries())
+          .retryInterval(configuration.getRetryInterval())
+          .build());
     }
 
-    return driver;
+    return httpClient;
   }
 
   @SuppressWarnings("checkstyle:MagicNumber")
@@ -247,8 +345,9 @@ public final class VaultStore implements Store {
     throw new VaultStoreUnsupportedOperation(PUT_IF_NOT_EXIST_UNSUPPORTED);
   }
 
-  private void reauthenticateDriver() {
-    authenticateDriver(getDriver());
+  private synchronized void reauthenticateDriver() {
+    driver = authenticateDriver(buildVaultDriver(null));
+    tokenRenewal.schedule(this::renewToken);
   }
 
   private LogicalResponse logicalReadWithReauthentication(final String path) {
@@ -16,6 +16,11 @@ public class VaultStoreConfiguration {
     TOKEN
   }
 
+  enum Transport {
+    DRIVER,
+    HTTP_CLIENT
+  }
+
   private static final AuthenticationType DEFAULT_AUTHENTICATION = AuthenticationType.APPROLE;
   private static final String DEFAULT_URI = "http://127.0.0.1:8200";
   private static final String PUT_IF_NOT_EXIST_UNSUPPORTED = "Put if not exist operations are not supported with Vault";
@@ -27,6 +32,12 @@ public class VaultStoreConfiguration {
   private static final int KEY_NOT_FOUND = 404;
   private static final int MAXIMUM_REAUTHENTICATION_RETRIES = 3;
   private static final boolean DEFAULT_SSL_ENABLED = false;
+  private static final boolean DEFAULT_TOKEN_RENEWAL_ENABLED = true;
+  private static final double DEFAULT_TOKEN_RENEWAL_RATIO = 0.75;
+  private static final Duration DEFAULT_TOKEN_RENEWAL_RETRY_INTERVAL = Duration.ofSeconds(10);
+  private static final Transport DEFAULT_TRANSPORT = Transport.DRIVER;
+  private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+  private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
 
   @ConfigurationField(value = "app-id")
   private String appId;
@@ -55,6 +66,43 @@ public class VaultStoreConfiguration {
   @ConfigurationField(secret = true)
   private String token;
 
+  /**
+   * Renew or replace the client token in the background before its lease expires
+   */
+  @ConfigurationField
+  private boolean tokenRenewalEnabled = DEFAULT_TOKEN_RENEWAL_ENABLED;
+
+  /**
+   * Fraction of the token's lease to let elapse before renewing it
+   */
+  @ConfigurationField
+  private double tokenRenewalRatio = DEFAULT_TOKEN_RENEWAL_RATIO;
+
+  /**
+   * How long to wait before trying again after a failed background renewal
+   */
+  @ConfigurationField
+  private Duration tokenRenewalRetryInterval = DEFAULT_TOKEN_RENEWAL_RETRY_INTERVAL;
+
+  /**
+   * How requests reach Vault. DRIVER opens a connection per request. HTTP_CLIENT sends them over a pooled, HTTP/2
+   * client shared with other Vault facilities using the same server
+   */
+  @ConfigurationField
+  private Transport transport = DEFAULT_TRANSPORT;
+
+  /**
+   * Connect timeout used by the HTTP_CLIENT transport
+   */
+  @ConfigurationField
+  private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+  /**
+   * Request timeout used by the HTTP_CLIENT transport
+   */
+  @ConfigurationField
+  private Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+
   @ConfigurationField
   private String uri = DEFAULT_URI;
 
@@ -3,14 +3,19 @@ package com.mx.path.service.facility.store.vault
 import static org.mockito.ArgumentMatchers.any
 import static org.mockito.ArgumentMatchers.eq
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS
+import static org.mockito.Mockito.doAnswer
 import static org.mockito.Mockito.doReturn
 import static org.mockito.Mockito.doThrow
 import static org.mockito.Mockito.mock
+import static org.mockito.Mockito.never
 import static org.mockito.Mockito.spy
 import static org.mockito.Mockito.times
 import static org.mockito.Mockito.verify
 import static org.mockito.Mockito.when
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 import com.bettercloud.vault.Vault
 import com.bettercloud.vault.VaultException
 import com.bettercloud.vault.api.Auth
@@ -18,6 +23,8 @@ import com.bettercloud.vault.api.Logical
 import com.bettercloud.vault.response.AuthResponse
 import com.bettercloud.vault.response.LogicalResponse
 import com.bettercloud.vault.rest.RestResponse
+import com.mx.path.service.facility.vault.VaultHttpClientRegistry
+import com.mx.path.service.facility.vault.VaultHttpDriver
 
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -102,6 +109,163 @@ class VaultStoreTest extends Specification {
     verify(authDriver, times(1)).loginByAppID("app-id/login", config.getAppId(), config.getUserId()) || true
   }
 
+  def "renewToken() extends renewable lease without logging in again"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultStore(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+    def renewResponse = mock(AuthResponse)
+
+    doReturn(authDriver).when(vaultDriver).auth()
+    doReturn(loginResponse).when(authDriver).loginByAppRole(config.getAppRole(), config.getSecretId())
+    doReturn("token12345").when(loginResponse).getAuthClientToken()
+    doReturn(3600L).when(loginResponse).getAuthLeaseDuration()
+    doReturn(true).when(loginResponse).isAuthRenewable()
+    doReturn(renewResponse).when(authDriver).renewSelf()
+    doReturn(3600L).when(renewResponse).getAuthLeaseDuration()
+    doReturn(true).when(renewResponse).isAuthRenewable()
+
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+    subject.setDriver(subject.authenticateDriver(vaultDriver))
+
+    when:
+    subject.renewToken()
+
+    then:
+    verify(authDriver, times(1)).renewSelf() || true
+    verify(authDriver, times(1)).loginByAppRole(config.getAppRole(), config.getSecretId()) || true
+    subject.getToken().getClientToken() == "token12345"
+    subject.getToken().isRenewable()
+  }
+
+  def "renewToken() logs in again once lease reaches max TTL"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultStore(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+    def renewResponse = mock(AuthResponse)
+
+    doReturn(authDriver).when(vaultDriver).auth()
+    doReturn(loginResponse).when(authDriver).loginByAppRole(config.getAppRole(), config.getSecretId())
+    doReturn("token12345", "token67890").when(loginResponse).getAuthClientToken()
+    doReturn(3600L).when(loginResponse).getAuthLeaseDuration()
+    doReturn(true).when(loginResponse).isAuthRenewable()
+    doReturn(renewResponse).when(authDriver).renewSelf()
+    doReturn(120L).when(renewResponse).getAuthLeaseDuration()
+    doReturn(true).when(renewResponse).isAuthRenewable()
+
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+    subject.setDriver(subject.authenticateDriver(vaultDriver))
+
+    when: "renewal is capped"
+    subject.renewToken()
+
+    then:
+    subject.getToken().getLeaseDurationSeconds() == 120L
+    !subject.getToken().isRenewable()
+
+    when: "next renewal"
+    subject.renewToken()
+
+    then:
+    verify(authDriver, times(2)).loginByAppRole(config.getAppRole(), config.getSecretId()) || true
+    subject.getToken().getClientToken() == "token67890"
+  }
+
+  def "renewToken() does not raise exceptions"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultStore(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+
+    doReturn(authDriver).when(vaultDriver).auth()
+    doReturn(loginResponse).when(authDriver).loginByAppRole(config.getAppRole(), config.getSecretId())
+    doReturn("token12345").when(loginResponse).getAuthClientToken()
+    doReturn(3600L).when(loginResponse).getAuthLeaseDuration()
+    doReturn(true).when(loginResponse).isAuthRenewable()
+    doThrow(new VaultException("permission denied")).when(authDriver).renewSelf()
+
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+    subject.setDriver(subject.authenticateDriver(vaultDriver))
+    doThrow(new VaultException("connection refused")).when(authDriver).loginByAppRole(config.getAppRole(), config.getSecretId())
+
+    when:
+    subject.renewToken()
+
+    then:
+    noExceptionThrown()
+    subject.getToken().getClientToken() == "token12345"
+  }
+
+  def "renewToken() logs in again without holding the store lock"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultStore(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+
+    doReturn(authDriver).when(vaultDriver).auth()
+    doReturn(loginResponse).when(authDriver).loginByAppRole(config.getAppRole(), config.getSecretId())
+    doReturn("token12345").when(loginResponse).getAuthClientToken()
+    doReturn(3600L).when(loginResponse).getAuthLeaseDuration()
+    doReturn(false).when(loginResponse).isAuthRenewable()
+
+    subject.setDriver(subject.authenticateDriver(vaultDriver))
+
+    def closed = new CountDownLatch(1)
+    def closedDuringLogin = false
+    doAnswer({
+      Thread.start {
+        subject.close()
+        closed.countDown()
+      }
+      closedDuringLogin = closed.await(5, TimeUnit.SECONDS)
+      vaultDriver
+    }).when(subject).buildVaultDriver(any())
+
+    when:
+    subject.renewToken()
+
+    then: "the store closed during login keeps no driver or token"
+    closedDuringLogin
+    verify(authDriver, times(2)).loginByAppRole(config.getAppRole(), config.getSecretId()) || true
+    subject.@driver == null
+    subject.getToken() == null
+  }
+
+  def "close() drops token and stops renewal"() {
+    given:
+    def config = configWithAppRole()
+    subject = spy(new VaultStore(config))
+
+    def authDriver = mock(Auth)
+    def loginResponse = mock(AuthResponse)
+
+    doReturn(authDriver).when(vaultDriver).auth()
+    doReturn(loginResponse).when(authDriver).loginByAppRole(config.getAppRole(), config.getSecretId())
+    doReturn("token12345").when(loginResponse).getAuthClientToken()
+    doReturn(3600L).when(loginResponse).getAuthLeaseDuration()
+    doReturn(true).when(loginResponse).isAuthRenewable()
+
+    doReturn(vaultDriver).when(subject).buildVaultDriver(any())
+    subject.setDriver(subject.authenticateDriver(vaultDriver))
+
+    when:
+    subject.close()
+    subject.renewToken()
+
+    then:
+    subject.getToken() == null
+    verify(authDriver, never()).renewSelf() || true
+  }
+
   @Unroll
   def "buildVaultDriver"() {
     given:
@@ -121,6 +285,49 @@ class VaultStoreTest extends Specification {
     configWithAppRoleSSL()  | _
   }
 
+  def "buildVaultDriver shares HTTP client when transport is HTTP_CLIENT"() {
+    given:
+    def config = configWithAppRole().tap {
+      setTransport(VaultStoreConfiguration.Transport.HTTP_CLIENT)
+    }
+    subject = new VaultStore(config)
+
+    when:
+    def driver = subject.buildVaultDriver("token12345")
+    def otherDriver = new VaultStore(config).buildVaultDriver("token67890")
+
+    then:
+    driver instanceof VaultHttpDriver
+    otherDriver instanceof VaultHttpDriver
+    driver.getClient().is(otherDriver.getClient())
+    driver.getClient().getOptions().getAddress() == config.getUri()
+    driver.getClient().getOptions().getRequestTimeout() == config.getRequestTimeout()
+  }
+
+  def "close() releases shared HTTP client"() {
+    given:
+    def config = configWithAppRole().tap {
+      setUri("http://localhost:8299")
+      setTransport(VaultStoreConfiguration.Transport.HTTP_CLIENT)
+    }
+    subject = new VaultStore(config)
+    def other = new VaultStore(config)
+    def options = subject.buildVaultDriver("token12345").getClient().getOptions()
+    other.buildVaultDriver("token67890")
+
+    when:
+    subject.close()
+
+    then:
+    VaultHttpClientRegistry.references(options) == 1
+
+    when:
+    other.close()
+
+    then:
+    VaultHttpClientRegistry.references(options) == 0
+  }
+
   def "buildVaultDriver with invalid configuration"() {
     given:
     def config = new VaultStoreConfiguration().tap {
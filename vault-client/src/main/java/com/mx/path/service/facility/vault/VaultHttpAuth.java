@@ -0,0 +1,62 @@
+package com.mx.path.service.facility.vault;
+
+import com.bettercloud.vault.VaultConfig;
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.api.Auth;
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonObject;
+import com.bettercloud.vault.response.AuthResponse;
+
+/**
+ * {@link Auth} logins and token renewal sent through a {@link VaultHttpClient}. Other auth methods fall back to the
+ * driver.
+ */
+final class VaultHttpAuth extends Auth {
+  private static final int OK_STATUS = 200;
+  private static final String JSON_MIME_TYPE = "application/json";
+  private static final String DEFAULT_TOKEN_MOUNT = "token";
+
+  private final VaultConfig config;
+  private final VaultHttpClient client;
+
+  VaultHttpAuth(VaultConfig config, VaultHttpClient client) {
+    super(config);
+    this.config = config;
+    this.client = client;
+  }
+
+  @Override
+  public AuthResponse loginByAppRole(String path, String roleId, String secretId) throws VaultException {
+    JsonObject body = Json.object().add("role_id", roleId).add("secret_id", secretId);
+
+    return authResponse(VaultHttpLogical.send(() -> client.post("auth/" + path + "/login", null, body)));
+  }
+
+  @Override
+  public AuthResponse loginByAppID(String path, String appId, String userId) throws VaultException {
+    JsonObject body = Json.object().add("app_id", appId).add("user_id", userId);
+
+    return authResponse(VaultHttpLogical.send(() -> client.post("auth/" + path, null, body)));
+  }
+
+  @Override
+  public AuthResponse renewSelf(long increment, String tokenAuthMount) throws VaultException {
+    String mount = tokenAuthMount != null ? tokenAuthMount : DEFAULT_TOKEN_MOUNT;
+    JsonObject body = increment < 0 ? null : Json.object().add("increment", increment);
+
+    return authResponse(VaultHttpLogical.send(() -> client.post("auth/" + mount + "/renew-self", config.getToken(), body)));
+  }
+
+  private static AuthResponse authResponse(VaultHttpResponse response) throws VaultException {
+    if (response.getStatus() != OK_STATUS) {
+      throw VaultHttpLogical.unexpectedStatus(response);
+    }
+
+    String mimeType = response.getMimeType() == null ? "null" : response.getMimeType().split(";")[0].trim();
+    if (!JSON_MIME_TYPE.equals(mimeType)) {
+      throw new VaultException("Vault responded with MIME type: " + mimeType, response.getStatus());
+    }
+
+    return new AuthResponse(response.toRestResponse(), response.getRetries());
+  }
+}
@@ -0,0 +1,193 @@
+package com.mx.path.service.facility.vault;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import lombok.Getter;
+
+import com.bettercloud.vault.json.JsonValue;
+
+/**
+ * Vault REST client built on {@link HttpClient}.
+ *
+ * <p>One instance holds one connection pool: connections are kept alive and reused across requests, and negotiate
+ * HTTP/2 over TLS so concurrent requests are multiplexed over a single connection instead of each paying for a
+ * handshake. Create one per Vault server and share it; it is safe for concurrent use.
+ *
+ * <p>Every operation has a {@link CompletableFuture} variant that does not block the caller. The blocking variants wait
+ * on the same future, which parks rather than pins when called from a virtual thread.
+ */
+public final class VaultHttpClient implements AutoCloseable {
+  private static final String API_PREFIX = "/v1/";
+  private static final String TOKEN_HEADER = "X-Vault-Token";
+  private static final String NAMESPACE_HEADER = "X-Vault-Namespace";
+  private static final String CONTENT_TYPE_HEADER = "Content-Type";
+  private static final String JSON_MIME_TYPE = "application/json";
+  private static final int SERVER_ERROR_STATUS = 500;
+
+  @Getter
+  private final VaultHttpClientOptions options;
+
+  private final HttpClient httpClient;
+  private final ExecutorService executor;
+
+  public VaultHttpClient(VaultHttpClientOptions options) {
+    this.options = options;
+    this.executor = options.isVirtualThreads() ? Executors.newVirtualThreadPerTaskExecutor() : null;
+
+    HttpClient.Builder builder = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(options.getConnectTimeout());
+    if (executor != null) {
+      builder.executor(executor);
+    }
+
+    this.httpClient = builder.build();
+  }
+
+  /**
+   * @param path API path, without {@code /v1/} (e.g. {@code secret/foo})
+   * @param token client token, or null for unauthenticated requests
+   * @return response
+   */
+  public CompletableFuture<VaultHttpResponse> getAsync(String path, @Nullable String token) {
+    return sendAsync(request(path, token).GET().build());
+  }
+
+  /**
+   * @param path API path, without {@code /v1/} (e.g. {@code transit/encrypt/key})
+   * @param token client token, or null for unauthenticated requests (e.g. logins)
+   * @param body JSON request body, or null for none
+   * @return response
+   */
+  public CompletableFuture<VaultHttpResponse> postAsync(String path, @Nullable String token, @Nullable JsonValue body) {
+    HttpRequest.BodyPublisher publisher = body == null
+        ? HttpRequest.BodyPublishers.noBody()
+        : HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8);
+
+    return sendAsync(request(path, token).header(CONTENT_TYPE_HEADER, JSON_MIME_TYPE).POST(publisher).build());
+  }
+
+  /**
+   * @param path API path, without {@code /v1/} (e.g. {@code secret/foo})
+   * @param token client token
+   * @return response
+   */
+  public CompletableFuture<VaultHttpResponse> deleteAsync(String path, @Nullable String token) {
+    return sendAsync(request(path, token).DELETE().build());
+  }
+
+  /**
+   * Blocking {@link #getAsync(String, String)}.
+   */
+  public VaultHttpResponse get(String path, @Nullable String token) {
+    return await(getAsync(path, token));
+  }
+
+  /**
+   * Blocking {@link #postAsync(String, String, JsonValue)}.
+   */
+  public VaultHttpResponse post(String path, @Nullable String token, @Nullable JsonValue body) {
+    return await(postAsync(path, token, body));
+  }
+
+  /**
+   * Blocking {@link #deleteAsync(String, String)}.
+   */
+  public VaultHttpResponse delete(String path, @Nullable String token) {
+    return await(deleteAsync(path, token));
+  }
+
+  /**
+   * Close pooled connections. Requests in flight are allowed to finish.
+   */
+  @Override
+  public void close() {
+    httpClient.close();
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  private HttpRequest.Builder request(String path, @Nullable String token) {
+    HttpRequest.Builder builder = HttpRequest.newBuilder()
+        .uri(URI.create(stripTrailingSlash(options.getAddress()) + API_PREFIX + path))
+        .timeout(options.getRequestTimeout());
+
+    if (token != null) {
+      builder.header(TOKEN_HEADER, token);
+    }
+
+    if (options.getNameSpace() != null && !options.getNameSpace().isEmpty()) {
+      builder.header(NAMESPACE_HEADER, options.getNameSpace());
+    }
+
+    return builder;
+  }
+
+  private CompletableFuture<VaultHttpResponse> sendAsync(HttpRequest request) {
+    return sendAsync(request, 0);
+  }
+
+  private CompletableFuture<VaultHttpResponse> sendAsync(HttpRequest request, int attempt) {
+    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+        .thenApply((response) -> new VaultHttpResponse(
+            response.statusCode(),
+            response.headers().firstValue(CONTENT_TYPE_HEADER).orElse(null),
+            response.body(),
+            attempt))
+        .handle((response, error) -> {
+          boolean retryable = error != null || response.getStatus() >= SERVER_ERROR_STATUS;
+          if (retryable && attempt < options.getMaxRetries()) {
+            Executor delayed = CompletableFuture.delayedExecutor(
+                options.getRetryInterval().toNanos(),
+                TimeUnit.NANOSECONDS,
+                executor != null ? executor : ForkJoinPool.commonPool());
+
+            return CompletableFuture.runAsync(() -> {
+            }, delayed).thenCompose((ignored) -> sendAsync(request, attempt + 1));
+          }
+
+          if (error != null) {
+            return CompletableFuture.<VaultHttpResponse>failedFuture(
+                new VaultHttpException("Vault request failed: " + request.method() + " " + request.uri().getPath(), unwrap(error)));
+          }
+
+          return CompletableFuture.completedFuture(response);
+        })
+        .thenCompose(Function.identity());
+  }
+
+  private static VaultHttpResponse await(CompletableFuture<VaultHttpResponse> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof VaultHttpException) {
+        throw (VaultHttpException) e.getCause();
+      }
+
+      throw new VaultHttpException("Vault request failed", unwrap(e));
+    }
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+  }
+
+  private static String stripTrailingSlash(String address) {
+    return address.endsWith("/") ? address.substring(0, address.length() - 1) : address;
+  }
+}
@@ -0,0 +1,60 @@
+package com.mx.path.service.facility.vault;
+
+import java.time.Duration;
+
+import javax.annotation.Nullable;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Settings for a {@link VaultHttpClient}.
+ */
+@Builder(toBuilder = true)
+@EqualsAndHashCode
+@Getter
+public final class VaultHttpClientOptions {
+  private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+  private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+  private static final int DEFAULT_MAX_RETRIES = 0;
+  private static final Duration DEFAULT_RETRY_INTERVAL = Duration.ofMillis(200);
+  private static final boolean DEFAULT_VIRTUAL_THREADS = true;
+
+  /**
+   * Vault server address (e.g. {@code https://vault.example.com:8200}).
+   */
+  @NonNull
+  private final String address;
+
+  /**
+   * Vault Enterprise namespace sent with every request, if any.
+   */
+  @Nullable
+  private final String nameSpace;
+
+  @Builder.Default
+  private final Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+  /**
+   * Longest time to wait for one response, including the body.
+   */
+  @Builder.Default
+  private final Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+
+  /**
+   * Times a request is retried after a connection failure or 5xx response.
+   */
+  @Builder.Default
+  private final int maxRetries = DEFAULT_MAX_RETRIES;
+
+  @Builder.Default
+  private final Duration retryInterval = DEFAULT_RETRY_INTERVAL;
+
+  /**
+   * Complete responses and retries on virtual threads instead of the HTTP client's default pool.
+   */
+  @Builder.Default
+  private final boolean virtualThreads = DEFAULT_VIRTUAL_THREADS;
+}
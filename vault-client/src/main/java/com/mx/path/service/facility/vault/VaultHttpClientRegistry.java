@@ -0,0 +1,76 @@
+package com.mx.path.service.facility.vault;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide registry of {@link VaultHttpClient}s. Every Vault facility configured with the same options (e.g. the
+ * encryption service and the store pointed at the same server) shares one client and its connection pool instead of
+ * creating its own. Clients are reference counted and closed when the last user releases them.
+ */
+public final class VaultHttpClientRegistry {
+
+  private static final Map<VaultHttpClientOptions, Registration> REGISTRATIONS = new LinkedHashMap<>();
+  private static final Map<VaultHttpClient, VaultHttpClientOptions> OWNERS = new IdentityHashMap<>();
+
+  private VaultHttpClientRegistry() {
+  }
+
+  /**
+   * Get the shared client for the given options, creating it if needed. Must be paired with {@link #release(VaultHttpClient)}.
+   *
+   * @param options client options
+   * @return shared client
+   */
+  public static synchronized VaultHttpClient acquire(VaultHttpClientOptions options) {
+    Registration registration = REGISTRATIONS.get(options);
+    if (registration == null) {
+      VaultHttpClient client = new VaultHttpClient(options);
+      registration = new Registration(client);
+      REGISTRATIONS.put(options, registration);
+      OWNERS.put(client, options);
+    }
+
+    registration.references++;
+    return registration.client;
+  }
+
+  /**
+   * Release a client obtained from {@link #acquire(VaultHttpClientOptions)}. Closes it when no longer referenced.
+   *
+   * @param client to release
+   */
+  public static synchronized void release(VaultHttpClient client) {
+    VaultHttpClientOptions options = OWNERS.get(client);
+    if (options == null) {
+      return;
+    }
+
+    Registration registration = REGISTRATIONS.get(options);
+    registration.references--;
+    if (registration.references <= 0) {
+      REGISTRATIONS.remove(options);
+      OWNERS.remove(client);
+      client.close();
+    }
+  }
+
+  /**
+   * @param options client options
+   * @return number of users of the shared client for options, zero if there is none
+   */
+  public static synchronized int references(VaultHttpClientOptions options) {
+    Registration registration = REGISTRATIONS.get(options);
+    return registration == null ? 0 : registration.references;
+  }
+
+  private static final class Registration {
+    private final VaultHttpClient client;
+    private int references;
+
+    Registration(VaultHttpClient client) {
+      this.client = client;
+    }
+  }
+}
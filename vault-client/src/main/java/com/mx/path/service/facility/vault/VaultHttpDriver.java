@@ -0,0 +1,38 @@
+package com.mx.path.service.facility.vault;
+
+import lombok.Getter;
+
+import com.bettercloud.vault.Vault;
+import com.bettercloud.vault.VaultConfig;
+import com.bettercloud.vault.api.Auth;
+import com.bettercloud.vault.api.Logical;
+
+/**
+ * {@link Vault} driver that sends logical and auth requests through a shared {@link VaultHttpClient} instead of opening
+ * a new connection per request.
+ *
+ * <p>The token and KV engine version come from the given {@link VaultConfig}; address, namespace, timeouts and retries
+ * come from the client. Drivers are cheap: build a new one per token and reuse the client.
+ */
+public class VaultHttpDriver extends Vault {
+  private final VaultConfig vaultConfig;
+
+  @Getter
+  private final VaultHttpClient client;
+
+  public VaultHttpDriver(VaultConfig vaultConfig, VaultHttpClient client) {
+    super(vaultConfig);
+    this.vaultConfig = vaultConfig;
+    this.client = client;
+  }
+
+  @Override
+  public Logical logical() {
+    return new VaultHttpLogical(vaultConfig, client);
+  }
+
+  @Override
+  public Auth auth() {
+    return new VaultHttpAuth(vaultConfig, client);
+  }
+}
@@ -0,0 +1,16 @@
+package com.mx.path.service.facility.vault;
+
+import com.mx.path.core.common.facility.FacilityException;
+
+/**
+ * Raised when a request to Vault could not be completed (connection failure, timeout, interruption).
+ */
+public class VaultHttpException extends FacilityException {
+  public VaultHttpException(String message) {
+    super(message);
+  }
+
+  public VaultHttpException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,136 @@
+package com.mx.path.service.facility.vault;
+
+import java.util.Map;
+
+import com.bettercloud.vault.VaultConfig;
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.api.Logical;
+import com.bettercloud.vault.api.LogicalUtilities;
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonObject;
+import com.bettercloud.vault.json.JsonValue;
+import com.bettercloud.vault.response.LogicalResponse;
+
+/**
+ * {@link Logical} read, write and delete sent through a {@link VaultHttpClient}.
+ *
+ * <p>Paths, request bodies and accepted status codes match the driver's, including KV version 2 path rewriting, so
+ * callers see the same responses. Retries are done by the client.
+ */
+final class VaultHttpLogical extends Logical {
+  private static final int OK_STATUS = 200;
+  private static final int NO_CONTENT_STATUS = 204;
+  private static final int KV_VERSION_2 = 2;
+
+  private final VaultConfig config;
+  private final VaultHttpClient client;
+
+  VaultHttpLogical(VaultConfig config, VaultHttpClient client) {
+    super(config);
+    this.config = config;
+    this.client = client;
+  }
+
+  @Override
+  public LogicalResponse read(String path) throws VaultException {
+    logicalOperations operation = isVersion2(path) ? logicalOperations.readV2 : logicalOperations.readV1;
+    VaultHttpResponse response = send(() -> client.get(
+        LogicalUtilities.adjustPathForReadOrWrite(path, config.getPrefixPathDepth(), operation),
+        config.getToken()));
+
+    if (response.getStatus() != OK_STATUS && !isClientError(response)) {
+      throw unexpectedStatus(response);
+    }
+
+    return new LogicalResponse(response.toRestResponse(), response.getRetries(), operation);
+  }
+
+  @Override
+  public LogicalResponse write(String path, Map<String, Object> nameValuePairs) throws VaultException {
+    logicalOperations operation = isVersion2(path) ? logicalOperations.writeV2 : logicalOperations.writeV1;
+    JsonObject body = LogicalUtilities.jsonObjectToWriteFromEngineVersion(operation, toJson(nameValuePairs));
+    VaultHttpResponse response = send(() -> client.post(
+        LogicalUtilities.adjustPathForReadOrWrite(path, config.getPrefixPathDepth(), operation),
+        config.getToken(),
+        body));
+
+    if (response.getStatus() != OK_STATUS && response.getStatus() != NO_CONTENT_STATUS && !isClientError(response)) {
+      throw unexpectedStatus(response);
+    }
+
+    return new LogicalResponse(response.toRestResponse(), response.getRetries(), operation);
+  }
+
+  @Override
+  public LogicalResponse delete(String path) throws VaultException {
+    logicalOperations operation = isVersion2(path) ? logicalOperations.deleteV2 : logicalOperations.deleteV1;
+    VaultHttpResponse response = send(() -> client.delete(
+        LogicalUtilities.adjustPathForDelete(path, config.getPrefixPathDepth(), operation),
+        config.getToken()));
+
+    if (response.getStatus() != NO_CONTENT_STATUS) {
+      throw unexpectedStatus(response);
+    }
+
+    return new LogicalResponse(response.toRestResponse(), response.getRetries(), operation);
+  }
+
+  private boolean isVersion2(String path) {
+    return Integer.valueOf(KV_VERSION_2).equals(getEngineVersionForSecretPath(path));
+  }
+
+  static VaultHttpResponse send(Request request) throws VaultException {
+    try {
+      return request.send();
+    } catch (VaultHttpException e) {
+      throw new VaultException(e);
+    }
+  }
+
+  static VaultException unexpectedStatus(VaultHttpResponse response) {
+    return new VaultException("Vault responded with HTTP status code: " + response.getStatus()
+        + "\nResponse body: " + response.getBodyAsString(), response.getStatus());
+  }
+
+  @SuppressWarnings("checkstyle:MagicNumber")
+  private static boolean isClientError(VaultHttpResponse response) {
+    return response.getStatus() >= 400 && response.getStatus() < 500;
+  }
+
+  /**
+   * Same conversion the driver applies to write parameters.
+   */
+  private static JsonObject toJson(Map<String, Object> nameValuePairs) {
+    JsonObject json = Json.object();
+    if (nameValuePairs == null) {
+      return json;
+    }
+
+    nameValuePairs.forEach((name, value) -> {
+      if (value == null) {
+        json.add(name, (String) null);
+      } else if (value instanceof Boolean) {
+        json.add(name, (Boolean) value);
+      } else if (value instanceof Integer) {
+        json.add(name, (Integer) value);
+      } else if (value instanceof Long) {
+        json.add(name, (Long) value);
+      } else if (value instanceof Float) {
+        json.add(name, (Float) value);
+      } else if (value instanceof Double) {
+        json.add(name, (Double) value);
+      } else if (value instanceof JsonValue) {
+        json.add(name, (JsonValue) value);
+      } else {
+        json.add(name, value.toString());
+      }
+    });
+
+    return json;
+  }
+
+  @FunctionalInterface
+  interface Request {
+    VaultHttpResponse send();
+  }
+}
@@ -0,0 +1,66 @@
+package com.mx.path.service.facility.vault;
+
+import java.nio.charset.StandardCharsets;
+
+import lombok.Getter;
+
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonObject;
+import com.bettercloud.vault.rest.RestResponse;
+
+/**
+ * Response received from Vault.
+ */
+@Getter
+public final class VaultHttpResponse {
+  private static final int SUCCESS_STATUS_MIN = 200;
+  private static final int SUCCESS_STATUS_MAX = 299;
+
+  private final int status;
+  private final String mimeType;
+  private final byte[] body;
+
+  /**
+   * Number of times the request was retried before this response.
+   */
+  private final int retries;
+
+  public VaultHttpResponse(int status, String mimeType, byte[] body, int retries) {
+    this.status = status;
+    this.mimeType = mimeType;
+    this.body = body == null ? new byte[0] : body;
+    this.retries = retries;
+  }
+
+  /**
+   * @return true for 2xx responses
+   */
+  public boolean isSuccessful() {
+    return status >= SUCCESS_STATUS_MIN && status <= SUCCESS_STATUS_MAX;
+  }
+
+  /**
+   * @return body as text
+   */
+  public String getBodyAsString() {
+    return new String(body, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return body parsed as a JSON object, or an empty object if there is no body
+   */
+  public JsonObject json() {
+    if (body.length == 0) {
+      return Json.object();
+    }
+
+    return Json.parse(getBodyAsString()).asObject();
+  }
+
+  /**
+   * @return this response in the form used by the {@code com.bettercloud.vault} response types
+   */
+  public RestResponse toRestResponse() {
+    return new RestResponse(status, mimeType, body);
+  }
+}
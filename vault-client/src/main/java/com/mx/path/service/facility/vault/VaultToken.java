@@ -0,0 +1,60 @@
+package com.mx.path.service.facility.vault;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+import com.bettercloud.vault.response.AuthResponse;
+
+/**
+ * Client token held by a facility's current driver and the lease it was granted with.
+ *
+ * <p>A lease duration of zero means the token does not expire, or its lease is unknown (e.g. TOKEN authentication), and
+ * is never renewed in the background.
+ */
+@Getter
+public final class VaultToken {
+  private final String clientToken;
+  private final long leaseDurationSeconds;
+  private final boolean renewable;
+  private final long issuedAtNanos;
+
+  public VaultToken(String clientToken, long leaseDurationSeconds, boolean renewable, long issuedAtNanos) {
+    this.clientToken = clientToken;
+    this.leaseDurationSeconds = leaseDurationSeconds;
+    this.renewable = renewable;
+    this.issuedAtNanos = issuedAtNanos;
+  }
+
+  /**
+   * @param clientToken static token
+   * @return token with no managed lease
+   */
+  public static VaultToken unmanaged(String clientToken) {
+    return new VaultToken(clientToken, 0, false, System.nanoTime());
+  }
+
+  /**
+   * @param response from a login or renewal
+   * @return token described by response
+   */
+  public static VaultToken fromAuthResponse(AuthResponse response) {
+    return new VaultToken(response.getAuthClientToken(), response.getAuthLeaseDuration(), response.isAuthRenewable(), System.nanoTime());
+  }
+
+  /**
+   * @return true if the token's lease runs out and must be renewed or replaced
+   */
+  public boolean isExpiring() {
+    return leaseDurationSeconds > 0;
+  }
+
+  /**
+   * @param renewalRatio fraction of the lease to let elapse before renewing
+   * @return nanoseconds from now until the token should be renewed, never negative
+   */
+  public long nanosUntilRenewal(double renewalRatio) {
+    long renewAtNanos = issuedAtNanos + (long) (TimeUnit.SECONDS.toNanos(leaseDurationSeconds) * renewalRatio);
+    return Math.max(0, renewAtNanos - System.nanoTime());
+  }
+}
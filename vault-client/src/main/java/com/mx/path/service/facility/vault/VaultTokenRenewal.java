@@ -0,0 +1,191 @@
+package com.mx.path.service.facility.vault;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+import com.bettercloud.vault.Vault;
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.response.AuthResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks a Vault facility's client token and keeps it alive in the background. The token is renewed once
+ * {@code renewalRatio} of its lease has elapsed. When it can no longer be extended (it has reached its max TTL or the
+ * renewal is refused) the facility logs in again. Failed renewals are retried every {@code retryInterval}.
+ *
+ * <p>Renewals and logins run without holding this object's lock, so a facility can keep serving requests, and
+ * logging in inline, while one is in progress. The background thread is created on first use. Close with the facility
+ * to stop it.
+ */
+public final class VaultTokenRenewal implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(VaultTokenRenewal.class);
+
+  private final String threadName;
+  private final boolean enabled;
+  private final double renewalRatio;
+  private final Duration retryInterval;
+
+  /**
+   * Token of the facility's current driver, or null before login.
+   */
+  @Getter
+  private volatile VaultToken token;
+
+  private ScheduledExecutorService scheduler;
+  private ScheduledFuture<?> renewal;
+  private volatile boolean closed;
+
+  /**
+   * @param threadName name of the background thread
+   * @param enabled false to never renew in the background
+   * @param renewalRatio fraction of the token's lease to let elapse before renewing it
+   * @param retryInterval wait before trying again after a failed renewal
+   */
+  public VaultTokenRenewal(String threadName, boolean enabled, double renewalRatio, Duration retryInterval) {
+    this.threadName = threadName;
+    this.enabled = enabled;
+    this.renewalRatio = renewalRatio;
+    this.retryInterval = retryInterval;
+  }
+
+  /**
+   * Renew the current token through driver, or log in again if it can no longer be renewed, then schedule task for the
+   * next renewal. Requests keep using the current driver until login swaps in a new one.
+   *
+   * <p>Does not raise exception on failure. A failed renewal schedules task again after the retry interval.
+   *
+   * @param driver authenticated with the current token
+   * @param login logs in again, swapping in a new driver and {@link #setToken(VaultToken) token}. Called without
+   *     holding any lock.
+   * @param task to run at the next renewal, normally the caller of this method
+   */
+  public void renew(Vault driver, Runnable login, Runnable task) {
+    VaultToken currentToken = token;
+    if (currentToken == null) {
+      return;
+    }
+
+    try {
+      VaultToken renewedToken = currentToken.isRenewable() ? renewSelf(driver, currentToken) : null;
+      if (renewedToken != null) {
+        replaceToken(currentToken, renewedToken);
+      } else {
+        login.run();
+      }
+      schedule(task);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Unable to renew vault token. Retrying in " + retryInterval, e);
+      schedule(task, retryInterval.toNanos());
+    }
+  }
+
+  /**
+   * @param newToken token of the facility's new driver. Ignored once closed.
+   */
+  public synchronized void setToken(VaultToken newToken) {
+    if (!closed) {
+      token = newToken;
+    }
+  }
+
+  /**
+   * Schedule task to run when the current token is due for renewal. Does nothing for tokens that do not expire.
+   *
+   * @param task to run
+   */
+  public void schedule(Runnable task) {
+    VaultToken currentToken = token;
+    if (currentToken == null || !currentToken.isExpiring()) {
+      return;
+    }
+
+    schedule(task, currentToken.nanosUntilRenewal(renewalRatio));
+  }
+
+  /**
+   * Forget the token and cancel the pending renewal, if any.
+   */
+  public synchronized void reset() {
+    token = null;
+    if (renewal != null) {
+      renewal.cancel(false);
+      renewal = null;
+    }
+  }
+
+  /**
+   * Cancel the pending renewal and stop the background thread. Nothing is scheduled afterwards.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    reset();
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Extend the current token's lease.
+   *
+   * @return renewed token, or null if the lease can no longer be extended and a new login is needed
+   */
+  @SuppressWarnings("checkstyle:MagicNumber")
+  private VaultToken renewSelf(Vault driver, VaultToken currentToken) {
+    try {
+      AuthResponse resp = driver.auth().renewSelf();
+      if (resp != null && resp.getRestResponse() != null && (resp.getRestResponse().getStatus() < 200 || resp.getRestResponse().getStatus() >= 300)) {
+        LOGGER.info("Unable to renew vault token (" + resp.getRestResponse().getStatus() + "), logging in again");
+        return null;
+      }
+
+      VaultToken renewedToken = VaultToken.fromAuthResponse(resp);
+      if (renewedToken.getLeaseDurationSeconds() < currentToken.getLeaseDurationSeconds()) {
+        // Lease is capped by the token's max TTL. Use what is left, then log in again.
+        return new VaultToken(currentToken.getClientToken(), renewedToken.getLeaseDurationSeconds(), false, renewedToken.getIssuedAtNanos());
+      }
+
+      return new VaultToken(currentToken.getClientToken(), renewedToken.getLeaseDurationSeconds(), renewedToken.isRenewable(), renewedToken.getIssuedAtNanos());
+    } catch (VaultException e) {
+      LOGGER.info("Unable to renew vault token, logging in again", e);
+      return null;
+    }
+  }
+
+  /**
+   * Swap in a renewed token, unless the token was reset or replaced while the renewal was in progress.
+   */
+  private synchronized void replaceToken(VaultToken expected, VaultToken renewedToken) {
+    if (token == expected) {
+      token = renewedToken;
+    }
+  }
+
+  private synchronized void schedule(Runnable task, long delayNanos) {
+    if (!enabled || closed) {
+      return;
+    }
+
+    if (renewal != null) {
+      renewal.cancel(false);
+    }
+
+    if (scheduler == null) {
+      scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, threadName);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    renewal = scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,64 @@
+package com.mx.path.service.facility.vault
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CopyOnWriteArrayList
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+
+/**
+ * Local HTTP server that records requests and replies with queued responses.
+ */
+class TestVaultServer implements AutoCloseable {
+  static class Request {
+    String method
+    String path
+    String token
+    String nameSpace
+    String body
+  }
+
+  private final HttpServer server
+  private final List<List> responses = new CopyOnWriteArrayList<>()
+  final List<Request> requests = new CopyOnWriteArrayList<>()
+
+  TestVaultServer() {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+    server.createContext("/", this.&handle)
+    server.start()
+  }
+
+  String getAddress() {
+    return "http://127.0.0.1:" + server.getAddress().getPort()
+  }
+
+  TestVaultServer respond(int status, String body) {
+    responses.add([status, body])
+    return this
+  }
+
+  @Override
+  void close() {
+    server.stop(0)
+  }
+
+  private void handle(HttpExchange exchange) {
+    requests.add(new Request(
+        method: exchange.getRequestMethod(),
+        path: exchange.getRequestURI().getPath(),
+        token: exchange.getRequestHeaders().getFirst("X-Vault-Token"),
+        nameSpace: exchange.getRequestHeaders().getFirst("X-Vault-Namespace"),
+        body: new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)))
+
+    def response = responses.size() > 1 ? responses.remove(0) : (responses ? responses[0] : [204, null])
+    byte[] body = response[1] == null ? new byte[0] : ((String) response[1]).getBytes(StandardCharsets.UTF_8)
+    if (body.length > 0) {
+      exchange.getResponseHeaders().add("Content-Type", "application/json")
+    }
+    exchange.sendResponseHeaders((int) response[0], body.length > 0 ? body.length : -1)
+    if (body.length > 0) {
+      exchange.getResponseBody().write(body)
+    }
+    exchange.close()
+  }
+}
@@ -0,0 +1,68 @@
+package com.mx.path.service.facility.vault
+
+import spock.lang.Specification
+
+class VaultHttpClientRegistryTest extends Specification {
+
+  def "shares client for same options"() {
+    given:
+    def options = VaultHttpClientOptions.builder().address("http://127.0.0.1:8200").build()
+
+    when:
+    def first = VaultHttpClientRegistry.acquire(options)
+    def second = VaultHttpClientRegistry.acquire(options.toBuilder().build())
+    def other = VaultHttpClientRegistry.acquire(options.toBuilder().address("http://127.0.0.1:8201").build())
+
+    then:
+    first.is(second)
+    !first.is(other)
+    VaultHttpClientRegistry.references(options) == 2
+
+    cleanup:
+    VaultHttpClientRegistry.release(first)
+    VaultHttpClientRegistry.release(second)
+    VaultHttpClientRegistry.release(other)
+  }
+
+  def "closes client when last reference is released"() {
+    given:
+    def options = VaultHttpClientOptions.builder().address("http://127.0.0.1:8202").build()
+    def first = VaultHttpClientRegistry.acquire(options)
+    def second = VaultHttpClientRegistry.acquire(options)
+
+    when:
+    VaultHttpClientRegistry.release(first)
+
+    then:
+    VaultHttpClientRegistry.references(options) == 1
+
+    when:
+    VaultHttpClientRegistry.release(second)
+
+    then:
+    VaultHttpClientRegistry.references(options) == 0
+
+    when:
+    def third = VaultHttpClientRegistry.acquire(options)
+
+    then:
+    !third.is(first)
+
+    cleanup:
+    VaultHttpClientRegistry.release(third)
+  }
+
+  def "ignores clients it does not own"() {
+    given:
+    def client = new VaultHttpClient(VaultHttpClientOptions.builder().address("http://127.0.0.1:8203").build())
+
+    when:
+    VaultHttpClientRegistry.release(client)
+
+    then:
+    noExceptionThrown()
+
+    cleanup:
+    client.close()
+  }
+}
@@ -0,0 +1,139 @@
+package com.mx.path.service.facility.vault
+
+import java.time.Duration
+
+import com.bettercloud.vault.json.Json
+
+import spock.lang.Specification
+
+class VaultHttpClientTest extends Specification {
+  TestVaultServer server
+  VaultHttpClient subject
+
+  def setup() {
+    server = new TestVaultServer()
+  }
+
+  def cleanup() {
+    subject?.close()
+    server.close()
+  }
+
+  def "sends token, namespace and JSON body"() {
+    given:
+    server.respond(200, '{"data":{"ciphertext":"vault:v1:abc"}}')
+    subject = new VaultHttpClient(VaultHttpClientOptions.builder().address(server.getAddress()).nameSpace("ns1").build())
+
+    when:
+    def response = subject.post("transit/encrypt/key", "token12345", Json.object().add("plaintext", "cGxhaW4="))
+
+    then:
+    response.isSuccessful()
+    response.getStatus() == 200
+    response.json().get("data").asObject().getString("ciphertext", null) == "vault:v1:abc"
+    server.requests.size() == 1
+    with(server.requests[0]) {
+      method == "POST"
+      path == "/v1/transit/encrypt/key"
+      token == "token12345"
+      nameSpace == "ns1"
+      body == '{"plaintext":"cGxhaW4="}'
+    }
+  }
+
+  def "omits token header for unauthenticated requests"() {
+    given:
+    server.respond(200, '{}')
+    subject = new VaultHttpClient(VaultHttpClientOptions.builder().address(server.getAddress() + "/").build())
+
+    when:
+    subject.get("sys/health", null)
+
+    then:
+    server.requests[0].path == "/v1/sys/health"
+    server.requests[0].token == null
+    server.requests[0].nameSpace == null
+  }
+
+  def "completes concurrent async requests"() {
+    given:
+    server.respond(200, '{"data":{}}')
+    subject = new VaultHttpClient(VaultHttpClientOptions.builder().address(server.getAddress()).build())
+
+    when:
+    def futures = (1..20).collect { subject.getAsync("secret/" + it, "token12345") }
+    def responses = futures*.join()
+
+    then:
+    responses.every { it.getStatus() == 200 }
+    server.requests*.path.toSet() == (1..20).collect { "/v1/secret/" + it }.toSet()
+  }
+
+  def "retries server errors"() {
+    given:
+    server.respond(503, '{"errors":["sealed"]}').respond(200, '{"data":{}}')
+    subject = new VaultHttpClient(VaultHttpClientOptions.builder()
+        .address(server.getAddress())
+        .maxRetries(2)
+        .retryInterval(Duration.ofMillis(1))
+        .build())
+
+    when:
+    def response = subject.get("secret/foo", "token12345")
+
+    then:
+    response.getStatus() == 200
+    response.getRetries() == 1
+    server.requests.size() == 2
+  }
+
+  def "returns server error once retries are exhausted"() {
+    given:
+    server.respond(500, '{"errors":["boom"]}')
+    subject = new VaultHttpClient(VaultHttpClientOptions.builder()
+        .address(server.getAddress())
+        .maxRetries(1)
+        .retryInterval(Duration.ofMillis(1))
+        .build())
+
+    when:
+    def response = subject.get("secret/foo", "token12345")
+
+    then:
+    response.getStatus() == 500
+    response.getRetries() == 1
+    server.requests.size() == 2
+  }
+
+  def "does not retry client errors"() {
+    given:
+    server.respond(403, '{"errors":["permission denied"]}')
+    subject = new VaultHttpClient(VaultHttpClientOptions.builder().address(server.getAddress()).maxRetries(3).build())
+
+    when:
+    def response = subject.get("secret/foo", "token12345")
+
+    then:
+    response.getStatus() == 403
+    server.requests.size() == 1
+  }
+
+  def "raises VaultHttpException on connection failure"() {
+    given:
+    def address = server.getAddress()
+    server.close()
+    subject = new VaultHttpClient(VaultHttpClientOptions.builder()
+        .address(address)
+        .connectTimeout(Duration.ofSeconds(1))
+        .virtualThreads(false)
+        .build())
+
+    when:
+    subject.delete("secret/foo", "token12345")
+
+    then:
+    def e = thrown(VaultHttpException)
+    e.getMessage() == "Vault request failed: DELETE /v1/secret/foo"
+    e.getCause() instanceof IOException
+  }
+}
@@ -0,0 +1,183 @@
+package com.mx.path.service.facility.vault
+
+import com.bettercloud.vault.VaultConfig
+import com.bettercloud.vault.VaultException
+
+import spock.lang.Specification
+
+class VaultHttpDriverTest extends Specification {
+  TestVaultServer server
+  VaultHttpClient client
+
+  def setup() {
+    server = new TestVaultServer()
+    client = new VaultHttpClient(VaultHttpClientOptions.builder().address(server.getAddress()).build())
+  }
+
+  def cleanup() {
+    client.close()
+    server.close()
+  }
+
+  def "reads KV version 1 secret"() {
+    given:
+    server.respond(200, '{"data":{"value":"bar"}}')
+
+    when:
+    def response = driver("token12345", 1).logical().read("secret/foo")
+
+    then:
+    response.getData().get("value") == "bar"
+    server.requests[0].method == "GET"
+    server.requests[0].path == "/v1/secret/foo"
+    server.requests[0].token == "token12345"
+  }
+
+  def "reads KV version 2 secret"() {
+    given:
+    server.respond(200, '{"data":{"data":{"value":"bar"}}}')
+
+    when:
+    def response = driver("token12345", 2).logical().read("secret/foo")
+
+    then:
+    response.getData().get("value") == "bar"
+    server.requests[0].path == "/v1/secret/data/foo"
+  }
+
+  def "returns client errors as responses"() {
+    given:
+    server.respond(404, '{"errors":[]}')
+
+    when:
+    def response = driver("token12345", 1).logical().read("secret/missing")
+
+    then:
+    response.getRestResponse().getStatus() == 404
+  }
+
+  def "raises VaultException on server errors"() {
+    given:
+    server.respond(500, '{"errors":["boom"]}')
+
+    when:
+    driver("token12345", 1).logical().write("transit/encrypt/key", [plaintext: "cGxhaW4="])
+
+    then:
+    def e = thrown(VaultException)
+    e.getHttpStatusCode() == 500
+  }
+
+  def "writes KV version 2 secret"() {
+    given:
+    server.respond(200, '{"data":{"version":1}}')
+
+    when:
+    def response = driver("token12345", 2).logical().write("secret/foo", [value: "bar", count: 1, flag: true])
+
+    then:
+    response.getRestResponse().getStatus() == 200
+    server.requests[0].method == "POST"
+    server.requests[0].path == "/v1/secret/data/foo"
+    server.requests[0].body == '{"data":{"value":"bar","count":1,"flag":true}}'
+  }
+
+  def "deletes secret"() {
+    given:
+    server.respond(204, null)
+
+    when:
+    driver("token12345", 2).logical().delete("secret/foo")
+
+    then:
+    server.requests[0].method == "DELETE"
+    server.requests[0].path == "/v1/secret/metadata/foo"
+  }
+
+  def "raises VaultException when delete is not acknowledged"() {
+    given:
+    server.respond(404, '{"errors":[]}')
+
+    when:
+    driver("token12345", 1).logical().delete("secret/foo")
+
+    then:
+    def e = thrown(VaultException)
+    e.getHttpStatusCode() == 404
+  }
+
+  def "logs in by app role"() {
+    given:
+    server.respond(200, '{"renewable":false,"auth":{"client_token":"token67890","policies":[],"lease_duration":3600,"renewable":true}}')
+
+    when:
+    def response = driver(null, 1).auth().loginByAppRole("role1", "secret1")
+
+    then:
+    response.getAuthClientToken() == "token67890"
+    response.getAuthLeaseDuration() == 3600
+    response.isAuthRenewable()
+    server.requests[0].path == "/v1/auth/approle/login"
+    server.requests[0].token == null
+    server.requests[0].body == '{"role_id":"role1","secret_id":"secret1"}'
+  }
+
+  def "logs in by app id"() {
+    given:
+    server.respond(200, '{"renewable":false,"auth":{"client_token":"token67890","policies":[]}}')
+
+    when:
+    def response = driver(null, 1).auth().loginByAppID("app-id/login", "app1", "user1")
+
+    then:
+    response.getAuthClientToken() == "token67890"
+    server.requests[0].path == "/v1/auth/app-id/login"
+    server.requests[0].body == '{"app_id":"app1","user_id":"user1"}'
+  }
+
+  def "raises VaultException on failed login"() {
+    given:
+    server.respond(400, '{"errors":["invalid secret id"]}')
+
+    when:
+    driver(null, 1).auth().loginByAppRole("role1", "secret1")
+
+    then:
+    def e = thrown(VaultException)
+    e.getHttpStatusCode() == 400
+  }
+
+  def "renews own token"() {
+    given:
+    server.respond(200, '{"renewable":false,"auth":{"client_token":"token12345","policies":[],"lease_duration":3600,"renewable":true}}')
+
+    when:
+    def response = driver("token12345", 1).auth().renewSelf()
+
+    then:
+    response.getAuthLeaseDuration() == 3600
+    server.requests[0].path == "/v1/auth/token/renew-self"
+    server.requests[0].token == "token12345"
+    server.requests[0].body == ""
+  }
+
+  def "raises VaultException on connection failure"() {
+    given:
+    server.close()
+
+    when:
+    driver("token12345", 1).logical().read("secret/foo")
+
+    then:
+    def e = thrown(VaultException)
+    e.getCause() instanceof VaultHttpException
+  }
+
+  private VaultHttpDriver driver(String token, int engineVersion) {
+    return new VaultHttpDriver(new VaultConfig()
+        .token(token)
+        .engineVersion(engineVersion)
+        .address(server.getAddress())
+        .build(), client)
+  }
+}
@@ -0,0 +1,221 @@
+package com.mx.path.service.facility.vault
+
+import static org.mockito.Mockito.mock
+import static org.mockito.Mockito.when
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import com.bettercloud.vault.Vault
+import com.bettercloud.vault.VaultException
+import com.bettercloud.vault.api.Auth
+import com.bettercloud.vault.response.AuthResponse
+import com.bettercloud.vault.rest.RestResponse
+
+import spock.lang.Specification
+
+class VaultTokenRenewalTest extends Specification {
+  Vault driver
+  Auth auth
+  AuthResponse renewResponse
+  VaultTokenRenewal subject
+
+  def setup() {
+    driver = mock(Vault)
+    auth = mock(Auth)
+    renewResponse = mock(AuthResponse)
+    when(driver.auth()).thenReturn(auth)
+    when(auth.renewSelf()).thenReturn(renewResponse)
+
+    subject = new VaultTokenRenewal("vault-test-token-renewal", true, 0.75, Duration.ofSeconds(10))
+  }
+
+  def cleanup() {
+    subject.close()
+  }
+
+  def "renew() extends renewable lease without logging in again"() {
+    given:
+    subject.setToken(new VaultToken("token12345", 3600, true, System.nanoTime()))
+    when(renewResponse.getAuthLeaseDuration()).thenReturn(3600L)
+    when(renewResponse.isAuthRenewable()).thenReturn(true)
+    def logins = 0
+
+    when:
+    subject.renew(driver, { logins++ }, {})
+
+    then:
+    logins == 0
+    subject.getToken().getClientToken() == "token12345"
+    subject.getToken().getLeaseDurationSeconds() == 3600L
+    subject.getToken().isRenewable()
+  }
+
+  def "renew() stops renewing once lease reaches max TTL"() {
+    given:
+    subject.setToken(new VaultToken("token12345", 3600, true, System.nanoTime()))
+    when(renewResponse.getAuthLeaseDuration()).thenReturn(120L)
+    when(renewResponse.isAuthRenewable()).thenReturn(true)
+    def logins = 0
+
+    when: "renewal is capped"
+    subject.renew(driver, { logins++ }, {})
+
+    then:
+    logins == 0
+    subject.getToken().getLeaseDurationSeconds() == 120L
+    !subject.getToken().isRenewable()
+
+    when: "next renewal"
+    subject.renew(driver, { logins++ }, {})
+
+    then:
+    logins == 1
+  }
+
+  def "renew() logs in again when renewal is refused"() {
+    given:
+    subject.setToken(new VaultToken("token12345", 3600, true, System.nanoTime()))
+    def restResponse = mock(RestResponse)
+    when(restResponse.getStatus()).thenReturn(403)
+    when(renewResponse.getRestResponse()).thenReturn(restResponse)
+    def logins = 0
+
+    when:
+    subject.renew(driver, { logins++ }, {})
+
+    then:
+    logins == 1
+  }
+
+  def "renew() does not raise exceptions"() {
+    given:
+    subject.setToken(new VaultToken("token12345", 3600, true, System.nanoTime()))
+    when(auth.renewSelf()).thenThrow(new VaultException("permission denied"))
+
+    when:
+    subject.renew(driver, { throw new VaultHttpException("connection refused") }, {})
+
+    then:
+    noExceptionThrown()
+    subject.getToken().getClientToken() == "token12345"
+  }
+
+  def "renew() logs in again without holding the renewal lock"() {
+    given:
+    subject.setToken(new VaultToken("token12345", 3600, false, System.nanoTime()))
+    def reset = new CountDownLatch(1)
+    def resetDuringLogin = false
+
+    when:
+    subject.renew(driver, {
+      Thread.start {
+        subject.reset()
+        reset.countDown()
+      }
+      resetDuringLogin = reset.await(5, TimeUnit.SECONDS)
+    }, {})
+
+    then:
+    resetDuringLogin
+    subject.getToken() == null
+  }
+
+  def "renew() does not restore a token reset during renewal"() {
+    given:
+    subject.setToken(new VaultToken("token12345", 3600, true, System.nanoTime()))
+    when(renewResponse.getAuthLeaseDuration()).thenReturn(3600L)
+    when(renewResponse.isAuthRenewable()).thenReturn(true)
+    def resetDuringRenewal = false
+    when(auth.renewSelf()).thenAnswer({
+      def reset = Thread.start { subject.reset() }
+      reset.join(5000)
+      resetDuringRenewal = !reset.isAlive()
+      renewResponse
+    })
+
+    when:
+    subject.renew(driver, {}, {})
+
+    then:
+    resetDuringRenewal
+    subject.getToken() == null
+  }
+
+  def "renew() does nothing without a token"() {
+    given:
+    def logins = 0
+
+    when:
+    subject.renew(driver, { logins++ }, {})
+
+    then:
+    logins == 0
+  }
+
+  def "schedule() runs task once the token is due for renewal"() {
+    given:
+    def ran = new CountDownLatch(1)
+    subject.setToken(new VaultToken("token12345", 1, true, System.nanoTime() - TimeUnit.SECONDS.toNanos(1)))
+
+    when:
+    subject.schedule({ ran.countDown() })
+
+    then:
+    ran.await(5, TimeUnit.SECONDS)
+  }
+
+  def "schedule() ignores tokens that do not expire"() {
+    given:
+    def ran = new CountDownLatch(1)
+    subject.setToken(VaultToken.unmanaged("token12345"))
+
+    when:
+    subject.schedule({ ran.countDown() })
+
+    then:
+    !ran.await(100, TimeUnit.MILLISECONDS)
+  }
+
+  def "schedule() does nothing when disabled"() {
+    given:
+    subject = new VaultTokenRenewal("vault-test-token-renewal", false, 0.75, Duration.ofSeconds(10))
+    def ran = new CountDownLatch(1)
+    subject.setToken(new VaultToken("token12345", 1, true, System.nanoTime() - TimeUnit.SECONDS.toNanos(1)))
+
+    when:
+    subject.schedule({ ran.countDown() })
+
+    then:
+    !ran.await(100, TimeUnit.MILLISECONDS)
+  }
+
+  def "close() stops the background thread and drops the token"() {
+    given:
+    def ran = new CountDownLatch(1)
+    Thread renewalThread = null
+    subject.setToken(new VaultToken("token12345", 1, true, System.nanoTime() - TimeUnit.SECONDS.toNanos(1)))
+    subject.schedule({
+      renewalThread = Thread.currentThread()
+      ran.countDown()
+    })
+    ran.await(5, TimeUnit.SECONDS)
+
+    when:
+    subject.close()
+    renewalThread.join(5000)
+
+    then:
+    !renewalThread.isAlive()
+    subject.getToken() == null
+
+    when: "scheduled after close"
+    def late = new CountDownLatch(1)
+    subject.setToken(new VaultToken("token12345", 1, true, System.nanoTime() - TimeUnit.SECONDS.toNanos(1)))
+    subject.schedule({ late.countDown() })
+
+    then:
+    !late.await(100, TimeUnit.MILLISECONDS)
+  }
+}
@@ -0,0 +1,54 @@
+package com.mx.path.service.facility.vault
+
+import static org.mockito.Mockito.mock
+import static org.mockito.Mockito.when
+
+import java.util.concurrent.TimeUnit
+
+import com.bettercloud.vault.response.AuthResponse
+
+import spock.lang.Specification
+
+class VaultTokenTest extends Specification {
+  def "fromAuthResponse()"() {
+    given:
+    def response = mock(AuthResponse)
+    when(response.getAuthClientToken()).thenReturn("token12345")
+    when(response.getAuthLeaseDuration()).thenReturn(60L)
+    when(response.isAuthRenewable()).thenReturn(true)
+
+    when:
+    def subject = VaultToken.fromAuthResponse(response)
+
+    then:
+    subject.getClientToken() == "token12345"
+    subject.getLeaseDurationSeconds() == 60L
+    subject.isRenewable()
+    subject.isExpiring()
+  }
+
+  def "unmanaged()"() {
+    when:
+    def subject = VaultToken.unmanaged("token12345")
+
+    then:
+    subject.getClientToken() == "token12345"
+    !subject.isRenewable()
+    !subject.isExpiring()
+  }
+
+  def "nanosUntilRenewal()"() {
+    when:
+    def subject = new VaultToken("token12345", 100, true, System.nanoTime())
+
+    then:
+    subject.nanosUntilRenewal(0.75) <= TimeUnit.SECONDS.toNanos(75)
+    subject.nanosUntilRenewal(0.75) > TimeUnit.SECONDS.toNanos(70)
+
+    when: "renewal time has passed"
+    subject = new VaultToken("token12345", 100, true, System.nanoTime() - TimeUnit.SECONDS.toNanos(90))
+
+    then:
+    subject.nanosUntilRenewal(0.75) == 0
+  }
+}